@@ -0,0 +1,216 @@
+package org.networkcalculus.dnc.optree.compiled;
+
+import nilgiri.math.DoubleReal;
+import nilgiri.math.DoubleRealFactory;
+import nilgiri.math.autodiff.DifferentialFunction;
+import nilgiri.math.autodiff.DifferentialRealFunctionFactory;
+import nilgiri.math.autodiff.Variable;
+import org.junit.jupiter.api.Test;
+import org.networkcalculus.dnc.curves.ArrivalCurve;
+import org.networkcalculus.dnc.curves.Curve;
+import org.networkcalculus.dnc.curves.MaxServiceCurve;
+import org.networkcalculus.dnc.curves.ServiceCurve;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+import org.networkcalculus.dnc.optree.plugins.DiffLUDBPlugin;
+import org.networkcalculus.dnc.optree.toolchain.OpTreeAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.TNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Lukas Herll
+ *
+ * Checks that the instruction tape of a DiffLUDB objective (built via the TermFactory of the DiffLUDBPlugin) yields the
+ * same value and reverse-mode gradient as the JAutoDiff term it replaces (getValue() and diff()). The objectives are
+ * evaluated at random points and at integer points, which include ties of minimum and maximum (e.g. s = 0 in [.]^+).
+ * In case of a tie, both have to select the right operand.
+ */
+public class CompiledTermTest {
+    private static final double TOLERANCE = 1e-9;
+    private static final int NO_OF_RANDOM_POINTS = 200;
+    private static final int MAX_INTEGER_VALUE = 10;
+
+    /**
+     * The network of DemoHessian: two servers, the foi crosses both, one crossflow per server.
+     */
+    @Test
+    public void twoCrossflows() throws Exception {
+        ServerGraph sg = new ServerGraph();
+        Server[] servers = addTandem(sg, new double[][]{{4, 4}, {10, 10}});
+        Flow foi = sg.addFlow("f0", tokenBucket(1, 40), servers[0], servers[1]);
+        sg.addFlow("f1", tokenBucket(1, 2), servers[0]);
+        sg.addFlow("f2", tokenBucket(1, 2), servers[1]);
+
+        compareWithSymbolicTerm(sg, servers, foi);
+    }
+
+
+    /**
+     * Four servers with nested crossflows, i.e. a nesting tree of depth 3.
+     */
+    @Test
+    public void nestedCrossflows() throws Exception {
+        ServerGraph sg = new ServerGraph();
+        Server[] servers = addTandem(sg, new double[][]{{20, 0.5}, {15, 1}, {25, 0.2}, {10, 2}});
+        Flow foi = sg.addFlow("f0", tokenBucket(2, 5), servers[0], servers[3]);
+        sg.addFlow("f1", tokenBucket(1, 4), servers[0], servers[2]);
+        sg.addFlow("f2", tokenBucket(3, 1), servers[0]);
+        sg.addFlow("f3", tokenBucket(2, 6), servers[1], servers[2]);
+        sg.addFlow("f4", tokenBucket(1, 3), servers[3]);
+
+        compareWithSymbolicTerm(sg, servers, foi);
+    }
+
+
+    /**
+     * minz, maximum, and minimum are not shared with their swapped counterparts, since their derivatives differ at ties.
+     */
+    @Test
+    public void tiesOfMinimumAndMaximum(){
+        TermFactory terms = new TermFactory(new DifferentialRealFunctionFactory<DoubleReal>(DoubleRealFactory.instance()));
+        Variable<DoubleReal> x = terms.variable("x", 0);
+        Variable<DoubleReal> y = terms.variable("y", 0);
+        DifferentialFunction<DoubleReal> zero = terms.zero();
+
+        List<DifferentialFunction<DoubleReal>> functions = new ArrayList<>();
+        functions.add(terms.minz(x, zero));
+        functions.add(terms.maximum(zero, x));
+        functions.add(terms.maximum(x, zero));
+        functions.add(terms.maximum(x, y));
+        functions.add(terms.maximum(y, x));
+        functions.add(terms.minimum(x, y));
+        functions.add(terms.minimum(y, x));
+        for(int i = 0; i < functions.size(); i++){
+            for(int j = i + 1; j < functions.size(); j++){
+                assertNotSame(functions.get(i), functions.get(j));
+            }
+        }
+
+        List<Variable<DoubleReal>> parameters = List.of(x, y);
+        DifferentialFunction<DoubleReal> dx, dy;
+        double[] gradient = new double[2];
+        for(double[] point : new double[][]{{0, 0}, {2, 2}, {-1, -1}, {1, 3}, {3, 1}}){
+            x.set(new DoubleReal(point[0]));
+            y.set(new DoubleReal(point[1]));
+            for(DifferentialFunction<DoubleReal> function : functions){
+                CompiledTerm tape = CompiledTerm.compile(terms, function, parameters);
+                assertNotNull(tape);
+                assertEquals(function.getValue().doubleValue(), tape.execute(point, gradient), TOLERANCE);
+                dx = function.diff(x);
+                dy = function.diff(y);
+                assertEquals(dx.getValue().doubleValue(), gradient[0], TOLERANCE, function + " at " + describe(point));
+                assertEquals(dy.getValue().doubleValue(), gradient[1], TOLERANCE, function + " at " + describe(point));
+            }
+        }
+    }
+
+
+    /**
+     * Derives the DiffLUDB objective of the foi's tandem and compares the tape with the symbolic term.
+     */
+    private static void compareWithSymbolicTerm(ServerGraph sg, Server[] servers, Flow foi) throws Exception {
+        TNode nestingTree = new NestedTandemAnalysis(sg.getShortestPath(servers[0], servers[servers.length - 1]), foi,
+                sg.getFlows()).onlyComputeNestingTree();
+        OpTreeAnalysis ota = new OpTreeAnalysis(nestingTree);
+        ota.onlyDeriveObjective(new DiffLUDBPlugin());
+
+        CompiledTerm tape = ota.getCompiledTerm();
+        assertNotNull(tape, "the DiffLUDB objective could not be compiled");
+        DifferentialFunction<DoubleReal> term = ota.getSymbolicTerm().getTerm();
+        List<Variable<DoubleReal>> parameters = ota.getOpenParameters();
+        int n = parameters.size();
+        assertTrue(n > 0, "the objective has no open parameters");
+
+        List<DifferentialFunction<DoubleReal>> derivatives = new ArrayList<>();
+        for(Variable<DoubleReal> parameter : parameters){
+            derivatives.add(term.diff(parameter));
+        }
+
+        List<double[]> points = new ArrayList<>();
+        Random random = new Random(n);
+        for(int p = 0; p < NO_OF_RANDOM_POINTS; p++){
+            double[] x = new double[n];
+            for(int i = 0; i < n; i++){
+                x[i] = MAX_INTEGER_VALUE * random.nextDouble();
+            }
+            points.add(x);
+        }
+        //integer points (all of them for up to two parameters, random ones otherwise)
+        if(n <= 2){
+            for(int a = 0; a <= MAX_INTEGER_VALUE; a++){
+                for(int b = 0; b <= (n == 2 ? MAX_INTEGER_VALUE : 0); b++){
+                    points.add(n == 2 ? new double[]{a, b} : new double[]{a});
+                }
+            }
+        }
+        else{
+            points.add(new double[n]);
+            for(int p = 0; p < NO_OF_RANDOM_POINTS; p++){
+                double[] x = new double[n];
+                for(int i = 0; i < n; i++){
+                    x[i] = random.nextInt(MAX_INTEGER_VALUE + 1);
+                }
+                points.add(x);
+            }
+        }
+
+        int[] kinks = new int[tape.size()];
+        boolean[] convex = new boolean[tape.size()];
+        int pointsWithTies = 0;
+        double[] gradient = new double[n];
+        for(double[] x : points){
+            for(int i = 0; i < n; i++){
+                parameters.get(i).set(new DoubleReal(x[i]));
+            }
+            double expected = term.getValue().doubleValue();
+            double value = tape.execute(x, gradient);
+            assertEquals(expected, value, TOLERANCE * Math.max(1, Math.abs(expected)), "value at " + describe(x));
+            for(int i = 0; i < n; i++){
+                double expectedPartial = derivatives.get(i).getValue().doubleValue();
+                assertEquals(expectedPartial, gradient[i], TOLERANCE * Math.max(1, Math.abs(expectedPartial)),
+                        "partial derivative " + parameters.get(i).getName() + " at " + describe(x));
+            }
+            if(tape.findKinks(x, 0, kinks, convex) > 0){
+                pointsWithTies++;
+            }
+        }
+        assertTrue(pointsWithTies > 0, "no point with a tie of minimum or maximum was tested");
+    }
+
+
+    private static Server[] addTandem(ServerGraph sg, double[][] rateLatencies) throws Exception {
+        MaxServiceCurve maxServiceCurve = Curve.getFactory().createRateLatencyMSC(100.0e6, 0.001);
+        Server[] servers = new Server[rateLatencies.length];
+        for(int i = 0; i < servers.length; i++){
+            ServiceCurve serviceCurve = Curve.getFactory().createRateLatency(rateLatencies[i][0], rateLatencies[i][1]);
+            servers[i] = sg.addServer(serviceCurve, maxServiceCurve);
+            servers[i].useMaxSC(false);
+            servers[i].useMaxScRate(false);
+            if(i > 0){
+                sg.addTurn(servers[i - 1], servers[i]);
+            }
+        }
+        return servers;
+    }
+
+
+    private static ArrivalCurve tokenBucket(double rate, double burst){
+        return Curve.getFactory().createTokenBucket(rate, burst);
+    }
+
+
+    private static String describe(double[] x){
+        return Arrays.toString(x);
+    }
+}
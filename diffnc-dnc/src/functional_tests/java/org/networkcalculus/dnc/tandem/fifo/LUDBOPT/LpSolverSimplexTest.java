@@ -0,0 +1,140 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Lukas Herll
+ *
+ * Checks LpSolverSimplex (min objective(s) s.t. constraint(s) >= 0, s >= 0) on small LPs with known optima: feasible,
+ * infeasible, unbounded, and degenerate (several constraints active at the optimal vertex, redundant equalities, and
+ * Beale's example, which cycles without an anti-cycling rule).
+ */
+public class LpSolverSimplexTest {
+    private static final double TOLERANCE = 1e-9;
+
+    private final LpSolver solver = new LpSolverSimplex();
+
+    @Test
+    public void feasible() throws Exception {
+        // min s_0 + s_1 s.t. s_0 + 2 s_1 >= 4, 3 s_0 + s_1 >= 6 => s = (1.6, 1.2)
+        List<LinearForm_LUDB> constraints = Arrays.asList(form(-4, 1, 2), form(-6, 3, 1));
+        Pair<Double, Map<Integer, Double>> result = solver.solve(form(0, 1, 1), constraints, 2);
+        assertOptimum(2.8, new double[]{1.6, 1.2}, result, constraints);
+
+        // the constant of the objective is part of the result; s_2 does not occur in any constraint
+        result = solver.solve(form(10, 1, 1, 1), constraints, 3);
+        assertOptimum(12.8, new double[]{1.6, 1.2, 0}, result, constraints);
+
+        // the optimum is attained at a vertex with s_0 == 0
+        result = solver.solve(form(0, 4, 1), constraints, 2);
+        assertOptimum(6, new double[]{0, 6}, result, constraints);
+
+        // constant constraints that hold are ignored, no constraint at all yields s == 0
+        result = solver.solve(form(1, 2), Arrays.asList(form(0), form(3)), 1);
+        assertOptimum(1, new double[]{0}, result, new ArrayList<>());
+    }
+
+    @Test
+    public void infeasible() throws Exception {
+        // s_0 >= 5 and s_0 <= 3
+        Pair<Double, Map<Integer, Double>> result = solver.solve(form(0, 1),
+                Arrays.asList(form(-5, 1), form(3, -1)), 1);
+        assertInfeasible(result);
+
+        // -s_0 - s_1 >= 1 contradicts s >= 0
+        result = solver.solve(form(0, 1, 1), Arrays.asList(form(-1, -1, -1)), 2);
+        assertInfeasible(result);
+
+        // a violated constant constraint (0 >= 1)
+        result = solver.solve(form(0, 1), Arrays.asList(form(-1, 1), form(-1)), 1);
+        assertInfeasible(result);
+    }
+
+    @Test
+    public void unbounded() throws Exception {
+        // min -s_0 s.t. s_0 >= 1
+        Pair<Double, Map<Integer, Double>> result = solver.solve(form(0, -1), Arrays.asList(form(-1, 1)), 1);
+        assertInfeasible(result);
+
+        // min s_0 - s_1 s.t. s_1 - s_0 >= 1: s_1 is only bounded below
+        result = solver.solve(form(0, 1, -1), Arrays.asList(form(-1, -1, 1)), 2);
+        assertInfeasible(result);
+
+        // a bounded LP with an unbounded feasible region
+        List<LinearForm_LUDB> constraints = Arrays.asList(form(-1, -1, 1));
+        result = solver.solve(form(0, -1, 2), constraints, 2);
+        assertOptimum(2, new double[]{0, 1}, result, constraints);
+    }
+
+    @Test
+    public void degenerate() throws Exception {
+        // four constraints are active at the optimal vertex (1, 1)
+        List<LinearForm_LUDB> constraints = Arrays.asList(form(-2, 1, 1), form(-1, 1), form(-1, 0, 1),
+                form(-3, 2, 1));
+        Pair<Double, Map<Integer, Double>> result = solver.solve(form(0, 1, 1), constraints, 2);
+        assertOptimum(2, new double[]{1, 1}, result, constraints);
+
+        // s_0 == 1 stated twice as a pair of inequalities (redundant rows stay in phase 1 with zero artificials)
+        constraints = Arrays.asList(form(-1, 1), form(1, -1), form(-2, 2), form(2, -2), form(-1, 1, 1));
+        result = solver.solve(form(0, 1, 1), constraints, 2);
+        assertOptimum(1, new double[]{1, 0}, result, constraints);
+
+        // a zero right-hand side at the start
+        constraints = Arrays.asList(form(0, 1, -1), form(0, -1, 1), form(-2, 1, 1));
+        result = solver.solve(form(0, 1, 0), constraints, 2);
+        assertOptimum(1, new double[]{1, 1}, result, constraints);
+
+        // Beale's example: max 3/4 s_0 - 150 s_1 + 1/50 s_2 - 6 s_3
+        // s.t. 1/4 s_0 - 60 s_1 - 1/25 s_2 + 9 s_3 <= 0, 1/2 s_0 - 90 s_1 - 1/50 s_2 + 3 s_3 <= 0, s_2 <= 1
+        constraints = Arrays.asList(form(0, -0.25, 60, 0.04, -9), form(0, -0.5, 90, 0.02, -3), form(1, 0, 0, -1));
+        result = solver.solve(form(0, -0.75, 150, -0.02, 6), constraints, 4);
+        assertOptimum(-0.05, new double[]{0.04, 0, 1, 0}, result, constraints);
+    }
+
+
+    /**
+     * @return  constant + sum_i coeffs[i] * s_i
+     */
+    static LinearForm_LUDB form(double constant, double... coeffs) {
+        LinearForm_LUDB form = LinearForm_LUDB.createConstant(constant);
+        for (int i = 0; i < coeffs.length; i++) {
+            if (coeffs[i] != 0) {
+                form = form.add(LinearForm_LUDB.createVar(i).mult(LinearForm_LUDB.createConstant(coeffs[i])));
+            }
+        }
+        return form;
+    }
+
+    static double evaluate(LinearForm_LUDB form, Map<Integer, Double> s_values) {
+        double value = form.getConstant();
+        for (int j = 0; j < form.getDimension(); j++) {
+            value += form.getCoefficient(j) * s_values.get(j);
+        }
+        return value;
+    }
+
+    private static void assertOptimum(double expected_value, double[] expected_s, Pair<Double, Map<Integer, Double>> result,
+                                      List<LinearForm_LUDB> constraints) {
+        assertEquals(expected_value, result.getFirst(), TOLERANCE);
+        for (int j = 0; j < expected_s.length; j++) {
+            assertEquals(expected_s[j], result.getSecond().get(j), TOLERANCE, "s_" + j);
+        }
+        for (LinearForm_LUDB constraint : constraints) {
+            assertTrue(evaluate(constraint, result.getSecond()) >= -TOLERANCE, "violated: " + constraint);
+        }
+    }
+
+    private static void assertInfeasible(Pair<Double, Map<Integer, Double>> result) {
+        assertTrue(result.getFirst().isNaN());
+        assertTrue(result.getSecond().isEmpty());
+    }
+}
@@ -0,0 +1,167 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LpSolverSimplexTest.evaluate;
+import static org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LpSolverSimplexTest.form;
+
+/**
+ * @author Lukas Herll
+ *
+ * Checks LpSolverWarmStart on random sequences of LPs in which consecutive LPs differ in a few constraints and in the
+ * objective (like the LPs of the LUDB search), i.e. the session of the previous LP is updated and re-optimized.
+ * The results are compared with known optima (LPs constructed around a given optimal solution) and with LpSolverSimplex
+ * (arbitrary LPs, including infeasible and unbounded ones).
+ */
+public class LpSolverWarmStartTest {
+    private static final double TOLERANCE = 1e-6;
+    private static final int NUMBER_VARS = 6;
+    private static final int NUMBER_CONSTRAINTS = 16;
+    private static final int SEQUENCES = 20;
+    private static final int LPS_PER_SEQUENCE = 100;
+
+    @Test
+    public void knownOptima() throws Exception {
+        Random random = new Random(1);
+        for (int sequence = 0; sequence < SEQUENCES; sequence++) {
+            LpSolver solver = new LpSolverWarmStart();
+
+            // the optimal solution, some of its coordinates are 0
+            double[] opt_s = new double[NUMBER_VARS];
+            for (int j = 0; j < NUMBER_VARS; j++) {
+                opt_s[j] = random.nextBoolean() ? 0 : 5 * random.nextDouble();
+            }
+            // a * s + constant >= 0, the first half of the constraints is active at opt_s, the second half is not
+            double[][] a = new double[NUMBER_CONSTRAINTS][NUMBER_VARS];
+            LinearForm_LUDB[] pool = new LinearForm_LUDB[NUMBER_CONSTRAINTS];
+            for (int i = 0; i < NUMBER_CONSTRAINTS; i++) {
+                double value = 0;
+                for (int j = 0; j < NUMBER_VARS; j++) {
+                    a[i][j] = random.nextDouble() < 0.3 ? 0 : 2 * random.nextDouble() - 1;
+                    value += a[i][j] * opt_s[j];
+                }
+                double slack = i < NUMBER_CONSTRAINTS / 2 ? 0 : random.nextDouble();
+                pool[i] = form(slack - value, a[i]);
+            }
+
+            boolean[] in_lp = new boolean[NUMBER_CONSTRAINTS];
+            for (int i = 0; i < NUMBER_CONSTRAINTS; i++) {
+                in_lp[i] = random.nextBoolean();
+            }
+            for (int lp = 0; lp < LPS_PER_SEQUENCE; lp++) {
+                // consecutive LPs differ in a few constraints
+                int changes = random.nextInt(3);
+                for (int k = 0; k < changes; k++) {
+                    int i = random.nextInt(NUMBER_CONSTRAINTS);
+                    in_lp[i] = !in_lp[i];
+                }
+
+                // objective = sum_i y_i * a_i + r with y_i >= 0 (only for active constraints) and r_j >= 0 (only if
+                // opt_s[j] == 0), i.e. opt_s satisfies the KKT conditions
+                List<LinearForm_LUDB> constraints = new ArrayList<>();
+                double[] c = new double[NUMBER_VARS];
+                for (int i = 0; i < NUMBER_CONSTRAINTS; i++) {
+                    if (!in_lp[i]) {
+                        continue;
+                    }
+                    constraints.add(pool[i]);
+                    if (i < NUMBER_CONSTRAINTS / 2 && random.nextBoolean()) {
+                        double y = random.nextDouble();
+                        for (int j = 0; j < NUMBER_VARS; j++) {
+                            c[j] += y * a[i][j];
+                        }
+                    }
+                }
+                for (int j = 0; j < NUMBER_VARS; j++) {
+                    if (opt_s[j] == 0) {
+                        c[j] += random.nextDouble();
+                    }
+                }
+                double constant = random.nextDouble();
+                double expected = constant;
+                for (int j = 0; j < NUMBER_VARS; j++) {
+                    expected += c[j] * opt_s[j];
+                }
+
+                LinearForm_LUDB objective = form(constant, c);
+                Pair<Double, Map<Integer, Double>> result = solver.solve(objective, constraints, NUMBER_VARS);
+                String lp_name = "sequence " + sequence + ", LP " + lp;
+                assertEquals(expected, result.getFirst(), TOLERANCE * (1 + Math.abs(expected)), lp_name);
+                assertSolution(result, objective, constraints, lp_name);
+            }
+        }
+    }
+
+    @Test
+    public void sameResultsAsSimplex() throws Exception {
+        Random random = new Random(2);
+        LpSolver reference = new LpSolverSimplex();
+        int infeasible = 0;
+        for (int sequence = 0; sequence < SEQUENCES; sequence++) {
+            LpSolver solver = new LpSolverWarmStart();
+            LinearForm_LUDB[] pool = new LinearForm_LUDB[NUMBER_CONSTRAINTS];
+            for (int i = 0; i < NUMBER_CONSTRAINTS; i++) {
+                pool[i] = randomForm(random);
+            }
+
+            boolean[] in_lp = new boolean[NUMBER_CONSTRAINTS];
+            for (int lp = 0; lp < LPS_PER_SEQUENCE; lp++) {
+                int changes = 1 + random.nextInt(3);
+                for (int k = 0; k < changes; k++) {
+                    int i = random.nextInt(NUMBER_CONSTRAINTS);
+                    in_lp[i] = !in_lp[i];
+                }
+                List<LinearForm_LUDB> constraints = new ArrayList<>();
+                for (int i = 0; i < NUMBER_CONSTRAINTS; i++) {
+                    if (in_lp[i]) {
+                        constraints.add(pool[i]);
+                    }
+                }
+                // mostly non-negative objectives, such that most LPs are bounded
+                LinearForm_LUDB objective = randomForm(random).add(form(0, 1, 1, 1, 1, 1, 1));
+
+                Pair<Double, Map<Integer, Double>> expected = reference.solve(objective, constraints, NUMBER_VARS);
+                Pair<Double, Map<Integer, Double>> result = solver.solve(objective, constraints, NUMBER_VARS);
+                String lp_name = "sequence " + sequence + ", LP " + lp;
+                if (expected.getFirst().isNaN()) {
+                    assertTrue(result.getFirst().isNaN(), lp_name + ": expected infeasible or unbounded, was " + result.getFirst());
+                    infeasible++;
+                    continue;
+                }
+                assertEquals(expected.getFirst(), result.getFirst(), TOLERANCE * (1 + Math.abs(expected.getFirst())), lp_name);
+                assertSolution(result, objective, constraints, lp_name);
+            }
+        }
+        // both kinds of LPs occurred
+        assertTrue(infeasible > 0 && infeasible < SEQUENCES * LPS_PER_SEQUENCE);
+    }
+
+
+    private static LinearForm_LUDB randomForm(Random random) {
+        double[] coeffs = new double[NUMBER_VARS];
+        for (int j = 0; j < NUMBER_VARS; j++) {
+            coeffs[j] = random.nextDouble() < 0.3 ? 0 : 2 * random.nextDouble() - 1;
+        }
+        return form(2 * random.nextDouble() - 1, coeffs);
+    }
+
+    private static void assertSolution(Pair<Double, Map<Integer, Double>> result, LinearForm_LUDB objective,
+                                       List<LinearForm_LUDB> constraints, String lp_name) {
+        Map<Integer, Double> s_values = result.getSecond();
+        for (int j = 0; j < NUMBER_VARS; j++) {
+            assertTrue(s_values.get(j) >= -TOLERANCE, lp_name + ": s_" + j + " < 0");
+        }
+        for (LinearForm_LUDB constraint : constraints) {
+            assertTrue(evaluate(constraint, s_values) >= -TOLERANCE, lp_name + ": violated " + constraint);
+        }
+        assertEquals(evaluate(objective, s_values), result.getFirst(), TOLERANCE * (1 + Math.abs(result.getFirst())), lp_name);
+    }
+}
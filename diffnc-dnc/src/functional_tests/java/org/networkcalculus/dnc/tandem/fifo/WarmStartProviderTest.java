@@ -0,0 +1,89 @@
+package org.networkcalculus.dnc.tandem.fifo;
+
+import org.junit.jupiter.api.Test;
+import org.networkcalculus.dnc.AnalysisConfig;
+import org.networkcalculus.dnc.curves.ArrivalCurve;
+import org.networkcalculus.dnc.curves.Curve;
+import org.networkcalculus.dnc.curves.MaxServiceCurve;
+import org.networkcalculus.dnc.curves.ServiceCurve;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Lukas Herll
+ *
+ * Checks that a DiffLUDB analysis warm-started from the exact optimum of a cold start yields the same delay bound. The
+ * first analysis with a WarmStartProvider finds no recorded problem (cold start) and records its s-values, the second
+ * analysis of the same tandem starts from them. The pure-Java active-set solver is used, i.e. no native NLopt is needed.
+ */
+public class WarmStartProviderTest {
+    private static final double TOLERANCE = 1e-6;
+
+    /**
+     * Four servers with nested crossflows (as in CompiledTermTest.nestedCrossflows).
+     */
+    @Test
+    public void exactWarmStartReproducesColdStart() throws Exception {
+        ServerGraph sg = new ServerGraph();
+        Server[] servers = addTandem(sg, new double[][]{{20, 0.5}, {15, 1}, {25, 0.2}, {10, 2}});
+        Flow foi = sg.addFlow("f0", tokenBucket(2, 5), servers[0], servers[3]);
+        sg.addFlow("f1", tokenBucket(1, 4), servers[0], servers[2]);
+        sg.addFlow("f2", tokenBucket(3, 1), servers[0]);
+        sg.addFlow("f3", tokenBucket(2, 6), servers[1], servers[2]);
+        sg.addFlow("f4", tokenBucket(1, 3), servers[3]);
+
+        AnalysisContext coldContext = javaSolverContext();
+        double coldDelay = analyse(sg, servers, foi, coldContext);
+
+        AnalysisContext warmContext = javaSolverContext();
+        WarmStartProvider warmStartProvider = new WarmStartProvider();
+        warmContext.setWarmStartProvider(warmStartProvider);
+        double recordedDelay = analyse(sg, servers, foi, warmContext);
+        assertEquals(0, warmStartProvider.getHits());
+        assertEquals(1, warmStartProvider.getMisses());
+        assertEquals(coldDelay, recordedDelay, TOLERANCE * Math.max(1, Math.abs(coldDelay)));
+
+        double warmDelay = analyse(sg, servers, foi, warmContext);
+        assertEquals(1, warmStartProvider.getHits());
+        assertEquals(coldDelay, warmDelay, TOLERANCE * Math.max(1, Math.abs(coldDelay)),
+                "the exact warm start did not reproduce the cold-start delay bound");
+    }
+
+
+    private static AnalysisContext javaSolverContext(){
+        AnalysisContext context = new AnalysisContext(NestedTandemAnalysis.mode.DIFF_LUDB);
+        context.setNloptAlg(202); // 202 == active-set solver (Java)
+        context.setParallelPortfolio(false);
+        return context;
+    }
+
+
+    private static double analyse(ServerGraph sg, Server[] servers, Flow foi, AnalysisContext context) throws Exception {
+        return new NestedTandemAnalysis(sg.getShortestPath(servers[0], servers[servers.length - 1]), foi,
+                sg.getFlows(), new AnalysisConfig(), context).performAnalysis().doubleValue();
+    }
+
+
+    private static Server[] addTandem(ServerGraph sg, double[][] rateLatencies) throws Exception {
+        MaxServiceCurve maxServiceCurve = Curve.getFactory().createRateLatencyMSC(100.0e6, 0.001);
+        Server[] servers = new Server[rateLatencies.length];
+        for(int i = 0; i < servers.length; i++){
+            ServiceCurve serviceCurve = Curve.getFactory().createRateLatency(rateLatencies[i][0], rateLatencies[i][1]);
+            servers[i] = sg.addServer(serviceCurve, maxServiceCurve);
+            servers[i].useMaxSC(false);
+            servers[i].useMaxScRate(false);
+            if(i > 0){
+                sg.addTurn(servers[i - 1], servers[i]);
+            }
+        }
+        return servers;
+    }
+
+
+    private static ArrivalCurve tokenBucket(double rate, double burst){
+        return Curve.getFactory().createTokenBucket(rate, burst);
+    }
+}
@@ -0,0 +1,210 @@
+package org.networkcalculus.dnc.demos;
+
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+import org.networkcalculus.dnc.tandem.analyses.FIFOTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
+import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Compares the active-set solver (algorithm code 202, see ActiveSetOptimiser) with SLSQP (40) and SBPLX (29) on the
+ * random_ff networks (see DemoDiffLUDB). Every network is analysed (all flows, DiffLUDB, initial thetas not
+ * approximated) with every algorithm, the first repetition only warms up the JIT.
+ *
+ * Speed: the time spent in the solver (start and solve, see AnalysisContext) and the total time per network and
+ * algorithm, measured in the same run. Quality: the delay bounds are compared with the SLSQP and SBPLX baselines in the
+ * data directory (DiffLUDB_<alg>_<iterations>_false_delay.csv). Prints, per network and algorithm, the mean relative
+ * deviation from each baseline (negative == tighter bounds) and the number of flows with a tighter (looser) bound than
+ * the better one of both baselines.
+ *
+ * args[0] == the directory of the baselines (default: the data directory of the repository, i.e. ../data if run in
+ *              diffnc-dnc, data if run in the repository root)
+ * args[1] == limit number of iterations, selects the baselines as well (default 500)
+ * args[2] == comma-separated algorithm codes (default: 202,40,29)
+ * args[3] == number of repetitions (default 3)
+ * args[4] == comma-separated network IDs (default: all)
+ */
+public class CompareActiveSetSolver {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final int SLSQP = 40;
+    private static final int SBPLX = 29;
+    //relative difference below which two delay bounds count as equal
+    private static final double EQUALITY_TOLERANCE = 1e-6;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void main(String[] args) throws Exception {
+        String baselineDir = args.length > 0 ? args[0] : defaultBaselineDir();
+        int iterations = args.length > 1 ? Math.max(Integer.parseInt(args[1]), 0) : 500;
+        List<Integer> algs = parseList(args.length > 2 ? args[2] : "202,40,29");
+        int repetitions = args.length > 3 ? Math.max(Integer.parseInt(args[3]), 2) : 3;
+        List<Integer> networkIDs = new ArrayList<>();
+        if(args.length > 4){
+            networkIDs = parseList(args[4]);
+        }
+        else{
+            for(int i = 1; i <= 34; i++){
+                networkIDs.add(i);
+            }
+        }
+
+        Map<String, Double> slsqpBaseline = readBaseline(baselineDir, SLSQP, iterations);
+        Map<String, Double> sbplxBaseline = readBaseline(baselineDir, SBPLX, iterations);
+
+        System.out.println("Netid,alg,solver time (ns),total time (ns),rel. deviation SLSQP baseline,"
+                + "rel. deviation SBPLX baseline,#tighter,#looser");
+        for(int networkID : networkIDs){
+            if(DemoDiffLUDB.getServerGraphFromNetwork(networkID) == null){
+                continue;
+            }
+            for(int alg : algs){
+                AnalysisContext settings = new AnalysisContext(NestedTandemAnalysis.mode.DIFF_LUDB);
+                settings.setNloptAlg(alg);
+                settings.setIterationsMax(iterations);
+                settings.setApproximateInitialThetas(false);
+
+                long solverTimeNS = 0;
+                long totalTimeNS = 0;
+                Map<Integer, Double> delays = null;
+                for(int r = 0; r < repetitions; r++){
+                    long[] times = new long[2];
+                    delays = analyseNetwork(settings, networkID, times);
+                    //the first repetition warms up the JIT
+                    if(r > 0){
+                        solverTimeNS += times[0];
+                        totalTimeNS += times[1];
+                    }
+                }
+
+                double deviationSlsqp = meanRelativeDeviation(networkID, delays, slsqpBaseline);
+                double deviationSbplx = meanRelativeDeviation(networkID, delays, sbplxBaseline);
+                int tighter = 0;
+                int looser = 0;
+                for(Map.Entry<Integer, Double> delay : delays.entrySet()){
+                    String key = networkID + "," + delay.getKey();
+                    double best = Math.min(slsqpBaseline.getOrDefault(key, Double.POSITIVE_INFINITY),
+                            sbplxBaseline.getOrDefault(key, Double.POSITIVE_INFINITY));
+                    if(Double.isInfinite(best)){
+                        continue;
+                    }
+                    double deviation = relativeDeviation(delay.getValue(), best);
+                    if(deviation < -EQUALITY_TOLERANCE){
+                        tighter++;
+                    }
+                    else if(deviation > EQUALITY_TOLERANCE){
+                        looser++;
+                    }
+                }
+                System.out.println(networkID + "," + alg + "," + solverTimeNS / (repetitions - 1) + ","
+                        + totalTimeNS / (repetitions - 1) + "," + deviationSlsqp + "," + deviationSbplx + ","
+                        + tighter + "," + looser);
+            }
+        }
+    }
+
+
+    /**
+     * Analyses all flows of a fresh instance of the network.
+     * @param times
+     *                  receives the time spent in the solver and the total time (ns)
+     * @return  the delay bounds of the flows (true flow ID -> delay bound)
+     */
+    private static Map<Integer, Double> analyseNetwork(AnalysisContext settings, int networkID, long[] times)
+            throws Exception {
+        ServerGraph sg = DemoDiffLUDB.getServerGraphFromNetwork(networkID);
+        Map<Integer, Double> delays = new HashMap<>();
+        long start = System.nanoTime();
+        for(Flow flow : sg.getFlows()){
+            AnalysisContext context = settings.copySettings();
+            context.setNetworkID(networkID);
+            context.setNetworkFoi(DemoDiffLUDB.getFoiTrueID(flow));
+
+            FIFOTandemAnalysis fta = new FIFOTandemAnalysis(sg, context);
+            fta.performAnalysis(flow);
+            delays.put(DemoDiffLUDB.getFoiTrueID(flow), fta.getDelayBound().doubleValue());
+            times[0] += context.getAggrTimeToStartSolverInNS() + context.getAggrTimeToSolveNLPInNS();
+        }
+        times[1] = System.nanoTime() - start;
+        return delays;
+    }
+
+
+    /**
+     * @return  the data directory of the repository (next to diffnc-dnc), relative to the working directory
+     */
+    private static String defaultBaselineDir(){
+        return Files.isDirectory(Paths.get("..", "data")) ? Paths.get("..", "data").toString() : "data";
+    }
+
+
+    /**
+     * Reads the delay bounds of a baseline (csv format of DemoDiffLUDB).
+     * @return  "Netid,Fid" -> delay bound; empty if the baseline does not exist
+     */
+    private static Map<String, Double> readBaseline(String baselineDir, int alg, int iterations) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        Path path = Paths.get(baselineDir, "DiffLUDB_" + alg + "_" + iterations + "_false_delay.csv");
+        if(!Files.exists(path)){
+            System.out.println("No baseline found at " + path.toAbsolutePath());
+            return baseline;
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        //skip the header
+        for(int i = 1; i < lines.size(); i++){
+            String[] columns = lines.get(i).split(",");
+            if(columns.length < 3){
+                continue;
+            }
+            baseline.put(columns[0].trim() + "," + columns[1].trim(), Double.parseDouble(columns[2].trim()));
+        }
+        return baseline;
+    }
+
+
+    /**
+     * @return  the mean relative deviation of the delay bounds from the baseline over all flows contained in the
+     *          baseline; NaN if there is no such flow
+     */
+    private static double meanRelativeDeviation(int networkID, Map<Integer, Double> delays,
+                                                Map<String, Double> baseline){
+        double sum = 0;
+        int count = 0;
+        for(Map.Entry<Integer, Double> delay : delays.entrySet()){
+            Double reference = baseline.get(networkID + "," + delay.getKey());
+            if(reference != null){
+                sum += relativeDeviation(delay.getValue(), reference);
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+
+    private static double relativeDeviation(double delay, double reference){
+        return (delay - reference) / Math.max(Math.abs(reference), Double.MIN_NORMAL);
+    }
+
+
+    private static List<Integer> parseList(String list){
+        List<Integer> values = new ArrayList<>();
+        for(String value : list.split(",")){
+            values.add(Integer.parseInt(value.trim()));
+        }
+        return values;
+    }
+}
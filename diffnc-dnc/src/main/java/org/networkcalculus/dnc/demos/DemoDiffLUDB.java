@@ -1,22 +1,43 @@
 package org.networkcalculus.dnc.demos;
 
+import org.networkcalculus.dnc.AnalysisConfig;
+import org.networkcalculus.dnc.feedforward.ArrivalBoundCacheFIFO;
+import org.networkcalculus.dnc.feedforward.ArrivalBoundPrecomputationFIFO;
 import org.networkcalculus.dnc.network.server_graph.Flow;
 import org.networkcalculus.dnc.network.server_graph.ServerGraph;
 import org.networkcalculus.dnc.optree.toolchain.FileManager;
-import org.networkcalculus.dnc.optree.toolchain.OpTreeAnalysis;
+import org.networkcalculus.dnc.optree.toolchain.ObjectiveCache;
+import org.networkcalculus.dnc.optree.toolchain.OptimiserPool;
 import org.networkcalculus.dnc.tandem.analyses.FIFOTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
+import org.networkcalculus.dnc.tandem.fifo.LeftOverServiceCache;
 import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.PersistentSubTandemStore;
+import org.networkcalculus.dnc.tandem.fifo.WarmStartProvider;
+import org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LUDB_LP;
 import org.networkcalculus.dnc.test.feedforward_networks.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Lukas Herll
  *
- * Runs the DiffLUDB algorithm on a given set of networks (sequentially assuming each flow as the foi).
+ * Runs the DiffLUDB algorithm on a given set of networks (assuming each flow as the foi).
+ * The flows of a network are either analysed sequentially or concurrently on a thread pool of configurable size.
  * The results are stored in two csv files at a specified location.
+ *
+ * With code 500, the main contenders can be run as a pipeline: every flow is analysed with all solvers one after the
+ * other, sharing an ObjectiveCache. Sub-tandems that are identical for several solvers (same nesting tree and curves)
+ * are derived only once, and only the NLP is solved per solver.
  */
 public class DemoDiffLUDB {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -28,14 +49,39 @@ public class DemoDiffLUDB {
 
     private int totalNoOfNonConvexTandems = 0;
 
-    private static int analysis_codes_main_contenders[] = {11,12,13,15,24,25,27,28,29,34,40,100};
+    //the settings every analysis starts with (each analysed flow gets its own copy)
+    private final AnalysisContext settings;
+    //the number of flows that are analysed concurrently; <= 1 == sequential
+    private final int threads;
+
+    //settings parsed from the command line
+    private static AnalysisContext settingsFromArgs = new AnalysisContext(NestedTandemAnalysis.mode.DIFF_LUDB);
+    private static int threadsFromArgs = 1;
+    private static boolean pipelineFromArgs = false;
+    private static boolean precomputeArrivalBoundsFromArgs = false;
+    //share the arrival bounds and the left-over service curves of the sub-tandems between the flows of a network
+    private static boolean shareSubTandemsFromArgs = false;
+    //several iteration limits given on the command line (null == a single limit)
+    private static int[] iterationLimitsFromArgs = null;
+    //take the solutions of the limited runs from the traces of the longer runs instead of running the solver
+    private static boolean replayFromTracesFromArgs = false;
+
+    static int analysis_codes_main_contenders[] = {11,12,13,15,24,25,27,28,29,34,40,100};
+
+    static final String DELAY_HEADERS = "Netid,Fid,DiffLUDB\n";
     // 26 would be preferable over 27 but it crashes due to finding a theta < 0
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //constructors
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     public DemoDiffLUDB(){
+        this(new AnalysisContext(NestedTandemAnalysis.mode.DIFF_LUDB), 1);
+    }
+
+    public DemoDiffLUDB(AnalysisContext settings, int threads){
         fileManager = FileManager.getInstance();
+        this.settings = settings;
+        this.threads = threads;
     }
 
 
@@ -46,51 +92,176 @@ public class DemoDiffLUDB {
     args[1] == optimization algorithm (NLopt numbering!)
       - 100 for min of SLSQP and SBPLX
       - 500 for the main contenders above
+      - 200 for the pure-Java projected subgradient solver, 201 for the pure-Java Nelder-Mead solver (no native NLopt)
+      - 202 for the pure-Java active-set solver on the linear pieces of the objective (see CompareActiveSetSolver)
     args[2] == limit number of iterations; <=0 == no limit
+      - a comma-separated list (e.g. 0,250,500,1000) runs all limits in one pipeline, see run_anytime and args[11]
     args[3] == boolean: use LB-FF as starting point
+    args[4] == number of flows analysed concurrently; <=1 == sequential
+    args[5] == boolean: run the main contenders (code 500) as a pipeline (optional)
+    args[6] == boolean: precompute the arrival bounds of all flows bottom-up before the flows are analysed (optional)
+    args[7] == directory of a persistent store of the solved sub-tandems, shared with other (also concurrent) runs (optional)
+    args[8] == boolean: start the NLPs from the s-values of the most similar sub-tandem solved before (optional)
+    args[9] == LB_FF or DS_FF: bound the s-parameters above using the delay bound of this analysis (optional)
+    args[10] == boolean: share the arrival bounds and the left-over service curves of the sub-tandems between the flows
+                of a network (optional, default false; the shared sub-tandems are counted in #CachedSubTandems)
+    args[11] == boolean: with several iteration limits, take the results of the limited runs from the best-so-far
+                solutions the longer runs recorded at these limits instead of running the solver again (optional, default
+                false). The replayed results and solver times may differ from those of separate runs with the limit.
+    args[12] == boolean: explore the decompositions of LUDB_FF analyses on the common fork-join pool (optional, default
+                false)
+    args[13] == boolean: compute the independent arrival bounds of a tandem on the common fork-join pool (optional,
+                default false; the solver times are then measured under contention)
      */
     public static void main(String[] args) {
         try{
-            OpTreeAnalysis.nlopt_alg = Integer.parseInt(args[0]);
+            settingsFromArgs.setNloptAlg(Integer.parseInt(args[0]));
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            // default value defined in class OpTreeAnalysis: 40 == SLSQP
+            // default value defined in class AnalysisContext: 40 == SLSQP
         }
         try{
-            OpTreeAnalysis.iterations_max = Integer.parseInt(args[1]);
-            if(OpTreeAnalysis.iterations_max <= 0 ) {
-                OpTreeAnalysis.iterations_max = 0;
+            if(args[1].contains(",")){
+                iterationLimitsFromArgs = Arrays.stream(args[1].split(",")).mapToInt(l -> Math.max(Integer.parseInt(l.trim()), 0)).toArray();
+            }
+            else {
+                int iterations_max = Integer.parseInt(args[1]);
+                settingsFromArgs.setIterationsMax(Math.max(iterations_max, 0));
             }
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            OpTreeAnalysis.iterations_max = 0;
+            settingsFromArgs.setIterationsMax(0);
         }
 
         //decide whether to approximate the initial theta settings in NestedTandemAnalysis
         try{
-            NestedTandemAnalysis.approximateInitialThetas = Boolean.parseBoolean(args[2]);
+            settingsFromArgs.setApproximateInitialThetas(Boolean.parseBoolean(args[2]));
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            NestedTandemAnalysis.approximateInitialThetas = false;
+            settingsFromArgs.setApproximateInitialThetas(false);
+        }
+
+        //decide how many flows are analysed concurrently
+        if(args.length > 3){
+            try{
+                threadsFromArgs = Math.max(Integer.parseInt(args[3]), 1);
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+                threadsFromArgs = 1;
+            }
+        }
+
+
+        //decide whether the main contenders are run as a pipeline
+        if(args.length > 4){
+            pipelineFromArgs = Boolean.parseBoolean(args[4]);
+        }
+
+        //decide whether the arrival bounds are precomputed (only if all flows of a network are analysed sequentially)
+        if(args.length > 5){
+            precomputeArrivalBoundsFromArgs = Boolean.parseBoolean(args[5]);
         }
 
+        //decide whether solved sub-tandems are taken from/added to a persistent store
+        if(args.length > 6 && !args[6].isEmpty()){
+            try{
+                settingsFromArgs.setSubTandemStore(PersistentSubTandemStore.open(Paths.get(args[6]), PersistentSubTandemStore.DEFAULT_MAX_BYTES));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        //decide whether the NLPs are warm-started (shared by all analyses of the run)
+        if(args.length > 7 && Boolean.parseBoolean(args[7])){
+            settingsFromArgs.setWarmStartProvider(new WarmStartProvider());
+        }
+
+        //decide whether the s-parameters are bounded above (by an LB_FF or DS_FF pass on every sub-tandem)
+        if(args.length > 8 && !args[8].isEmpty()){
+            try{
+                settingsFromArgs.setParameterBoundsMode(NestedTandemAnalysis.mode.valueOf(args[8]));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
+        //decide whether the flows of a network share their arrival bounds and sub-tandems
+        if(args.length > 9){
+            shareSubTandemsFromArgs = Boolean.parseBoolean(args[9]);
+        }
 
-        if(OpTreeAnalysis.nlopt_alg != 500) {
-            run_with_analysis_code(OpTreeAnalysis.nlopt_alg);
+        //decide whether the limited runs are replayed from the traces of the longer runs
+        if(args.length > 10){
+            replayFromTracesFromArgs = Boolean.parseBoolean(args[10]);
+        }
+
+        //decide whether the LUDB decompositions are explored concurrently
+        if(args.length > 11){
+            settingsFromArgs.setParallelLUDB(Boolean.parseBoolean(args[11]));
+        }
+
+        //decide whether independent arrival bounds are computed concurrently
+        if(args.length > 12){
+            settingsFromArgs.setParallelArrivalBounds(Boolean.parseBoolean(args[12]));
+        }
+
+        //the native NLopt optimisers are reused by all analyses of the run and released at its end
+        OptimiserPool optimiserPool = new OptimiserPool();
+        settingsFromArgs.setOptimiserPool(optimiserPool);
+
+
+        if(iterationLimitsFromArgs != null) {
+            run_anytime(settingsFromArgs.getNloptAlg() != 500 ?
+                    new int[]{settingsFromArgs.getNloptAlg()} : analysis_codes_main_contenders, iterationLimitsFromArgs);
+        } else if(settingsFromArgs.getNloptAlg() != 500) {
+            run_with_analysis_code(settingsFromArgs.getNloptAlg());
+        } else if(pipelineFromArgs) {
+            List<AnalysisContext> settingsList = new ArrayList<>();
+            for(int analysis_code : analysis_codes_main_contenders){
+                AnalysisContext settings = settingsFromArgs.copySettings();
+                settings.setNloptAlg(analysis_code);
+                settingsList.add(settings);
+            }
+            run_pipeline(settingsList);
         } else {
             for(int analysis_code : analysis_codes_main_contenders) run_with_analysis_code(analysis_code);
         }
+
+        optimiserPool.close();
+        if(settingsFromArgs.isPrintToConsole()){
+            System.out.println("Optimiser pool: created " + optimiserPool.getCreated() + " NLopt optimisers, reused "
+                    + optimiserPool.getReused());
+        }
+
+        WarmStartProvider warmStartProvider = settingsFromArgs.getWarmStartProvider();
+        if(warmStartProvider != null && settingsFromArgs.isPrintToConsole()){
+            System.out.println("Warm start: " + warmStartProvider.getHits() + " NLPs warm-started, " + warmStartProvider.getMisses()
+                    + " cold" + String.format(" (hit rate %.2f)", warmStartProvider.getHitRate()));
+        }
+        PersistentSubTandemStore store = settingsFromArgs.getSubTandemStore();
+        if(store != null){
+            if(settingsFromArgs.isPrintToConsole()){
+                System.out.println("Persistent store: reused " + store.getHits() + " sub-tandems, added " + store.getStores()
+                        + String.format(" (hit rate %.2f)", store.getHitRate()));
+            }
+            try{
+                store.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
     }
 
     private static void run_with_analysis_code(int analysis_code) {
-        OpTreeAnalysis.nlopt_alg = analysis_code; //29 = SBPLX, 40 = SLSQP, 100 = SLSQPminSBPLX
+        AnalysisContext settings = settingsFromArgs.copySettings();
+        settings.setNloptAlg(analysis_code); //29 = SBPLX, 40 = SLSQP, 100 = SLSQPminSBPLX
 
         //parameters that set the file paths in this class and OpTreeAnalysis depending on whether the code is run from an IDE or as a jar
         boolean runAsJar = false;
         int jarType = 1;
         //0 : local jar, 1 : WS1, 2 : WS2
 
-        DemoDiffLUDB demo = new DemoDiffLUDB();
+        DemoDiffLUDB demo = new DemoDiffLUDB(settings, threadsFromArgs);
 
         try {
             demo.run();
@@ -101,9 +272,103 @@ public class DemoDiffLUDB {
     }
 
 
+    /**
+     * Runs every analysis code with every iteration limit in one pipeline (see run_pipeline). By default, every limit is
+     * solved by a run of its own, exactly as by separate runs.
+     * With replayFromTraces, the runs with the larger limits come first and record their best-so-far solutions at the
+     * smaller limits (SolverTrace); whenever a run with a smaller limit meets an identical sub-tandem, it takes the
+     * solution from the trace instead of running the solver, and is charged with the time the traced run needed to reach
+     * the limit. NLopt's result for an evaluation limit is not necessarily the best-so-far solution of a longer run
+     * (e.g. SBPLX and MMA adapt their steps to the remaining budget), hence replayed bounds and solver times may differ
+     * from those of separate runs. The results are written to the same files as by separate runs.
+     * @param analysis_codes
+     *                          the NLopt algorithms
+     * @param iteration_limits
+     *                          the iteration limits; <=0 == no limit
+     */
+    private static void run_anytime(int[] analysis_codes, int[] iteration_limits) {
+        //no limit first, then descending
+        int[] limits = Arrays.stream(iteration_limits).map(l -> l <= 0 ? Integer.MAX_VALUE : l).distinct()
+                .sorted().map(l -> l == Integer.MAX_VALUE ? 0 : l).toArray();
+        //the checkpoints enable the replay (null == every limit is run)
+        int[] checkpoints = replayFromTracesFromArgs ? Arrays.stream(limits).filter(l -> l > 0).toArray() : null;
+        if(checkpoints != null){
+            System.out.println("Note: the runs with the iteration limits " + Arrays.toString(checkpoints) + " are replayed "
+                    + "from the best-so-far solutions of the longer runs; their delay bounds and solver times are taken "
+                    + "from the traces and may differ from those of separate runs with these limits");
+        }
+
+        List<AnalysisContext> settingsList = new ArrayList<>();
+        for(int analysis_code : analysis_codes){
+            for(int i = limits.length - 1; i >= 0; i--){
+                AnalysisContext settings = settingsFromArgs.copySettings();
+                settings.setNloptAlg(analysis_code);
+                settings.setIterationsMax(limits[i]);
+                settings.setEvaluationCheckpoints(checkpoints);
+                settingsList.add(settings);
+            }
+        }
+        run_pipeline(settingsList);
+    }
+
+
+    /**
+     * Runs the analyses of all given settings as a pipeline: each network is instantiated once per setting, and every
+     * flow is analysed with all settings (in the given order) before the next flow is analysed. The analyses of one flow
+     * (or of one network, if the flows are analysed sequentially) share an ObjectiveCache. The results are written to the
+     * same files as by run_with_analysis_code.
+     * @param settingsList
+     *                          the settings (e.g. one per NLopt algorithm)
+     */
+    private static void run_pipeline(List<AnalysisContext> settingsList) {
+        List<DemoDiffLUDB> demos = new ArrayList<>();
+        try {
+            for(AnalysisContext settings : settingsList){
+                DemoDiffLUDB demo = new DemoDiffLUDB(settings, threadsFromArgs);
+                demo.createResultFiles();
+                demos.add(demo);
+            }
+
+            //networks 1 to 34
+            for(int i = 1; i <= 34; i++){
+                if(threadsFromArgs > 1){
+                    runPipelineOnNetworkConcurrently(demos, i);
+                }
+                else{
+                    runPipelineOnNetwork(demos, i);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+
     public void run() throws Exception {
+        createResultFiles();
+
+        //run a single analysis (specific flow of one network)
+        //runOnNetwork(13, 56);
+        //runOnNetwork(Netid,-1);
+
+        //networks 1 to 34
+        for(int i = 1; i <= 34; i++){
+            if(threads > 1){
+                runOnNetworkConcurrently(i, -1);
+            }
+            else{
+                runOnNetwork(i, -1);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the analysis mode to DiffLUDB and creates the delay and runtime files of this demo's analysis code.
+     */
+    private void createResultFiles(){
         //set the analysis mode to DiffLUDB
-        NestedTandemAnalysis.selected_mode = NestedTandemAnalysis.mode.DIFF_LUDB;
+        settings.setSelectedMode(NestedTandemAnalysis.mode.DIFF_LUDB);
 
         //set the output file path
         final String filePath = System.getProperty("user.home") + "/DiffLUDB_experiments/";
@@ -111,38 +376,21 @@ public class DemoDiffLUDB {
 
         //Create the files containing the results (delay and runtime)
         String baseFileName = "DiffLUDB_"
-                + OpTreeAnalysis.nlopt_alg + "_"
-                + OpTreeAnalysis.iterations_max + "_"
-                + NestedTandemAnalysis.approximateInitialThetas;
+                + settings.getNloptAlg() + "_"
+                + settings.getIterationsMax() + "_"
+                + settings.isApproximateInitialThetas();
         String delayFileName = baseFileName + "_delay";
         delayCompPath = filePath + "" + delayFileName + ".csv";
-        String delayHeaders = "Netid,Fid,DiffLUDB\n";
+        String delayHeaders = DELAY_HEADERS;
         File delayCompFile = fileManager.safeCreateFile(delayCompPath, delayHeaders);
         delayCompPath = delayCompFile.getAbsolutePath();
 
         String runTimeCompName = baseFileName + "_runtime";
         runTimeCompPath = filePath + "" + runTimeCompName + ".csv";
         //String runtimeHeaders = "NetID,FlowID,DiffLUDB(ms),DiffLUDB(s),DiffLUDB(min),DiffLUDB(h)\n";
-        //store the runtime of the entire network analysis, the number of analysed sub-tandems, the aggregated time to
-        //derive the objective function from the nesting tree, and the aggregated time to solve the NLP
-        String runtimeHeaders = "Netid,Fid,DiffLUDB,DiffLUDB (ms),DiffLUDB (min),#SubTandems," +
-                (NestedTandemAnalysis.approximateInitialThetas ? "init param values (ns),init param values (ms),init param values (min)," : "") +
-                "cut-set + leftover (aggr ns),cut-set + leftover (aggr ms),cut-set + leftover (aggr min)," +
-                "objFunc Derivation (aggr ns),objFunc Derivation (aggr ms),objFunc Derivation (aggr min)," +
-                "NLopt wrapper (aggr ns),NLopt wrapper (aggr ms),NLopt wrapper (aggr min),"+
-                "NLP (aggr ns),NLP (aggr ms),NLP (aggr min)," +
-                "service curve (aggr ns),service curve(aggr ms), service curve(aggr min)\n";
+        String runtimeHeaders = getRuntimeHeaders(settings.isApproximateInitialThetas());
         File runtimeCompFile = fileManager.safeCreateFile(runTimeCompPath, runtimeHeaders);
         runTimeCompPath = runtimeCompFile.getAbsolutePath();
-
-        //run a single analysis (specific flow of one network)
-        //runOnNetwork(13, 56);
-        //runOnNetwork(Netid,-1);
-
-        //networks 1 to 34
-        for(int i = 1; i <= 34; i++){
-            runOnNetwork(i, -1);
-        }
     }
 
 
@@ -157,97 +405,394 @@ public class DemoDiffLUDB {
      * @throws Exception
      */
     private void runOnNetwork(int networkID, int flowID) throws Exception{
-        NestedTandemAnalysis.networkID = networkID;
-
         //instantiate the serverGraph
         ServerGraph sg = getServerGraphFromNetwork(networkID);
         if(sg == null){
             return;
         }
-
+        //the LPs of the LUDB analyses are only cached per network
+        LUDB_LP.clearLpCache();
+
+
+        //the analyses of all flows may share the arrival bounds and the left-over service curves of the sub-tandems
+        //(precomputed arrival bounds are always shared)
+        boolean precompute = flowID < 0 && precomputeArrivalBoundsFromArgs;
+        ArrivalBoundCacheFIFO arrivalBoundCache = shareSubTandemsFromArgs || precompute ? new ArrivalBoundCacheFIFO() : null;
+        LeftOverServiceCache leftOverServiceCache = shareSubTandemsFromArgs ? new LeftOverServiceCache() : null;
+        AnalysisContext networkSettings = settings.copySettings();
+        networkSettings.setArrivalBoundCache(arrivalBoundCache);
+        networkSettings.setLeftOverServiceCache(leftOverServiceCache);
+
+        //all-flows mode: compute the arrival bounds needed by the flows bottom-up, the analyses of the flows find them in
+        //the cache (the time is not part of the flows' runtimes)
+        if(precompute){
+            AnalysisContext context = networkSettings.copySettings();
+            context.setNetworkID(networkID);
+            long startTime = System.nanoTime();
+            int noOfArrivalBounds = ArrivalBoundPrecomputationFIFO.precomputeArrivalBounds(sg, new AnalysisConfig(), context, sg.getFlows());
+            if(settings.isPrintToConsole()){
+                System.out.println("Network " + networkID + ": precomputed " + noOfArrivalBounds + " arrival bounds in "
+                        + (System.nanoTime() - startTime) / 1000000 + " ms");
+            }
+        }
 
         //iteratively declare all flows the foi and run the analysis
         for(Flow foi: sg.getFlows()){
             //we need to extract the foi's true ID from its alias. (During the analysis the flows get re-created in a random
             //different order. As a result, their ID's change randomly, but their original ID's are kept in their aliases)
-            int foiTrueID = Integer.valueOf(foi.getAlias().substring(1, foi.getAlias().length()));
+            int foiTrueID = getFoiTrueID(foi);
             if(flowID >= 0 && foiTrueID != flowID){
                 continue;
             }
 
-            //System.out.println("////////////////////////////////////////////////////////////////////////////////////////////" +
-            //       "////////////////////////\nAnalysing network " + networkID + " with foi " + foiTrueID + "\n");
-
-            //reset the subnetwork index used in the DiffLUDB analysis to name the files (see NestedTandemAnalysis), as well
-            //as the aggregated time measurements
-            NestedTandemAnalysis.subNetwork = 0;
-            NestedTandemAnalysis.aggrTimeToFindInitialThetasInNS = 0;
-            NestedTandemAnalysis.aggrTimeToDeriveObjFuncInNS = 0;
-            NestedTandemAnalysis.aggrTimeToStartSolverInNS = 0;
-            NestedTandemAnalysis.aggrTimeToSolveNLPInNS = 0;
-            NestedTandemAnalysis.aggrTimeToComputeServiceCurveInNS = 0;
-            //set the ID of the foi
-            NestedTandemAnalysis.networkFoi = foiTrueID;
-
-            //start the analysis and take note of the run times
-            long startTime = System.nanoTime();
+            String[] rows = analyseFlow(networkSettings, networkID, sg, foi, foiTrueID);
 
-            FIFOTandemAnalysis fta = new FIFOTandemAnalysis(sg);
-            fta.performAnalysis(foi);
+            //write the delay and runtime into the respective files
+            fileManager.appendToFile(delayCompPath, rows[0]);
+            fileManager.appendToFile(runTimeCompPath, rows[1]);
+        }
+        printArrivalBoundCacheStatistics(networkID, arrivalBoundCache);
+        printLeftOverServiceCacheStatistics(networkID, leftOverServiceCache);
+        printLpCacheStatistics(networkID);
+    }
+
+
+    /**
+     * Like runOnNetwork, but analyses the flows of the network concurrently on a thread pool with <code>threads</code>
+     * threads. Every flow is analysed on its own instance of the network (the DiffLUDB analysis changes flow aliases)
+     * and with its own AnalysisContext (if sub-tandems are shared, all contexts share a LeftOverServiceCache). The results
+     * are written in the same order as in runOnNetwork.
+     * @param networkID
+     *                      the ID of the network
+     * @param flowID
+     *                      the ID of the flow to be analysed. When a valid ID is specified, only the flow matching this ID
+     *                      will be analysed in the network. If a negative value is provided, all flows will be analysed.
+     * @throws Exception
+     */
+    private void runOnNetworkConcurrently(int networkID, int flowID) throws Exception{
+        ServerGraph sg = getServerGraphFromNetwork(networkID);
+        if(sg == null){
+            return;
+        }
+        //the LPs of the LUDB analyses are only cached per network
+        LUDB_LP.clearLpCache();
+
+        //the sub-tandems' left-over service curves do not depend on the instance of the network => may be shared by all tasks
+        LeftOverServiceCache leftOverServiceCache = shareSubTandemsFromArgs ? new LeftOverServiceCache() : null;
+        AnalysisContext networkSettings = settings.copySettings();
+        networkSettings.setLeftOverServiceCache(leftOverServiceCache);
 
-            long runTimeNS = System.nanoTime() - startTime;
-            long runTimeMS = runTimeNS / 1000000;
-            long runTimeSec = runTimeMS / 1000;
-            long runTimeMin = runTimeSec / 60;
-            long runTimeHours = runTimeMin / 60;
-
-            long initialParamValuesNS = NestedTandemAnalysis.aggrTimeToFindInitialThetasInNS;
-            long initialParamValuesMS = initialParamValuesNS / 1000000;
-            long initialParamValuesMin = initialParamValuesMS / (1000*60);
-            long objFunNS = NestedTandemAnalysis.aggrTimeToDeriveObjFuncInNS;
-            long objFuncMS = objFunNS / 1000000;
-            long objFuncMin = objFuncMS / (1000*60);
-            long solverStartNS = NestedTandemAnalysis.aggrTimeToStartSolverInNS;
-            long solverStartMS = solverStartNS / 1000000;
-            long solverStartMin = solverStartMS / (1000*60);
-            long nlpNS = NestedTandemAnalysis.aggrTimeToSolveNLPInNS;
-            long nlpMS = nlpNS / 1000000;
-            long nlpMin = nlpMS / (1000*60);
-            long serviceCurveNS = NestedTandemAnalysis.aggrTimeToComputeServiceCurveInNS;
-            long serviceCurveMS = serviceCurveNS / 1000000;
-            long serviceCurveMin = serviceCurveMS / (1000*60);
-
-            long cutSetNS = runTimeNS - (initialParamValuesNS + objFunNS + solverStartNS + nlpNS + serviceCurveNS);
-            long cutSetMS = cutSetNS / 1000000;
-            long cutSetMin = cutSetMS / (1000*60);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<String[]>> results = new ArrayList<>();
+        try{
+            for(Flow flow : sg.getFlows()){
+                int foiTrueID = getFoiTrueID(flow);
+                if(flowID >= 0 && foiTrueID != flowID){
+                    continue;
+                }
+
+                results.add(pool.submit(() -> {
+                    //each task works on its own copy of the network
+                    ServerGraph sgTask = getServerGraphFromNetwork(networkID);
+                    for(Flow foi : sgTask.getFlows()){
+                        if(getFoiTrueID(foi) == foiTrueID){
+                            return analyseFlow(networkSettings, networkID, sgTask, foi, foiTrueID);
+                        }
+                    }
+                    throw new IllegalStateException("Flow " + foiTrueID + " not found in network " + networkID);
+                }));
+            }
 
             //write the delay and runtime into the respective files
-            fileManager.appendToFile(delayCompPath, networkID + "," + foiTrueID + "," + fta.getDelayBound() + "\n");
-            if(NestedTandemAnalysis.approximateInitialThetas){
-                fileManager.appendToFile(runTimeCompPath, String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
-                        networkID, foiTrueID, runTimeNS, runTimeMS, runTimeMin, NestedTandemAnalysis.subNetwork,
-                        cutSetNS, cutSetMS, cutSetMin,
-                        initialParamValuesNS, initialParamValuesMS, initialParamValuesMin,
-                        objFunNS, objFuncMS, objFuncMin,
-                        solverStartNS, solverStartMS, solverStartMin,
-                        nlpNS, nlpMS, nlpMin,
-                        serviceCurveNS, serviceCurveMS, serviceCurveMin));
+            for(Future<String[]> result : results){
+                try{
+                    String[] rows = result.get();
+                    fileManager.appendToFile(delayCompPath, rows[0]);
+                    fileManager.appendToFile(runTimeCompPath, rows[1]);
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
             }
-            else{
-                fileManager.appendToFile(runTimeCompPath, String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
-                        networkID, foiTrueID,
-                        runTimeNS, runTimeMS, runTimeMin, NestedTandemAnalysis.subNetwork,
-                        cutSetNS, cutSetMS, cutSetMin,
-                        objFunNS, objFuncMS, objFuncMin,
-                        solverStartNS, solverStartMS, solverStartMin,
-                        nlpNS, nlpMS, nlpMin,
-                        serviceCurveNS, serviceCurveMS, serviceCurveMin));
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        printLeftOverServiceCacheStatistics(networkID, leftOverServiceCache);
+        printLpCacheStatistics(networkID);
+    }
+
+
+    /**
+     * Like runOnNetwork, but analyses every flow with the analysis codes of all demos (one after the other). Each demo
+     * works on its own instance of the network and processes the flows in the same order as runOnNetwork, all analyses
+     * of the network share one ObjectiveCache (and, if sub-tandems are shared, one ArrivalBoundCacheFIFO).
+     * @param demos
+     *                      the demos, one per analysis code
+     * @param networkID
+     *                      the ID of the network
+     * @throws Exception
+     */
+    private static void runPipelineOnNetwork(List<DemoDiffLUDB> demos, int networkID) throws Exception{
+        List<ServerGraph> sgs = new ArrayList<>();
+        List<List<Flow>> flows = new ArrayList<>();
+        for(DemoDiffLUDB demo : demos){
+            ServerGraph sg = getServerGraphFromNetwork(networkID);
+            if(sg == null){
+                return;
             }
+            sgs.add(sg);
+            flows.add(new ArrayList<>(sg.getFlows()));
+        }
+        //the LPs of the LUDB analyses are only cached per network
+        LUDB_LP.clearLpCache();
+
+        ObjectiveCache cache = new ObjectiveCache();
+        ArrivalBoundCacheFIFO arrivalBoundCache = shareSubTandemsFromArgs ? new ArrivalBoundCacheFIFO() : null;
+        LeftOverServiceCache leftOverServiceCache = shareSubTandemsFromArgs ? new LeftOverServiceCache() : null;
+        for(int f = 0; f < flows.get(0).size(); f++){
+            for(int d = 0; d < demos.size(); d++){
+                DemoDiffLUDB demo = demos.get(d);
+                Flow foi = flows.get(d).get(f);
+                int foiTrueID = getFoiTrueID(foi);
+
+                AnalysisContext settings = demo.settings.copySettings();
+                settings.setObjectiveCache(cache);
+                settings.setArrivalBoundCache(arrivalBoundCache);
+                settings.setLeftOverServiceCache(leftOverServiceCache);
+                String[] rows = analyseFlow(settings, networkID, sgs.get(d), foi, foiTrueID);
+
+                //write the delay and runtime into the respective files
+                demo.fileManager.appendToFile(demo.delayCompPath, rows[0]);
+                demo.fileManager.appendToFile(demo.runTimeCompPath, rows[1]);
+            }
+        }
+        printCacheStatistics(networkID, cache);
+        printArrivalBoundCacheStatistics(networkID, arrivalBoundCache);
+        printLeftOverServiceCacheStatistics(networkID, leftOverServiceCache);
+        printLpCacheStatistics(networkID);
+    }
+
 
-            // System.out.println("Network " + networkID + " with foi " + foiTrueID + " has delay bound " +
-            //        fta.getDelayBound() + "\n///////////////////////////////////////////////////////////////////////////////" +
-            //        "/////////////////////////////////////\n");
+    /**
+     * Like runPipelineOnNetwork, but analyses the flows concurrently on a thread pool with <code>threadsFromArgs</code>
+     * threads. Every flow is analysed with all analysis codes (one after the other) within one task, each analysis on its
+     * own instance of the network. The analyses of one flow share an ObjectiveCache (a cache must not be shared between
+     * concurrent tasks), if sub-tandems are shared, all tasks share a LeftOverServiceCache.
+     * @param demos
+     *                      the demos, one per analysis code
+     * @param networkID
+     *                      the ID of the network
+     * @throws Exception
+     */
+    private static void runPipelineOnNetworkConcurrently(List<DemoDiffLUDB> demos, int networkID) throws Exception{
+        ServerGraph sg = getServerGraphFromNetwork(networkID);
+        if(sg == null){
+            return;
         }
+        //the LPs of the LUDB analyses are only cached per network
+        LUDB_LP.clearLpCache();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threadsFromArgs);
+        List<Future<String[][]>> results = new ArrayList<>();
+        ObjectiveCache total = new ObjectiveCache();
+        LeftOverServiceCache leftOverServiceCache = shareSubTandemsFromArgs ? new LeftOverServiceCache() : null;
+        try{
+            for(Flow flow : sg.getFlows()){
+                int foiTrueID = getFoiTrueID(flow);
+
+                results.add(pool.submit(() -> {
+                    ObjectiveCache cache = new ObjectiveCache();
+                    String[][] rows = new String[demos.size()][];
+                    for(int d = 0; d < demos.size(); d++){
+                        //each analysis works on its own copy of the network
+                        ServerGraph sgTask = getServerGraphFromNetwork(networkID);
+                        Flow foi = null;
+                        for(Flow candidate : sgTask.getFlows()){
+                            if(getFoiTrueID(candidate) == foiTrueID){
+                                foi = candidate;
+                                break;
+                            }
+                        }
+                        if(foi == null){
+                            throw new IllegalStateException("Flow " + foiTrueID + " not found in network " + networkID);
+                        }
+
+                        AnalysisContext settings = demos.get(d).settings.copySettings();
+                        settings.setObjectiveCache(cache);
+                        settings.setLeftOverServiceCache(leftOverServiceCache);
+                        rows[d] = analyseFlow(settings, networkID, sgTask, foi, foiTrueID);
+                    }
+                    total.addStatistics(cache);
+                    return rows;
+                }));
+            }
+
+            //write the delay and runtime into the respective files
+            for(Future<String[][]> result : results){
+                try{
+                    String[][] rows = result.get();
+                    for(int d = 0; d < demos.size(); d++){
+                        DemoDiffLUDB demo = demos.get(d);
+                        demo.fileManager.appendToFile(demo.delayCompPath, rows[d][0]);
+                        demo.fileManager.appendToFile(demo.runTimeCompPath, rows[d][1]);
+                    }
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        printCacheStatistics(networkID, total);
+        printLeftOverServiceCacheStatistics(networkID, leftOverServiceCache);
+        printLpCacheStatistics(networkID);
+    }
+
+
+    private static void printCacheStatistics(int networkID, ObjectiveCache cache){
+        if(settingsFromArgs.isPrintToConsole()){
+            System.out.println("Network " + networkID + ": derived " + cache.getMisses() + " objective functions, reused "
+                    + cache.getHits());
+        }
+    }
+
+
+    private static void printArrivalBoundCacheStatistics(int networkID, ArrivalBoundCacheFIFO cache){
+        if(cache != null && settingsFromArgs.isPrintToConsole()){
+            System.out.println("Network " + networkID + ": computed " + cache.getMisses() + " arrival bounds, reused "
+                    + cache.getHits() + String.format(" (hit rate %.2f)", cache.getHitRate()));
+        }
+    }
+
+
+    private static void printLeftOverServiceCacheStatistics(int networkID, LeftOverServiceCache cache){
+        if(cache != null && settingsFromArgs.isPrintToConsole()){
+            System.out.println("Network " + networkID + ": analysed " + cache.getMisses() + " nested sub-tandems, reused "
+                    + cache.getHits() + String.format(" (hit rate %.2f)", cache.getHitRate()));
+        }
+    }
+
+
+    private static void printLpCacheStatistics(int networkID){
+        long hits = LUDB_LP.lp_cache_hits;
+        long misses = LUDB_LP.lp_cache_misses;
+        if(settingsFromArgs.isPrintToConsole() && hits + misses > 0){
+            System.out.println("Network " + networkID + ": solved " + misses + " LPs, reused " + hits
+                    + String.format(" (hit rate %.2f)", (double) hits / (hits + misses)));
+        }
+    }
+
+
+    /**
+     * Analyses a single flow of interest with a fresh AnalysisContext and returns the rows for the delay and runtime files.
+     * @param settings
+     *                      the settings of the analysis (copied for the analysis)
+     * @param networkID
+     *                      the ID of the network
+     * @param sg
+     *                      the server graph of the network
+     * @param foi
+     *                      the flow of interest
+     * @param foiTrueID
+     *                      the ID of the foi as given by its alias
+     * @return  the row of the delay file and the row of the runtime file (in this order)
+     * @throws Exception
+     */
+    static String[] analyseFlow(AnalysisContext settings, int networkID, ServerGraph sg, Flow foi, int foiTrueID) throws Exception{
+        //every foi gets its own context, i.e. the subnetwork index used in the DiffLUDB analysis and the aggregated time
+        //measurements start at 0
+        AnalysisContext context = settings.copySettings();
+        context.setNetworkID(networkID);
+        context.setNetworkFoi(foiTrueID);
+
+        //start the analysis and take note of the run times
+        long startTime = System.nanoTime();
+
+        FIFOTandemAnalysis fta = new FIFOTandemAnalysis(sg, context);
+        fta.performAnalysis(foi);
+
+        long runTimeNS = System.nanoTime() - startTime;
+        long runTimeMS = runTimeNS / 1000000;
+        long runTimeSec = runTimeMS / 1000;
+        long runTimeMin = runTimeSec / 60;
+
+        long initialParamValuesNS = context.getAggrTimeToFindInitialThetasInNS();
+        long initialParamValuesMS = initialParamValuesNS / 1000000;
+        long initialParamValuesMin = initialParamValuesMS / (1000*60);
+        long objFunNS = context.getAggrTimeToDeriveObjFuncInNS();
+        long objFuncMS = objFunNS / 1000000;
+        long objFuncMin = objFuncMS / (1000*60);
+        long solverStartNS = context.getAggrTimeToStartSolverInNS();
+        long solverStartMS = solverStartNS / 1000000;
+        long solverStartMin = solverStartMS / (1000*60);
+        long nlpNS = context.getAggrTimeToSolveNLPInNS();
+        long nlpMS = nlpNS / 1000000;
+        long nlpMin = nlpMS / (1000*60);
+        long serviceCurveNS = context.getAggrTimeToComputeServiceCurveInNS();
+        long serviceCurveMS = serviceCurveNS / 1000000;
+        long serviceCurveMin = serviceCurveMS / (1000*60);
+
+        long cutSetNS = runTimeNS - (initialParamValuesNS + objFunNS + solverStartNS + nlpNS + serviceCurveNS);
+        long cutSetMS = cutSetNS / 1000000;
+        long cutSetMin = cutSetMS / (1000*60);
+
+        String delayRow = networkID + "," + foiTrueID + "," + fta.getDelayBound() + "\n";
+        String runtimeRow;
+        if(context.isApproximateInitialThetas()){
+            runtimeRow = String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
+                    networkID, foiTrueID, runTimeNS, runTimeMS, runTimeMin, context.getSubNetwork(),
+                    cutSetNS, cutSetMS, cutSetMin,
+                    initialParamValuesNS, initialParamValuesMS, initialParamValuesMin,
+                    objFunNS, objFuncMS, objFuncMin,
+                    solverStartNS, solverStartMS, solverStartMin,
+                    nlpNS, nlpMS, nlpMin,
+                    serviceCurveNS, serviceCurveMS, serviceCurveMin,
+                    context.getNoOfCachedSubTandems());
+        }
+        else{
+            runtimeRow = String.format("%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
+                    networkID, foiTrueID,
+                    runTimeNS, runTimeMS, runTimeMin, context.getSubNetwork(),
+                    cutSetNS, cutSetMS, cutSetMin,
+                    objFunNS, objFuncMS, objFuncMin,
+                    solverStartNS, solverStartMS, solverStartMin,
+                    nlpNS, nlpMS, nlpMin,
+                    serviceCurveNS, serviceCurveMS, serviceCurveMin,
+                    context.getNoOfCachedSubTandems());
+        }
+        return new String[]{delayRow, runtimeRow};
+    }
+
+
+    /**
+     * Returns the header of the runtime file.
+     * @param approximateInitialThetas
+     *                                  whether the time to approximate the initial parameter values gets recorded
+     * @return  the header (terminated by a line break)
+     */
+    static String getRuntimeHeaders(boolean approximateInitialThetas){
+        //store the runtime of the entire network analysis, the number of analysed sub-tandems, the aggregated time to
+        //derive the objective function from the nesting tree, the aggregated time to solve the NLP, and the number of
+        //sub-tandems taken from a cache or the persistent store
+        return "Netid,Fid,DiffLUDB,DiffLUDB (ms),DiffLUDB (min),#SubTandems," +
+                (approximateInitialThetas ? "init param values (ns),init param values (ms),init param values (min)," : "") +
+                "cut-set + leftover (aggr ns),cut-set + leftover (aggr ms),cut-set + leftover (aggr min)," +
+                "objFunc Derivation (aggr ns),objFunc Derivation (aggr ms),objFunc Derivation (aggr min)," +
+                "NLopt wrapper (aggr ns),NLopt wrapper (aggr ms),NLopt wrapper (aggr min),"+
+                "NLP (aggr ns),NLP (aggr ms),NLP (aggr min)," +
+                "service curve (aggr ns),service curve(aggr ms), service curve(aggr min),#CachedSubTandems\n";
+    }
+
+
+    /**
+     * Extracts the foi's true ID from its alias (e.g. "f13" => 13).
+     * @param foi
+     *              the flow
+     * @return  the flow's true ID
+     */
+    static int getFoiTrueID(Flow foi){
+        return Integer.valueOf(foi.getAlias().substring(1, foi.getAlias().length()));
     }
 
 
@@ -257,16 +802,16 @@ public class DemoDiffLUDB {
      */
     public void runConvexityTest() throws Exception{
         //set the analysis mode to DiffLUDB
-        NestedTandemAnalysis.selected_mode = NestedTandemAnalysis.mode.DIFF_LUDB;
+        settings.setSelectedMode(NestedTandemAnalysis.mode.DIFF_LUDB);
 
         //set the output file path
         final String filePath = System.getProperty("user.home") + "/DiffLUDB_experiments/";
 
         //Create the files containing the results (convexity test)
         String baseFileName = "DiffLUDB_"
-                + OpTreeAnalysis.nlopt_alg + "_"
-                + OpTreeAnalysis.iterations_max + "_"
-                + NestedTandemAnalysis.approximateInitialThetas;
+                + settings.getNloptAlg() + "_"
+                + settings.getIterationsMax() + "_"
+                + settings.isApproximateInitialThetas();
         String delayFileName = baseFileName + "_convexity";
         delayCompPath = filePath + "" + delayFileName + ".csv";
         String delayHeaders = "Netid,Fid,NoOfConvexSubTandems, NoOfNonConvexSubTandems\n";
@@ -294,8 +839,6 @@ public class DemoDiffLUDB {
      * @throws Exception
      */
     private void runConvexityTestOnNetwork(int networkID, int flowID) throws Exception{
-        NestedTandemAnalysis.networkID = networkID;
-
         //instantiate the serverGraph
         ServerGraph sg = getServerGraphFromNetwork(networkID);
         if(sg == null){
@@ -307,25 +850,22 @@ public class DemoDiffLUDB {
         for(Flow foi: sg.getFlows()){
             //we need to extract the foi's true ID from its alias. (During the analysis the flows get re-created in a random
             //different order. As a result, their ID's change randomly, but their original ID's are kept in their aliases)
-            int foiTrueID = Integer.valueOf(foi.getAlias().substring(1, foi.getAlias().length()));
+            int foiTrueID = getFoiTrueID(foi);
             if(flowID >= 0 && foiTrueID != flowID){
                 continue;
             }
 
-            //reset the subnetwork index used in the DiffLUDB analysis to name the files (see NestedTandemAnalysis), as well
-            //as the number of (non-)convex tandems
-            NestedTandemAnalysis.subNetwork = 0;
-            NestedTandemAnalysis.onlyTestConvexity = true;
-            NestedTandemAnalysis.noOfNonConvexTandems = 0;
-            NestedTandemAnalysis.noOfConvexTandems = 0;
-            //set the ID of the foi
-            NestedTandemAnalysis.networkFoi = foiTrueID;
+            //every foi gets its own context, i.e. the subnetwork index and the number of (non-)convex tandems start at 0
+            AnalysisContext context = settings.copySettings();
+            context.setOnlyTestConvexity(true);
+            context.setNetworkID(networkID);
+            context.setNetworkFoi(foiTrueID);
 
-            FIFOTandemAnalysis fta = new FIFOTandemAnalysis(sg);
+            FIFOTandemAnalysis fta = new FIFOTandemAnalysis(sg, context);
             fta.performAnalysis(foi);
 
-            int noOfConvexTandems = NestedTandemAnalysis.noOfConvexTandems;
-            int noOfNonConvexTandems = NestedTandemAnalysis.noOfNonConvexTandems;
+            int noOfConvexTandems = context.getNoOfConvexTandems();
+            int noOfNonConvexTandems = context.getNoOfNonConvexTandems();
             this.totalNoOfNonConvexTandems += noOfNonConvexTandems;
 
             //write the convexity test results
@@ -341,7 +881,7 @@ public class DemoDiffLUDB {
      * @param networkID the network id. Viable values are 1 to 34 except for 4, 22, 25
      * @return  the ServerGraph associated with the network; null if no network with the given networkID is known
      */
-    private ServerGraph getServerGraphFromNetwork(int networkID){
+    static ServerGraph getServerGraphFromNetwork(int networkID){
         switch (networkID){
             case 1: return new random_ff_1().createServerGraph();
             case 2: return new random_ff_2().createServerGraph();
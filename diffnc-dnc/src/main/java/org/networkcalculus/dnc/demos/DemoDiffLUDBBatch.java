@@ -0,0 +1,434 @@
+package org.networkcalculus.dnc.demos;
+
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+import org.networkcalculus.dnc.optree.toolchain.FileManager;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
+import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Lukas Herll
+ *
+ * Resumable batch runner for DiffLUDB experiments.
+ *
+ * The jobs are read from a manifest file (one job per line: Netid,Fid,Alg,Iterations,ApproximateInitialThetas; a
+ * negative Fid stands for all flows of the network; lines starting with # are ignored). The jobs are executed on a
+ * work-stealing thread pool. After a job has finished, its results are appended to the csv files of its configuration
+ * (same format as in DemoDiffLUDB) and its key is appended to a checkpoint file. A restarted run skips all jobs whose
+ * keys are found in any checkpoint file in the output directory.
+ *
+ * With --shard i/n, only the jobs whose key hashes to i (modulo n) are executed. Several JVMs can therefore split one
+ * sweep without coordination; every shard writes to its own csv and checkpoint files.
+ *
+ * The results of a job and its key are appended to three files, i.e. not atomically. Hence, a restarted run first
+ * removes all rows of jobs without a key (and duplicate rows) from the csv files of its shard, the jobs are then run
+ * again. The runtimes are wall-clock times: with more than one thread they are measured under contention and are not
+ * comparable with sequential runs of DemoDiffLUDB.
+ *
+ * Usage:
+ *   --manifest <file>      the manifest (required)
+ *   --sweep <iterations>   (re-)write the manifest with the main contenders on all networks before running
+ *   --out <dir>            the output directory (default: ~/DiffLUDB_experiments/)
+ *   --threads <k>          the number of worker threads (default: 1, see above)
+ *   --shard <i>/<n>        only run shard i of n (0 <= i < n, default: 0/1)
+ */
+public class DemoDiffLUDBBatch {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final String MANIFEST_HEADER = "#Netid,Fid,Alg,Iterations,ApproximateInitialThetas\n";
+    private static final String CHECKPOINT_EXTENSION = ".checkpoint";
+
+    private final FileManager fileManager;
+    private final String manifestPath;
+    private final String outputDir;
+    private final int threads;
+    private final int shardIndex;
+    private final int shardCount;
+
+    //keys of all finished jobs (of all shards)
+    private final Set<String> completedKeys = ConcurrentHashMap.newKeySet();
+    private String checkpointPath;
+    //configuration name -> {delay file, runtime file}
+    private final Map<String, String[]> resultPaths = new HashMap<>();
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public DemoDiffLUDBBatch(String manifestPath, String outputDir, int threads, int shardIndex, int shardCount){
+        if(shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount){
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + "/" + shardCount);
+        }
+        this.fileManager = FileManager.getInstance();
+        this.manifestPath = manifestPath;
+        this.outputDir = outputDir.endsWith(File.separator) ? outputDir : outputDir + File.separator;
+        this.threads = Math.max(threads, 1);
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public static void main(String[] args) throws Exception {
+        String manifestPath = null;
+        String outputDir = System.getProperty("user.home") + "/DiffLUDB_experiments/";
+        int threads = 1;
+        int shardIndex = 0;
+        int shardCount = 1;
+        Integer sweepIterations = null;
+
+        for(int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--manifest": manifestPath = args[++i]; break;
+                case "--out": outputDir = args[++i]; break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--sweep": sweepIterations = Math.max(Integer.parseInt(args[++i]), 0); break;
+                case "--shard":
+                    String[] shard = args[++i].split("/");
+                    shardIndex = Integer.parseInt(shard[0]);
+                    shardCount = Integer.parseInt(shard[1]);
+                    break;
+                default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if(manifestPath == null){
+            throw new IllegalArgumentException("No manifest given (--manifest <file>)");
+        }
+
+        if(sweepIterations != null){
+            writeSweepManifest(manifestPath, sweepIterations);
+        }
+
+        new DemoDiffLUDBBatch(manifestPath, outputDir, threads, shardIndex, shardCount).run();
+    }
+
+
+    /**
+     * Writes a manifest containing the main contenders of DemoDiffLUDB on all flows of all networks.
+     * @param path
+     *                  the path of the manifest (an existing manifest gets overwritten)
+     * @param iterationsMax
+     *                  the iteration limit of all jobs; 0 == no limit
+     * @throws IOException
+     */
+    public static void writeSweepManifest(String path, int iterationsMax) throws IOException {
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER);
+        for(int alg : DemoDiffLUDB.analysis_codes_main_contenders){
+            for(int networkID = 1; networkID <= 34; networkID++){
+                manifest.append(new Job(networkID, -1, alg, iterationsMax, false)).append("\n");
+            }
+        }
+        Files.write(Paths.get(path), manifest.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * Runs all jobs of this shard that have not been completed yet.
+     * @throws Exception
+     */
+    public void run() throws Exception {
+        new File(outputDir).mkdirs();
+
+        List<Job> jobs = new ArrayList<>();
+        for(Job job : expandJobs(readManifest())){
+            if(Math.floorMod(job.getKey().hashCode(), shardCount) == shardIndex){
+                jobs.add(job);
+            }
+        }
+
+        readCheckpoints();
+        checkpointPath = outputDir + "DiffLUDB" + getShardSuffix() + CHECKPOINT_EXTENSION;
+        if(!fileManager.fileExists(checkpointPath)){
+            fileManager.createFile(checkpointPath, "");
+        }
+
+        List<Callable<Void>> pending = new ArrayList<>();
+        for(Job job : jobs){
+            if(completedKeys.contains(job.getKey())){
+                continue;
+            }
+            createResultFiles(job);
+            pending.add(() -> {
+                runJob(job);
+                return null;
+            });
+        }
+        System.out.println("Shard " + shardIndex + "/" + shardCount + ": " + pending.size() + " of " + jobs.size() +
+                " jobs left to run on " + threads + " threads");
+
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+        try{
+            pool.invokeAll(pending);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Runs a single job on its own instance of the network and records its results and its key. If the analysis fails,
+     * the job is not recorded and will be repeated by the next run.
+     * @param job
+     *              the job
+     */
+    private void runJob(Job job){
+        try{
+            ServerGraph sg = DemoDiffLUDB.getServerGraphFromNetwork(job.networkID);
+            Flow foi = null;
+            for(Flow flow : sg.getFlows()){
+                if(DemoDiffLUDB.getFoiTrueID(flow) == job.flowID){
+                    foi = flow;
+                }
+            }
+            if(foi == null){
+                System.out.println("Flow " + job.flowID + " not found in network " + job.networkID);
+                return;
+            }
+
+            String[] rows = DemoDiffLUDB.analyseFlow(job.createSettings(), job.networkID, sg, foi, job.flowID);
+
+            String[] paths = resultPaths.get(job.getConfigName());
+            synchronized (this){
+                fileManager.appendToFile(paths[0], rows[0]);
+                fileManager.appendToFile(paths[1], rows[1]);
+                //the key is written last: a job is only considered finished once its results are stored
+                fileManager.appendToFile(checkpointPath, job.getKey() + "\n");
+                completedKeys.add(job.getKey());
+            }
+        }
+        catch (Exception e){
+            System.out.println("Job " + job + " failed");
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Reads the jobs from the manifest.
+     * @return  the jobs in the order of the manifest
+     * @throws IOException
+     */
+    private List<Job> readManifest() throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for(String line : Files.readAllLines(Paths.get(manifestPath), StandardCharsets.UTF_8)){
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#")){
+                continue;
+            }
+            jobs.add(Job.parse(line));
+        }
+        return jobs;
+    }
+
+
+    /**
+     * Replaces every job with a negative flow ID by one job per flow of the network.
+     * @param jobs
+     *              the jobs from the manifest
+     * @return  the jobs referring to single flows
+     */
+    private List<Job> expandJobs(List<Job> jobs){
+        Map<Integer, List<Integer>> flowIDs = new HashMap<>();
+        List<Job> expanded = new ArrayList<>();
+        for(Job job : jobs){
+            if(job.flowID >= 0){
+                expanded.add(job);
+                continue;
+            }
+            List<Integer> ids = flowIDs.computeIfAbsent(job.networkID, networkID -> {
+                List<Integer> list = new ArrayList<>();
+                ServerGraph sg = DemoDiffLUDB.getServerGraphFromNetwork(networkID);
+                if(sg != null){
+                    for(Flow flow : sg.getFlows()){
+                        list.add(DemoDiffLUDB.getFoiTrueID(flow));
+                    }
+                }
+                list.sort(Integer::compare);
+                return list;
+            });
+            for(int flowID : ids){
+                expanded.add(new Job(job.networkID, flowID, job.nloptAlg, job.iterationsMax, job.approximateInitialThetas));
+            }
+        }
+        return expanded;
+    }
+
+
+    /**
+     * Reads the keys of all finished jobs from all checkpoint files in the output directory (including the ones of
+     * other shards, so the number of shards may change between runs).
+     * @throws IOException
+     */
+    private void readCheckpoints() throws IOException {
+        File[] checkpoints = new File(outputDir).listFiles((dir, name) -> name.endsWith(CHECKPOINT_EXTENSION));
+        if(checkpoints == null){
+            return;
+        }
+        for(File checkpoint : checkpoints){
+            for(String key : Files.readAllLines(checkpoint.toPath(), StandardCharsets.UTF_8)){
+                if(!key.trim().isEmpty()){
+                    completedKeys.add(key.trim());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Creates the delay and runtime files of the job's configuration unless they already exist (results of previous
+     * runs are kept).
+     * @param job
+     *              the job
+     */
+    private void createResultFiles(Job job){
+        String configName = job.getConfigName();
+        if(resultPaths.containsKey(configName)){
+            return;
+        }
+        String delayPath = outputDir + configName + "_delay" + getShardSuffix() + ".csv";
+        if(!fileManager.fileExists(delayPath)){
+            fileManager.createFile(delayPath, DemoDiffLUDB.DELAY_HEADERS);
+        }
+        else{
+            pruneUnfinishedRows(delayPath, configName);
+        }
+        String runtimePath = outputDir + configName + "_runtime" + getShardSuffix() + ".csv";
+        if(!fileManager.fileExists(runtimePath)){
+            fileManager.createFile(runtimePath, DemoDiffLUDB.getRuntimeHeaders(job.approximateInitialThetas));
+        }
+        else{
+            pruneUnfinishedRows(runtimePath, configName);
+        }
+        resultPaths.put(configName, new String[]{delayPath, runtimePath});
+    }
+
+
+    /**
+     * Removes the rows of all jobs whose keys are not in a checkpoint file (i.e. of jobs interrupted while their results
+     * were written) and all but the first row of every job from a result file. The header is kept.
+     * @param path
+     *              the path of the result file
+     * @param configName
+     *              the configuration of the result file
+     */
+    private void pruneUnfinishedRows(String path, String configName){
+        try{
+            List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+            StringBuilder pruned = new StringBuilder();
+            Set<String> written = new HashSet<>();
+            boolean changed = false;
+            for(int i = 0; i < lines.size(); i++){
+                String line = lines.get(i);
+                if(i > 0){
+                    //the rows start with Netid,Fid
+                    String[] fields = line.split(",", 3);
+                    String key = fields.length < 2 ? null : configName + "," + fields[0].trim() + "," + fields[1].trim();
+                    if(key == null || !completedKeys.contains(key) || !written.add(key)){
+                        changed = true;
+                        continue;
+                    }
+                }
+                pruned.append(line).append("\n");
+            }
+            if(changed){
+                Files.write(Paths.get(path), pruned.toString().getBytes(StandardCharsets.UTF_8));
+                System.out.println("Removed the rows of unfinished jobs from " + path);
+            }
+        }
+        catch (IOException e){
+            throw new IllegalStateException("Could not prune " + path, e);
+        }
+    }
+
+
+    private String getShardSuffix(){
+        return shardCount == 1 ? "" : "_shard" + shardIndex + "of" + shardCount;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //jobs
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * A single DiffLUDB analysis: one flow of one network with one solver setting.
+     */
+    static class Job {
+        final int networkID;
+        final int flowID;
+        final int nloptAlg;
+        final int iterationsMax;
+        final boolean approximateInitialThetas;
+
+        Job(int networkID, int flowID, int nloptAlg, int iterationsMax, boolean approximateInitialThetas){
+            this.networkID = networkID;
+            this.flowID = flowID;
+            this.nloptAlg = nloptAlg;
+            this.iterationsMax = iterationsMax;
+            this.approximateInitialThetas = approximateInitialThetas;
+        }
+
+        /**
+         * Parses a manifest line of the form Netid,Fid,Alg,Iterations,ApproximateInitialThetas.
+         * @param line
+         *              the manifest line
+         * @return  the job
+         */
+        static Job parse(String line){
+            String[] fields = line.split(",");
+            if(fields.length != 5){
+                throw new IllegalArgumentException("Invalid manifest line: " + line);
+            }
+            return new Job(Integer.parseInt(fields[0].trim()),
+                    Integer.parseInt(fields[1].trim()),
+                    Integer.parseInt(fields[2].trim()),
+                    Math.max(Integer.parseInt(fields[3].trim()), 0),
+                    Boolean.parseBoolean(fields[4].trim()));
+        }
+
+        /**
+         * @return  the name of the result files of this job's configuration (same as in DemoDiffLUDB)
+         */
+        String getConfigName(){
+            return "DiffLUDB_" + nloptAlg + "_" + iterationsMax + "_" + approximateInitialThetas;
+        }
+
+        /**
+         * @return  the checkpoint key of this job: the configuration, Netid, and Fid
+         */
+        String getKey(){
+            return getConfigName() + "," + networkID + "," + flowID;
+        }
+
+        AnalysisContext createSettings(){
+            AnalysisContext settings = new AnalysisContext(NestedTandemAnalysis.mode.DIFF_LUDB);
+            settings.setNloptAlg(nloptAlg);
+            settings.setIterationsMax(iterationsMax);
+            settings.setApproximateInitialThetas(approximateInitialThetas);
+            return settings;
+        }
+
+        @Override
+        public String toString(){
+            return networkID + "," + flowID + "," + nloptAlg + "," + iterationsMax + "," + approximateInitialThetas;
+        }
+    }
+}
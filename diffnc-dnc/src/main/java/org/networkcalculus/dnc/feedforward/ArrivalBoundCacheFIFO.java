@@ -0,0 +1,136 @@
+package org.networkcalculus.dnc.feedforward;
+
+import org.networkcalculus.dnc.AnalysisConfig;
+import org.networkcalculus.dnc.curves.ArrivalCurve;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * @author Lukas Herll
+ *
+ * Caches the arrival bounds computed by ArrivalBoundDispatchFIFO. An arrival bound is identified by the server it is
+ * computed for, the set of bounded flows, and the settings it was derived with (the multiplexing and maximum service
+ * curve enforcement of the AnalysisConfig and the analysis settings of the AnalysisContext, see getKey). The flows of
+ * interest do not matter: the arrival bound of a flow set never depends on the flow whose delay is analysed.
+ *
+ * The entries are kept per ServerGraph, as the ids of servers and flows are only unique within one graph (the graphs of
+ * finished analyses are released by the garbage collector). A cache is meant to be shared by the analyses of all flows
+ * of a network run (see DemoDiffLUDB); it is thread-safe, i.e., these analyses may also run concurrently.
+ */
+public class ArrivalBoundCacheFIFO {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //<server graph, <key (see getKey), arrival bound>>
+    private final Map<ServerGraph, Map<String, ArrivalCurve>> entries = new WeakHashMap<>();
+
+    //statistics
+    private int hits;
+    private int misses;
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param server_graph
+     *                      the server graph the arrival bound was computed in
+     * @param key
+     *                      the key of the arrival bound (see getKey)
+     * @return  a copy of the cached arrival bound; null if there is none
+     */
+    public synchronized ArrivalCurve get(ServerGraph server_graph, String key){
+        Map<String, ArrivalCurve> entries_of_graph = entries.get(server_graph);
+        ArrivalCurve arrival_bound = entries_of_graph == null ? null : entries_of_graph.get(key);
+        if(arrival_bound != null){
+            hits++;
+            return arrival_bound.copy();
+        }
+        misses++;
+        return null;
+    }
+
+
+    public synchronized void put(ServerGraph server_graph, String key, ArrivalCurve arrival_bound){
+        entries.computeIfAbsent(server_graph, graph -> new HashMap<>()).put(key, arrival_bound.copy());
+    }
+
+
+    /**
+     * Removes all cached arrival bounds (the statistics are kept).
+     */
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+
+    /**
+     * Computes the key of an arrival bound: the server's id, the ids of the bounded flows (sorted), and the settings the
+     * bound depends on.
+     * @param configuration
+     *                      the configuration of the analysis
+     * @param context
+     *                      the context of the analysis
+     * @param server
+     *                      the server the arrival bound is computed for
+     * @param flows_to_bound
+     *                      the bounded flows
+     * @return  the key
+     */
+    public static String getKey(AnalysisConfig configuration, AnalysisContext context, Server server, Set<Flow> flows_to_bound){
+        StringBuilder key = new StringBuilder();
+        key.append(server.getId()).append('|');
+        flows_to_bound.stream().mapToInt(Flow::getId).sorted().forEach(id -> key.append(id).append(','));
+        key.append('|').append(configuration.enforceMultiplexing())
+                .append(',').append(configuration.enforceMaxSC())
+                .append(',').append(configuration.enforceMaxScOutputRate())
+                .append('|').append(context.getSettingsSignature());
+        return key.toString();
+    }
+
+
+    /**
+     * Adds the hits and misses of another cache to the statistics of this cache (the entries are not copied).
+     * @param other
+     *                  the other cache
+     */
+    public void addStatistics(ArrivalBoundCacheFIFO other){
+        int otherHits = other.getHits();
+        int otherMisses = other.getMisses();
+        synchronized (this){
+            hits += otherHits;
+            misses += otherMisses;
+        }
+    }
+
+
+    public synchronized int getHits(){
+        return hits;
+    }
+
+    public synchronized int getMisses(){
+        return misses;
+    }
+
+    /**
+     * @return  the share of the lookups that found a cached arrival bound (0 if there was no lookup yet)
+     */
+    public synchronized double getHitRate(){
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized int size(){
+        int size = 0;
+        for(Map<String, ArrivalCurve> entries_of_graph : entries.values()){
+            size += entries_of_graph.size();
+        }
+        return size;
+    }
+}
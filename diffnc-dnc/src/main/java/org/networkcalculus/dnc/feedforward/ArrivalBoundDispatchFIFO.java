@@ -9,9 +9,16 @@ import org.networkcalculus.dnc.curves.Curve_ConstantPool;
 import org.networkcalculus.dnc.curves.ServiceCurve;
 import org.networkcalculus.dnc.network.server_graph.*;
 import org.networkcalculus.dnc.tandem.analyses.FIFOTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
 import org.networkcalculus.dnc.utils.SetUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
@@ -32,6 +39,111 @@ public class ArrivalBoundDispatchFIFO {
      */
     public static ArrivalCurve computeArrivalBound( ServerGraph server_graph, AnalysisConfig configuration, Server server,
                                                     Set<Flow> flows_to_bound ) throws Exception {
+        return computeArrivalBound(server_graph, configuration, new AnalysisContext(), server, flows_to_bound);
+    }
+
+    /**
+     *
+     * @param server_graph
+     * @param configuration
+     * @param context the context of the analysis that requested the arrival bound; if it holds an ArrivalBoundCacheFIFO,
+     *                the arrival bound (and every arrival bound computed recursively) is looked up in and added to it
+     * @param server
+     * @param flows_to_bound
+     * @return
+     * @throws Exception
+     */
+    public static ArrivalCurve computeArrivalBound( ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context,
+                                                    Server server, Set<Flow> flows_to_bound ) throws Exception {
+        // In the convexity test every sub-tandem has to be analysed (and counted), hence no caching
+        ArrivalBoundCacheFIFO cache = context.isOnlyTestConvexity() ? null : context.getArrivalBoundCache();
+        if(cache == null)
+        {
+            return computeArrivalBoundUncached(server_graph, configuration, context, server, flows_to_bound);
+        }
+
+        String key = ArrivalBoundCacheFIFO.getKey(configuration, context, server, flows_to_bound);
+        ArrivalCurve ag_ac = cache.get(server_graph, key);
+        if(ag_ac == null)
+        {
+            ag_ac = computeArrivalBoundUncached(server_graph, configuration, context, server, flows_to_bound);
+            cache.put(server_graph, key, ag_ac);
+        }
+        return ag_ac;
+    }
+
+    /**
+     * Computes several arrival bounds (see computeArrivalBound). They are computed concurrently on the common fork-join
+     * pool if the context allows it, i.e., if parallel arrival bounds are enabled and no ObjectiveCache is used (it must
+     * not be shared by concurrent analyses).
+     *
+     * @param server_graph
+     * @param configuration
+     * @param context the context of the analysis that requested the arrival bounds
+     * @param requests the arrival bounds to compute as pairs (server, flows to bound)
+     * @return the arrival bounds in the order of the requests
+     * @throws Exception
+     */
+    public static List<ArrivalCurve> computeArrivalBounds( ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context,
+                                                           List<Pair<Server, Set<Flow>>> requests ) throws Exception {
+        List<Callable<ArrivalCurve>> computations = new ArrayList<>();
+        for(Pair<Server, Set<Flow>> request : requests)
+        {
+            computations.add(() -> computeArrivalBound(server_graph, configuration, context, request.getFirst(), request.getSecond()));
+        }
+        return compute(context, computations);
+    }
+
+    // Runs the computations one after the other or, if the context allows it (see computeArrivalBounds), as tasks on the
+    // common fork-join pool. The results are returned in the order of the computations.
+    private static <T> List<T> compute( AnalysisContext context, List<Callable<T>> computations ) throws Exception {
+        List<T> results = new ArrayList<>();
+        if(!context.isParallelArrivalBounds() || context.getObjectiveCache() != null || computations.size() < 2)
+        {
+            for(Callable<T> computation : computations)
+            {
+                results.add(computation.call());
+            }
+            return results;
+        }
+
+        List<ForkJoinTask<T>> tasks = new ArrayList<>();
+        for(Callable<T> computation : computations)
+        {
+            tasks.add(ForkJoinTask.adapt(computation));
+        }
+        try {
+            if(ForkJoinTask.inForkJoinPool())
+            {
+                ForkJoinTask.invokeAll(tasks);
+            }
+            else
+            {
+                ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> {
+                    ForkJoinTask.invokeAll(tasks);
+                    return null;
+                }));
+            }
+        } catch (RuntimeException e) {
+            // the tasks wrap checked exceptions (possibly several times when rethrown in another thread)
+            Throwable cause = e;
+            while (cause instanceof RuntimeException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+        for(ForkJoinTask<T> task : tasks)
+        {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private static ArrivalCurve computeArrivalBoundUncached( ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context,
+                                                             Server server, Set<Flow> flows_to_bound ) throws Exception {
         // ftb = flows to bound
         ArrivalCurve ag_ac = Curve_ConstantPool.ZERO_ARRIVAL_CURVE.get();
 
@@ -42,20 +154,60 @@ public class ArrivalBoundDispatchFIFO {
             ag_ac = Curve.getUtils().add(ag_ac, flow.getArrivalCurve());
         }
 
+        // The output bounds of the in-turns are independent of each other (see compute)
+        List<Callable<ArrivalCurve>> output_bound_computations = new ArrayList<>();
         for(Turn current_turn : server_graph.getInTurns(server))
         {
             Server pred_current_turn = current_turn.getSource();
             Set<Flow> subset_from_ftb_through_current_turn = SetUtils.getIntersection(flows_to_bound, server_graph.getFlows(current_turn));
             if(!subset_from_ftb_through_current_turn.isEmpty())
             {
-                Pair<Server, Path> splitting_server_and_path = server_graph.findSplittingServerAndPathFIFO(pred_current_turn, subset_from_ftb_through_current_turn);
-                ArrivalCurve ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, splitting_server_and_path.getFirst(), subset_from_ftb_through_current_turn);
-                FIFOTandemAnalysis fifo_analysis = new FIFOTandemAnalysis(server_graph, configuration);
-                ServiceCurve sc_for_subset_from_ftb_on_splitting_server_to_pred_current_turn = fifo_analysis.getServiceCurve(subset_from_ftb_through_current_turn, ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn, splitting_server_and_path.getSecond(),true);
-                ArrivalCurve output_ac_for_subset_from_ftb_at_server = Output_Disco_ConPwAffine.computeFIFOOutputBound( ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn, sc_for_subset_from_ftb_on_splitting_server_to_pred_current_turn);
-                ag_ac = Curve.getUtils().add(ag_ac, output_ac_for_subset_from_ftb_at_server);
+                output_bound_computations.add(() -> {
+                    Pair<Server, Path> splitting_server_and_path = server_graph.findSplittingServerAndPathFIFO(pred_current_turn, subset_from_ftb_through_current_turn);
+                    ArrivalCurve ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, context, splitting_server_and_path.getFirst(), subset_from_ftb_through_current_turn);
+                    FIFOTandemAnalysis fifo_analysis = new FIFOTandemAnalysis(server_graph, configuration, context);
+                    ServiceCurve sc_for_subset_from_ftb_on_splitting_server_to_pred_current_turn = fifo_analysis.getServiceCurve(subset_from_ftb_through_current_turn, ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn, splitting_server_and_path.getSecond(),true);
+                    return Output_Disco_ConPwAffine.computeFIFOOutputBound( ac_for_subset_from_ftb_on_splitting_server_to_pred_current_turn, sc_for_subset_from_ftb_on_splitting_server_to_pred_current_turn);
+                });
             }
         }
+        for(ArrivalCurve output_ac_for_subset_from_ftb_at_server : compute(context, output_bound_computations))
+        {
+            ag_ac = Curve.getUtils().add(ag_ac, output_ac_for_subset_from_ftb_at_server);
+        }
         return ag_ac;
     }
+
+    /**
+     * Returns the arrival bounds that computeArrivalBound requests (directly or via the FIFOTandemAnalysis of the
+     * in-turns' paths) in order to bound flows_to_bound at server. All of them belong to servers upstream of server.
+     * Arrival bounds that are only requested within a NonNestedTandemAnalysis are not contained.
+     *
+     * @param server_graph
+     * @param configuration
+     * @param context
+     * @param server
+     * @param flows_to_bound
+     * @return the requested arrival bounds as pairs (server, flows to bound)
+     * @throws Exception
+     */
+    public static List<Pair<Server, Set<Flow>>> getArrivalBoundDependencies( ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context,
+                                                                             Server server, Set<Flow> flows_to_bound ) throws Exception {
+        List<Pair<Server, Set<Flow>>> dependencies = new ArrayList<>();
+        FIFOTandemAnalysis fifo_analysis = new FIFOTandemAnalysis(server_graph, configuration, context);
+        for(Turn current_turn : server_graph.getInTurns(server))
+        {
+            Set<Flow> subset_from_ftb_through_current_turn = SetUtils.getIntersection(flows_to_bound, server_graph.getFlows(current_turn));
+            if(!subset_from_ftb_through_current_turn.isEmpty())
+            {
+                Pair<Server, Path> splitting_server_and_path = server_graph.findSplittingServerAndPathFIFO(current_turn.getSource(), subset_from_ftb_through_current_turn);
+                dependencies.add(new Pair<>(splitting_server_and_path.getFirst(), subset_from_ftb_through_current_turn));
+                for(Map.Entry<Path, Set<Flow>> crossflow_group : fifo_analysis.getCrossflowGroupsToBound(subset_from_ftb_through_current_turn, splitting_server_and_path.getSecond()).entrySet())
+                {
+                    dependencies.add(new Pair<>(crossflow_group.getKey().getSource(), crossflow_group.getValue()));
+                }
+            }
+        }
+        return dependencies;
+    }
 }
@@ -0,0 +1,138 @@
+package org.networkcalculus.dnc.feedforward;
+
+import org.apache.commons.math3.util.Pair;
+import org.networkcalculus.dnc.AnalysisConfig;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Path;
+import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.network.server_graph.ServerGraph;
+import org.networkcalculus.dnc.network.server_graph.Turn;
+import org.networkcalculus.dnc.tandem.analyses.FIFOTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
+
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * Computes the arrival bounds needed by the FIFO analyses of several flows of interest (e.g. all flows of a network)
+ * bottom-up, before the flows are analysed. Analysed top-down (one flow after the other), every flow derives the
+ * arrival bounds of its crossflows recursively from the upstream output bounds. Here, all arrival bounds the analyses
+ * request (see FIFOTandemAnalysis.getCrossflowGroupsToBound and ArrivalBoundDispatchFIFO.getArrivalBoundDependencies)
+ * are collected first and then computed once, ordered by the topological level of their server in the feedforward
+ * server graph. Every arrival bound only depends on arrival bounds of servers with a lower level, which were computed
+ * before; the arrival bounds of one level are independent of each other and computed concurrently (see
+ * ArrivalBoundDispatchFIFO.computeArrivalBounds).
+ *
+ * The arrival bounds are stored in the ArrivalBoundCacheFIFO of the context, where the analyses of the flows of interest
+ * find them. Arrival bounds that are only requested within a NonNestedTandemAnalysis are not precomputed (they depend
+ * on the sub-tandems cut by that analysis), but are cached as soon as they are computed.
+ */
+public class ArrivalBoundPrecomputationFIFO {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private ArrivalBoundPrecomputationFIFO(){
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Computes the arrival bounds needed by the analyses of the flows of interest and adds them to the context's cache.
+     * @param server_graph
+     *                          the feedforward server graph
+     * @param configuration
+     *                          the configuration of the analyses
+     * @param context
+     *                          the context of the analyses, it has to hold an ArrivalBoundCacheFIFO
+     * @param flows_of_interest
+     *                          the flows that will be analysed (along their paths)
+     * @return  the number of precomputed arrival bounds
+     * @throws Exception
+     */
+    public static int precomputeArrivalBounds(ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context,
+                                              Collection<Flow> flows_of_interest) throws Exception {
+        if(context.getArrivalBoundCache() == null){
+            throw new IllegalArgumentException("The precomputed arrival bounds are handed to the analyses via the "
+                    + "ArrivalBoundCacheFIFO of the context, but the context has none");
+        }
+        Map<Server, Integer> levels = getTopologicalLevels(server_graph);
+
+        //collect the requested arrival bounds (the keys avoid duplicates)
+        Set<String> keys = new HashSet<>();
+        Deque<Pair<Server, Set<Flow>>> unexpanded = new ArrayDeque<>();
+        FIFOTandemAnalysis fifo_analysis = new FIFOTandemAnalysis(server_graph, configuration, context);
+        for(Flow foi : flows_of_interest){
+            Map<Path, Set<Flow>> crossflow_groups = fifo_analysis.getCrossflowGroupsToBound(Collections.singleton(foi), foi.getPath());
+            for(Map.Entry<Path, Set<Flow>> crossflow_group : crossflow_groups.entrySet()){
+                addRequest(configuration, context, new Pair<>(crossflow_group.getKey().getSource(), crossflow_group.getValue()), keys, unexpanded);
+            }
+        }
+        //<level, requested arrival bounds of the servers on that level>
+        TreeMap<Integer, List<Pair<Server, Set<Flow>>>> requests_per_level = new TreeMap<>();
+        while(!unexpanded.isEmpty()){
+            Pair<Server, Set<Flow>> request = unexpanded.poll();
+            requests_per_level.computeIfAbsent(levels.get(request.getFirst()), level -> new ArrayList<>()).add(request);
+            for(Pair<Server, Set<Flow>> dependency : ArrivalBoundDispatchFIFO.getArrivalBoundDependencies(server_graph,
+                    configuration, context, request.getFirst(), request.getSecond())){
+                addRequest(configuration, context, dependency, keys, unexpanded);
+            }
+        }
+
+        //compute them bottom-up
+        for(List<Pair<Server, Set<Flow>>> requests : requests_per_level.values()){
+            ArrivalBoundDispatchFIFO.computeArrivalBounds(server_graph, configuration, context, requests);
+        }
+        return keys.size();
+    }
+
+
+    private static void addRequest(AnalysisConfig configuration, AnalysisContext context, Pair<Server, Set<Flow>> request,
+                                   Set<String> keys, Deque<Pair<Server, Set<Flow>>> unexpanded){
+        if(keys.add(ArrivalBoundCacheFIFO.getKey(configuration, context, request.getFirst(), request.getSecond()))){
+            unexpanded.add(request);
+        }
+    }
+
+
+    /**
+     * Computes the topological level of every server, i.e. the length of the longest path of turns that ends at the
+     * server (servers without in-turns have level 0).
+     * @param server_graph
+     *                      the server graph
+     * @return  the level of every server
+     * @throws Exception if the server graph is not feedforward
+     */
+    public static Map<Server, Integer> getTopologicalLevels(ServerGraph server_graph) throws Exception {
+        Map<Server, Integer> levels = new HashMap<>();
+        Map<Server, Integer> unprocessed_in_turns = new HashMap<>();
+        Deque<Server> ready = new ArrayDeque<>();
+        for(Server server : server_graph.getServers()){
+            int in_degree = server_graph.getInTurns(server).size();
+            unprocessed_in_turns.put(server, in_degree);
+            if(in_degree == 0){
+                levels.put(server, 0);
+                ready.add(server);
+            }
+        }
+        //Kahn's algorithm
+        while(!ready.isEmpty()){
+            Server server = ready.poll();
+            int level = levels.get(server);
+            for(Turn turn : server_graph.getOutTurns(server)){
+                Server successor = turn.getDest();
+                levels.merge(successor, level + 1, Math::max);
+                if(unprocessed_in_turns.merge(successor, -1, Integer::sum) == 0){
+                    ready.add(successor);
+                }
+            }
+        }
+        if(levels.size() != server_graph.getServers().size()
+                || unprocessed_in_turns.values().stream().anyMatch(in_degree -> in_degree != 0)){
+            throw new Exception("The server graph is not feedforward");
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,533 @@
+package org.networkcalculus.dnc.optree.compiled;
+
+import nilgiri.math.DoubleReal;
+import nilgiri.math.autodiff.DifferentialFunction;
+import nilgiri.math.autodiff.Variable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * A symbolic term lowered to a flat instruction tape. Every instruction is stored in primitive arrays (operation,
+ * operand slots, constant value, parameter index), the instructions are ordered such that every operand is computed
+ * before it is used. The open parameters are addressed by their index in the parameter list that was used to compile
+ * the term. The evaluation neither walks the JAutoDiff object graph nor allocates any objects.
+ *
+ * Variables that are no open parameters (e.g. the time variable t) are compiled as constants with their current value.
+ *
+ * The gradient is computed in reverse mode: a single backward sweep over the tape propagates the adjoints from the
+ * root to the parameters, reusing the values of the forward pass. Thus, the cost of a gradient is independent of the
+ * number of open parameters.
+ *
+ * For solvers that exploit the piecewise linear structure of the term (see ActiveSetOptimiser), the tape also provides
+ * the kinks at a point (findKinks), the gradients of the linear pieces meeting there (pieceGradient), and the distance
+ * to the next kink along a ray (followRay).
+ *
+ * An instance is not thread-safe, as the work arrays are shared between evaluations. Use copy() to obtain an evaluator
+ * for another thread.
+ */
+public class CompiledTerm {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final byte CONSTANT = 0;
+    private static final byte PARAMETER = 1;
+    private static final byte ADD = 2;
+    private static final byte SUB = 3;
+    private static final byte MUL = 4;
+    private static final byte DIV = 5;
+    private static final byte MIN = 6;
+    private static final byte MAX = 7;
+
+    //the tape
+    private final byte[] op;
+    private final int[] left;
+    private final int[] right;
+    //constant value (CONSTANT) or parameter index (PARAMETER)
+    private final double[] constant;
+    private final int[] parameter;
+    private final int noOfParameters;
+
+    //work arrays
+    private final double[] value;
+    private final double[] adjoint;
+    //work arrays of the piecewise linear structure (see findKinks), allocated on first use
+    private double[] tangent;
+    private byte[] reach;
+    private byte[] choice;
+
+    //reach: the sign(s) of the adjoints that reach an instruction
+    private static final byte POSITIVE = 1;
+    private static final byte NEGATIVE = 2;
+    //choice: the operand of a kink the adjoint is propagated to
+    private static final byte BY_VALUE = 0;
+    private static final byte LEFT = 1;
+    private static final byte RIGHT = 2;
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private CompiledTerm(byte[] op, int[] left, int[] right, double[] constant, int[] parameter, int noOfParameters){
+        this.op = op;
+        this.left = left;
+        this.right = right;
+        this.constant = constant;
+        this.parameter = parameter;
+        this.noOfParameters = noOfParameters;
+        this.value = new double[op.length];
+        this.adjoint = new double[op.length];
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Creates an evaluator of the same term with its own work arrays (the tape itself is shared).
+     * @return  the copy
+     */
+    public CompiledTerm copy(){
+        return new CompiledTerm(op, left, right, constant, parameter, noOfParameters);
+    }
+
+
+    /**
+     * Lowers a symbolic term to an instruction tape.
+     * @param factory
+     *                  the factory that created the term
+     * @param term
+     *                  the term
+     * @param openParameters
+     *                  the open parameters, the i-th parameter is addressed by x[i] in execute
+     * @return  the compiled term; null iff the term contains sub-terms that were not created by the factory
+     */
+    public static CompiledTerm compile(TermFactory factory, DifferentialFunction<DoubleReal> term,
+                                       List<Variable<DoubleReal>> openParameters){
+        if(factory == null){
+            return null;
+        }
+        TermNode root = factory.getNode(term);
+        if(root == null){
+            return null;
+        }
+
+        Map<Variable<DoubleReal>, Integer> parameterIndices = new IdentityHashMap<>();
+        for(int i = 0; i < openParameters.size(); i++){
+            parameterIndices.put(openParameters.get(i), i);
+        }
+
+        //collect all nodes reachable from the root (each node once, shared sub-terms are computed once)
+        Map<TermNode, Integer> slots = new IdentityHashMap<>();
+        List<TermNode> reachable = new ArrayList<>();
+        Deque<TermNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while(!stack.isEmpty()){
+            TermNode node = stack.pop();
+            if(slots.containsKey(node)){
+                continue;
+            }
+            slots.put(node, -1);
+            reachable.add(node);
+            if(!node.isLeaf()){
+                stack.push(node.getLeft());
+                stack.push(node.getRight());
+            }
+        }
+        //the ids are assigned in creation order, i.e. every node has a larger id than its operands
+        reachable.sort((n1, n2) -> Integer.compare(n1.getId(), n2.getId()));
+
+        int size = reachable.size();
+        byte[] op = new byte[size];
+        int[] left = new int[size];
+        int[] right = new int[size];
+        double[] constant = new double[size];
+        int[] parameter = new int[size];
+        for(int i = 0; i < size; i++){
+            TermNode node = reachable.get(i);
+            slots.put(node, i);
+            switch (node.getOp()){
+                case CONSTANT:
+                    op[i] = CONSTANT;
+                    constant[i] = node.getValue();
+                    break;
+                case VARIABLE:
+                    Integer index = parameterIndices.get(node.getVariable());
+                    if(index != null){
+                        op[i] = PARAMETER;
+                        parameter[i] = index;
+                    }
+                    else{
+                        //not an open parameter, use its current value
+                        op[i] = CONSTANT;
+                        constant[i] = node.getVariable().getValue().doubleValue();
+                    }
+                    break;
+                default:
+                    op[i] = toOpCode(node.getOp());
+                    left[i] = slots.get(node.getLeft());
+                    right[i] = slots.get(node.getRight());
+            }
+        }
+        return new CompiledTerm(op, left, right, constant, parameter, openParameters.size());
+    }
+
+
+    private static byte toOpCode(TermNode.Op op){
+        switch (op){
+            case ADD: return ADD;
+            case SUB: return SUB;
+            case MUL: return MUL;
+            case DIV: return DIV;
+            case MIN: return MIN;
+            //[left]^+ == max(left, zero), the right operand (zero) is selected in case of a tie
+            case MAX:
+            case MINZ: return MAX;
+            default: throw new IllegalArgumentException("Not a binary operation: " + op);
+        }
+    }
+
+
+    /**
+     * Evaluates the term and (optionally) its gradient.
+     * @param x
+     *                  the values of the open parameters
+     * @param gradient
+     *                  array of length x.length that is filled with the partial derivatives, or null (resp. an array of
+     *                  a different length) if no gradient is required
+     * @return  the value of the term
+     */
+    public double execute(double[] x, double[] gradient){
+        double result = forward(x);
+        if(gradient != null && gradient.length == noOfParameters){
+            backward(gradient, null);
+        }
+        return result;
+    }
+
+
+    /**
+     * Evaluates all instructions of the tape.
+     * @param x
+     *                  the values of the open parameters
+     * @return  the value of the term (i.e. the value of the last instruction)
+     */
+    private double forward(double[] x){
+        final int size = op.length;
+        for(int i = 0; i < size; i++){
+            switch (op[i]){
+                case CONSTANT:
+                    value[i] = constant[i];
+                    break;
+                case PARAMETER:
+                    value[i] = x[parameter[i]];
+                    break;
+                case ADD:
+                    value[i] = value[left[i]] + value[right[i]];
+                    break;
+                case SUB:
+                    value[i] = value[left[i]] - value[right[i]];
+                    break;
+                case MUL:
+                    value[i] = value[left[i]] * value[right[i]];
+                    break;
+                case DIV:
+                    value[i] = value[left[i]] / value[right[i]];
+                    break;
+                case MIN:
+                    value[i] = Math.min(value[left[i]], value[right[i]]);
+                    break;
+                case MAX:
+                    value[i] = Math.max(value[left[i]], value[right[i]]);
+                    break;
+            }
+        }
+        return value[size - 1];
+    }
+
+
+    /**
+     * Computes all partial derivatives in a single backward sweep (reverse mode). Requires a preceding forward pass.
+     * For min and max, the adjoint is propagated to the selected operand only. Like JAutoDiff (max(a, b) == a if
+     * a - b > 0 else b, analogously for min), the right operand is selected in case of a tie.
+     * @param gradient
+     *                  array of length noOfParameters that is filled with the partial derivatives
+     * @param choice
+     *                  the operand selected at each min and max instruction (BY_VALUE, LEFT or RIGHT); null == all
+     *                  operands are selected by value
+     */
+    private void backward(double[] gradient, byte[] choice){
+        final int size = op.length;
+        Arrays.fill(gradient, 0);
+        Arrays.fill(adjoint, 0);
+        adjoint[size - 1] = 1;
+        for(int i = size - 1; i >= 0; i--){
+            double a = adjoint[i];
+            if(a == 0){
+                continue;
+            }
+            switch (op[i]){
+                case CONSTANT:
+                    break;
+                case PARAMETER:
+                    gradient[parameter[i]] += a;
+                    break;
+                case ADD:
+                    adjoint[left[i]] += a;
+                    adjoint[right[i]] += a;
+                    break;
+                case SUB:
+                    adjoint[left[i]] += a;
+                    adjoint[right[i]] -= a;
+                    break;
+                case MUL:
+                    adjoint[left[i]] += a * value[right[i]];
+                    adjoint[right[i]] += a * value[left[i]];
+                    break;
+                case DIV:
+                    adjoint[left[i]] += a / value[right[i]];
+                    adjoint[right[i]] -= a * value[i] / value[right[i]];
+                    break;
+                case MIN:
+                    if(choice != null && choice[i] != BY_VALUE){
+                        adjoint[choice[i] == LEFT ? left[i] : right[i]] += a;
+                    }
+                    else if(value[left[i]] < value[right[i]]){
+                        adjoint[left[i]] += a;
+                    }
+                    else{
+                        adjoint[right[i]] += a;
+                    }
+                    break;
+                case MAX:
+                    if(choice != null && choice[i] != BY_VALUE){
+                        adjoint[choice[i] == LEFT ? left[i] : right[i]] += a;
+                    }
+                    else if(value[left[i]] > value[right[i]]){
+                        adjoint[left[i]] += a;
+                    }
+                    else{
+                        adjoint[right[i]] += a;
+                    }
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Finds the kinks at a point, i.e. the min and max instructions whose operands coincide (up to the tolerance) and
+     * that affect the value of the term. The term is piecewise linear in the open parameters if it only multiplies and
+     * divides by constants (as the DiffLUDB objective does), each combination of operands selected at the kinks then
+     * defines one of the linear pieces active at the point (see pieceGradient).
+     *
+     * A kink is convex if the term locally behaves like the maximum of its operands, i.e. if it is a max instruction
+     * reached by positive adjoints only or a min instruction reached by negative adjoints only. Otherwise, i.e. for
+     * concave kinks and kinks reached by adjoints of both signs, the term may be decreased by selecting either operand.
+     * @param x
+     *                  the values of the open parameters
+     * @param tolerance
+     *                  the relative tolerance on the difference of the operands
+     * @param kinks
+     *                  array of length size() that receives the instructions of the kinks (in descending order)
+     * @param convex
+     *                  array of length size() that receives whether the respective kink is convex
+     * @return  the number of kinks
+     */
+    public int findKinks(double[] x, double tolerance, int[] kinks, boolean[] convex){
+        forward(x);
+        final int size = op.length;
+        if(reach == null){
+            reach = new byte[size];
+        }
+        Arrays.fill(reach, (byte) 0);
+        reach[size - 1] = POSITIVE;
+
+        int noOfKinks = 0;
+        for(int i = size - 1; i >= 0; i--){
+            byte r = reach[i];
+            if(r == 0){
+                continue;
+            }
+            switch (op[i]){
+                case ADD:
+                    reach[left[i]] |= r;
+                    reach[right[i]] |= r;
+                    break;
+                case SUB:
+                    reach[left[i]] |= r;
+                    reach[right[i]] |= flip(r);
+                    break;
+                case MUL:
+                    reach[left[i]] |= value[right[i]] < 0 ? flip(r) : r;
+                    reach[right[i]] |= value[left[i]] < 0 ? flip(r) : r;
+                    break;
+                case DIV:
+                    reach[left[i]] |= value[right[i]] < 0 ? flip(r) : r;
+                    reach[right[i]] |= value[i] / value[right[i]] < 0 ? r : flip(r);
+                    break;
+                case MIN:
+                case MAX:
+                    double l = value[left[i]];
+                    double v = value[right[i]];
+                    if(isTie(l, v, tolerance)){
+                        kinks[noOfKinks] = i;
+                        convex[noOfKinks] = op[i] == MAX ? r == POSITIVE : r == NEGATIVE;
+                        noOfKinks++;
+                        reach[left[i]] |= r;
+                        reach[right[i]] |= r;
+                    }
+                    else if(op[i] == MIN ? l < v : l > v){
+                        reach[left[i]] |= r;
+                    }
+                    else{
+                        reach[right[i]] |= r;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return noOfKinks;
+    }
+
+
+    private static byte flip(byte r){
+        return (byte) (((r & POSITIVE) != 0 ? NEGATIVE : 0) | ((r & NEGATIVE) != 0 ? POSITIVE : 0));
+    }
+
+
+    private static boolean isTie(double l, double r, double tolerance){
+        return Math.abs(l - r) <= tolerance * Math.max(1, Math.max(Math.abs(l), Math.abs(r)));
+    }
+
+
+    /**
+     * Computes the gradient of one linear piece active at the point of the preceding findKinks call, i.e. the gradient
+     * with a fixed operand selected at each kink. All other min and max instructions select their operand by value.
+     * @param kinks
+     *                  the kinks found by findKinks
+     * @param noOfKinks
+     *                  the number of kinks
+     * @param selectRight
+     *                  selectRight[k] == true iff the right operand is selected at kinks[k]
+     * @param gradient
+     *                  array of length noOfParameters that is filled with the gradient of the piece
+     */
+    public void pieceGradient(int[] kinks, int noOfKinks, boolean[] selectRight, double[] gradient){
+        if(choice == null){
+            choice = new byte[op.length];
+        }
+        for(int k = 0; k < noOfKinks; k++){
+            choice[kinks[k]] = selectRight[k] ? RIGHT : LEFT;
+        }
+        backward(gradient, choice);
+        for(int k = 0; k < noOfKinks; k++){
+            choice[kinks[k]] = BY_VALUE;
+        }
+    }
+
+
+    /**
+     * Follows the ray x + t * direction (t >= 0) up to the next kink. Computes the one-sided directional derivative at x
+     * in forward mode, where a tied min (max) instruction takes the operand with the smaller (larger) slope, and the
+     * smallest t > 0 at which any min or max instruction switches its operand. Along the ray, the term is linear between
+     * x and that point (if it only multiplies and divides by constants).
+     * @param x
+     *                  the values of the open parameters
+     * @param direction
+     *                  the direction of the ray
+     * @param tolerance
+     *                  the relative tolerance on the difference of the operands of min and max instructions
+     * @param result
+     *                  array of length 2 that receives the directional derivative and the distance to the next kink
+     *                  (in multiples of direction; infinite if there is none)
+     * @return  the value of the term at x
+     */
+    public double followRay(double[] x, double[] direction, double tolerance, double[] result){
+        final int size = op.length;
+        if(tangent == null){
+            tangent = new double[size];
+        }
+        double nextKink = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < size; i++){
+            switch (op[i]){
+                case CONSTANT:
+                    value[i] = constant[i];
+                    tangent[i] = 0;
+                    break;
+                case PARAMETER:
+                    value[i] = x[parameter[i]];
+                    tangent[i] = direction[parameter[i]];
+                    break;
+                case ADD:
+                    value[i] = value[left[i]] + value[right[i]];
+                    tangent[i] = tangent[left[i]] + tangent[right[i]];
+                    break;
+                case SUB:
+                    value[i] = value[left[i]] - value[right[i]];
+                    tangent[i] = tangent[left[i]] - tangent[right[i]];
+                    break;
+                case MUL:
+                    value[i] = value[left[i]] * value[right[i]];
+                    tangent[i] = tangent[left[i]] * value[right[i]] + value[left[i]] * tangent[right[i]];
+                    break;
+                case DIV:
+                    value[i] = value[left[i]] / value[right[i]];
+                    tangent[i] = (tangent[left[i]] - value[i] * tangent[right[i]]) / value[right[i]];
+                    break;
+                case MIN:
+                case MAX:
+                    double l = value[left[i]];
+                    double r = value[right[i]];
+                    double tl = tangent[left[i]];
+                    double tr = tangent[right[i]];
+                    boolean isMin = op[i] == MIN;
+                    boolean selectLeft;
+                    if(isTie(l, r, tolerance)){
+                        //the operands separate (or stay tied) along the ray
+                        selectLeft = isMin ? tl <= tr : tl >= tr;
+                    }
+                    else{
+                        selectLeft = isMin ? l < r : l > r;
+                        //the distance at which the operands meet
+                        double slope = tr - tl;
+                        if(slope != 0){
+                            double t = (l - r) / slope;
+                            if(t > 0){
+                                nextKink = Math.min(nextKink, t);
+                            }
+                        }
+                    }
+                    value[i] = selectLeft ? l : r;
+                    tangent[i] = selectLeft ? tl : tr;
+                    break;
+            }
+        }
+        result[0] = tangent[size - 1];
+        result[1] = nextKink;
+        return value[size - 1];
+    }
+
+
+    /**
+     * @return  the number of instructions
+     */
+    public int size(){
+        return op.length;
+    }
+
+    /**
+     * @return  the number of open parameters
+     */
+    public int getNoOfParameters(){
+        return noOfParameters;
+    }
+}
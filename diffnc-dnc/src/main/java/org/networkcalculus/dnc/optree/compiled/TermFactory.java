@@ -0,0 +1,214 @@
+package org.networkcalculus.dnc.optree.compiled;
+
+import nilgiri.math.DoubleReal;
+import nilgiri.math.autodiff.Constant;
+import nilgiri.math.autodiff.DifferentialFunction;
+import nilgiri.math.autodiff.DifferentialRealFunctionFactory;
+import nilgiri.math.autodiff.Variable;
+import nilgiri.math.autodiff.Zero;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * @author Lukas Herll
+ *
+ * Creates the symbolic (JAutoDiff) terms of a BinOperatorPlugin and records the structure of every created term.
+ * The recorded structure allows CompiledTerm to lower a symbolic term to a flat instruction tape, which is evaluated
+ * without walking the JAutoDiff object graph.
+ *
+ * The factory hash-conses the created terms: constants with the same value, and operations with the same operator and
+ * the same operands (in any order for the commutative operators + and *) are only created once. min, max, and minz
+ * are not treated as commutative: in case of a tie, JAutoDiff differentiates w.r.t. the right operand, hence e.g.
+ * max(a, b) and max(b, a) have the same value but different derivatives at a == b. Thus,
+ * structurally identical sub-terms (e.g. a maxStagesTerm that is reused in the latency and in every stage of a
+ * leftover curve) share one node, and the compiled tape evaluates (and differentiates) them only once per pass.
+ * Variables are never shared, as every open parameter is a distinct variable.
+ *
+ * Recommended use: create all constants, variables, and operations of a plugin via this factory. Terms that were
+ * created in a different way are unknown to the factory; a term containing such sub-terms cannot be compiled.
+ */
+public class TermFactory {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private final DifferentialRealFunctionFactory<DoubleReal> DFFactory;
+    //the recorded structure of all terms created by this factory
+    private final Map<DifferentialFunction<DoubleReal>, TermNode> nodes = new IdentityHashMap<>();
+
+    //hash-consing: constants by their value (bits), operations by (operator, left operand id, right operand id)
+    private final Map<Long, Constant<DoubleReal>> constants = new HashMap<>();
+    private final Map<Long, DifferentialFunction<DoubleReal>> operations = new HashMap<>();
+    private Zero zero;
+
+    //statistics
+    private int noOfSharedTerms;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public TermFactory(DifferentialRealFunctionFactory<DoubleReal> DFFactory){
+        this.DFFactory = DFFactory;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods: leaves
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public Constant<DoubleReal> constant(double value){
+        long key = Double.doubleToLongBits(value);
+        Constant<DoubleReal> constant = constants.get(key);
+        if(constant != null){
+            noOfSharedTerms++;
+            return constant;
+        }
+        constant = DFFactory.val(new DoubleReal(value));
+        nodes.put(constant, new TermNode(nodes.size(), value));
+        constants.put(key, constant);
+        return constant;
+    }
+
+    public Zero zero(){
+        if(zero != null){
+            noOfSharedTerms++;
+            return zero;
+        }
+        zero = DFFactory.zero();
+        nodes.put(zero, new TermNode(nodes.size(), 0));
+        return zero;
+    }
+
+    public Variable<DoubleReal> variable(String name, double initial_value){
+        Variable<DoubleReal> variable = DFFactory.var(name, new DoubleReal(initial_value));
+        nodes.put(variable, new TermNode(nodes.size(), variable));
+        return variable;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods: operations
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public DifferentialFunction<DoubleReal> plus(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.ADD, left, right, () -> left.plus(right));
+    }
+
+    public DifferentialFunction<DoubleReal> minus(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.SUB, left, right, () -> left.minus(right));
+    }
+
+    public DifferentialFunction<DoubleReal> mul(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.MUL, left, right, () -> left.mul(right));
+    }
+
+    public DifferentialFunction<DoubleReal> div(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.DIV, left, right, () -> left.div(right));
+    }
+
+    public DifferentialFunction<DoubleReal> minimum(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.MIN, left, right, () -> left.minimum(right));
+    }
+
+    public DifferentialFunction<DoubleReal> maximum(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.MAX, left, right, () -> left.maximum(right));
+    }
+
+    /**
+     * left.minz(right), i.e. [left]^+ for right == zero. Recorded as an operation of its own (MINZ) such that it is
+     * never shared with maximum(left, right) or maximum(right, left).
+     */
+    public DifferentialFunction<DoubleReal> minz(DifferentialFunction<DoubleReal> left, DifferentialFunction<DoubleReal> right){
+        return apply(TermNode.Op.MINZ, left, right, () -> left.minz(right));
+    }
+
+
+    /**
+     * Returns the term op(left, right). If a structurally identical term has been created before, that term is returned
+     * instead of creating a new one.
+     * @param op
+     *                  the operation
+     * @param left
+     *                  the left operand
+     * @param right
+     *                  the right operand
+     * @param operation
+     *                  creates the term via JAutoDiff
+     * @return  the (possibly shared) term
+     */
+    private DifferentialFunction<DoubleReal> apply(TermNode.Op op, DifferentialFunction<DoubleReal> left,
+                                                   DifferentialFunction<DoubleReal> right,
+                                                   Supplier<DifferentialFunction<DoubleReal>> operation){
+        TermNode leftNode = nodes.get(left);
+        TermNode rightNode = nodes.get(right);
+        //operands that were not created by this factory can neither be shared nor recorded (the result will not be
+        //compilable)
+        if(leftNode == null || rightNode == null){
+            return operation.get();
+        }
+
+        Long key = getKey(op, leftNode, rightNode);
+        DifferentialFunction<DoubleReal> result = operations.get(key);
+        if(result != null){
+            noOfSharedTerms++;
+            return result;
+        }
+
+        result = operation.get();
+        //JAutoDiff may simplify an operation and return one of its (already recorded) operands, keep the original record
+        if(!nodes.containsKey(result)){
+            nodes.put(result, new TermNode(nodes.size(), op, leftNode, rightNode));
+        }
+        operations.put(key, result);
+        return result;
+    }
+
+
+    /**
+     * Computes the structural key of an operation. The operands of commutative operations are ordered by their ids.
+     * @param op
+     *                  the operation
+     * @param left
+     *                  the node of the left operand
+     * @param right
+     *                  the node of the right operand
+     * @return  the key
+     */
+    private static Long getKey(TermNode.Op op, TermNode left, TermNode right){
+        long first = left.getId();
+        long second = right.getId();
+        boolean commutative = op == TermNode.Op.ADD || op == TermNode.Op.MUL;
+        if(commutative && second < first){
+            long tmp = first;
+            first = second;
+            second = tmp;
+        }
+        //4 bits for the operation, 30 bits for each operand id
+        return ((long) op.ordinal() << 60) | (first << 30) | second;
+    }
+
+
+    /**
+     * Returns the recorded structure of a term.
+     * @param term
+     *                  the term
+     * @return  the recorded node; null iff the term was not created by this factory
+     */
+    public TermNode getNode(DifferentialFunction<DoubleReal> term){
+        return nodes.get(term);
+    }
+
+
+    /**
+     * @return  the number of recorded nodes
+     */
+    public int size(){
+        return nodes.size();
+    }
+
+
+    /**
+     * @return  the number of requested terms that were answered by an already existing term
+     */
+    public int getNoOfSharedTerms(){
+        return noOfSharedTerms;
+    }
+}
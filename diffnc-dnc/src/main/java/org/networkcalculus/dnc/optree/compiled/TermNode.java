@@ -0,0 +1,85 @@
+package org.networkcalculus.dnc.optree.compiled;
+
+import nilgiri.math.DoubleReal;
+import nilgiri.math.autodiff.Variable;
+
+/**
+ * @author Lukas Herll
+ *
+ * The recorded structure of a single node of a symbolic term (see TermFactory). Since the nodes are created bottom-up,
+ * a node's id is always larger than the ids of its children, i.e. ordering the nodes by their ids yields a valid
+ * evaluation order.
+ */
+public final class TermNode {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //MINZ == left.minz(right), i.e. max(left, right) with the derivative of JAutoDiff's minz
+    public enum Op {
+        CONSTANT, VARIABLE, ADD, SUB, MUL, DIV, MIN, MAX, MINZ
+    }
+
+    private final int id;
+    private final Op op;
+    //only set for constants
+    private final double value;
+    //only set for variables
+    private final Variable<DoubleReal> variable;
+    //only set for binary operations
+    private final TermNode left, right;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    TermNode(int id, double value){
+        this(id, Op.CONSTANT, value, null, null, null);
+    }
+
+    TermNode(int id, Variable<DoubleReal> variable){
+        this(id, Op.VARIABLE, 0, variable, null, null);
+    }
+
+    TermNode(int id, Op op, TermNode left, TermNode right){
+        this(id, op, 0, null, left, right);
+    }
+
+    private TermNode(int id, Op op, double value, Variable<DoubleReal> variable, TermNode left, TermNode right){
+        this.id = id;
+        this.op = op;
+        this.value = value;
+        this.variable = variable;
+        this.left = left;
+        this.right = right;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //getters
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public int getId() {
+        return id;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public Variable<DoubleReal> getVariable() {
+        return variable;
+    }
+
+    public TermNode getLeft() {
+        return left;
+    }
+
+    public TermNode getRight() {
+        return right;
+    }
+
+    public boolean isLeaf(){
+        return op == Op.CONSTANT || op == Op.VARIABLE;
+    }
+}
@@ -5,6 +5,7 @@ import nilgiri.math.DoubleRealFactory;
 import nilgiri.math.autodiff.*;
 import org.networkcalculus.dnc.network.server_graph.Flow;
 import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.optree.compiled.TermFactory;
 import org.networkcalculus.dnc.optree.nodes.*;
 import org.networkcalculus.dnc.optree.bounds.Bound;
 import org.networkcalculus.dnc.optree.constraints.Constraint;
@@ -42,6 +43,8 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
     //needed to create functions compatible with JAutoDiff
     protected final DoubleRealFactory RNFactory;
     protected final DifferentialRealFunctionFactory<DoubleReal> DFFactory;
+    //creates (and records) all constants, variables, and operations of the symbolic terms
+    protected final TermFactory terms;
 
     protected Variable<DoubleReal> t;
     protected Zero zero;
@@ -56,11 +59,12 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
     public AbstractArbMulPlugin(){
         this.RNFactory = DoubleRealFactory.instance();
         this.DFFactory = new DifferentialRealFunctionFactory<DoubleReal>(RNFactory);
+        this.terms = new TermFactory(DFFactory);
 
         //initialise t as a variable with value 0 (the value should be irrelevant)
-        this.t = DFFactory.var("t", new DoubleReal(0));
+        this.t = terms.variable("t", 0);
 
-        this.zero = DFFactory.zero();
+        this.zero = terms.zero();
 
         this.parameters = new ArrayList<>();
         this.bounds = new ArrayList<>();
@@ -143,16 +147,16 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         for(TBArrivalSymbolic stage : stages){
             DifferentialFunction<DoubleReal> sigma_x = stage.get_B();
             DifferentialFunction<DoubleReal> rho_x = stage.get_r();
-            DifferentialFunction<DoubleReal> stageTerm = sigma.minus(sigma_x).div(rho_x);
+            DifferentialFunction<DoubleReal> stageTerm = terms.div(terms.minus(sigma, sigma_x), rho_x);
 
             if(delayTerm == null){
                 delayTerm = stageTerm;
             }
             else{
-                delayTerm = delayTerm.maximum(stageTerm);
+                delayTerm = terms.maximum(delayTerm, stageTerm);
             }
         }
-        delayTerm = delayTerm.minz(zero);
+        delayTerm = terms.minz(delayTerm, zero);
         return delayTerm;
     }
 
@@ -166,7 +170,7 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
      * @return  H(gamma, beta)
      */
     protected DelayTermSymbolic computeDelayTerm(TBArrivalSymbolic alpha, RLServiceSymbolic beta){
-        return new DelayTermSymbolic(alpha.get_B().div(beta.get_R()).plus(beta.get_L()));
+        return new DelayTermSymbolic(terms.plus(terms.div(alpha.get_B(), beta.get_R()), beta.get_L()));
     }
 
 
@@ -188,7 +192,7 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
 
         DifferentialFunction<DoubleReal> delayTerm = computeMaxStagesTerm(sigma, pi.getStages());
 
-        delayTerm = D.plus(delayTerm);
+        delayTerm = terms.plus(D, delayTerm);
         return new DelayTermSymbolic(delayTerm);
     }
 
@@ -208,9 +212,9 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         DifferentialFunction<DoubleReal> L_2 = beta_right.get_L();
 
         //new R = min(R_1, R_2)
-        DifferentialFunction<DoubleReal> new_R = R_1.minimum(R_2);
+        DifferentialFunction<DoubleReal> new_R = terms.minimum(R_1, R_2);
         //new L = L_1+L_2
-        DifferentialFunction<DoubleReal> new_L = L_1.plus(L_2);
+        DifferentialFunction<DoubleReal> new_L = terms.plus(L_1, L_2);
 
         return new RLServiceSymbolic(new_R, new_L, this.t, this.zero);
     }
@@ -230,7 +234,7 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         }
 
         //the latencies add up
-        DifferentialFunction<DoubleReal> latency = pi_left.getLatency().plus(pi_right.getLatency());
+        DifferentialFunction<DoubleReal> latency = terms.plus(pi_left.getLatency(), pi_right.getLatency());
 
         //combine the stages
         List<TBArrivalSymbolic> stages = pi_left.getStages();
@@ -258,9 +262,9 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         DifferentialFunction<DoubleReal> B = alpha.get_B();
 
         //new R = R-r
-        DifferentialFunction<DoubleReal> new_R = R.minus(r);
+        DifferentialFunction<DoubleReal> new_R = terms.minus(R, r);
         //new L = (B+R*L)/(R-r)
-        DifferentialFunction<DoubleReal> new_L = B.plus(R.mul(L)).div(R.minus(r));
+        DifferentialFunction<DoubleReal> new_L = terms.div(terms.plus(B, terms.mul(R, L)), terms.minus(R, r));
 
         return new RLServiceSymbolic(new_R, new_L, this.t, this.zero);
     }
@@ -283,12 +287,12 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         }
 
         DifferentialFunction<DoubleReal> maxStagesTerm = computeMaxStagesTerm(alpha.get_B(), pi.getStages());
-        DifferentialFunction<DoubleReal> latency  = pi.getLatency().plus(maxStagesTerm);
+        DifferentialFunction<DoubleReal> latency  = terms.plus(pi.getLatency(), maxStagesTerm);
 
         List<TBArrivalSymbolic> stages = new ArrayList<>();
         for(TBArrivalSymbolic stage : pi.getStages()){
-            DifferentialFunction<DoubleReal> sigma = stage.get_r().mul(maxStagesTerm).minus(alpha.get_B().minus(stage.get_B()));
-            DifferentialFunction<DoubleReal> rho = stage.get_r().minus(alpha.get_r());
+            DifferentialFunction<DoubleReal> sigma = terms.minus(terms.mul(stage.get_r(), maxStagesTerm), terms.minus(alpha.get_B(), stage.get_B()));
+            DifferentialFunction<DoubleReal> rho = terms.minus(stage.get_r(), alpha.get_r());
             TBArrivalSymbolic newStage = new TBArrivalSymbolic(rho, sigma, t, zero);
             stages.add(newStage);
         }
@@ -340,7 +344,7 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
      * @return
      */
     protected Variable<DoubleReal> createOpenParameter(String name, double initial_value){
-        Variable<DoubleReal> param = DFFactory.var(name, new DoubleReal(initial_value));
+        Variable<DoubleReal> param = terms.variable(name, initial_value);
         parameters.add(param);
         return param;
     }
@@ -353,7 +357,7 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
      * @return  the constant
      */
     protected Constant<DoubleReal> createConstant(double value){
-        return DFFactory.val(new DoubleReal(value));
+        return terms.constant(value);
     }
 
 
@@ -425,4 +429,9 @@ public abstract class AbstractArbMulPlugin implements BinOperatorPlugin{
         return this.constraints;
     }
 
+    @Override
+    public TermFactory getTermFactory(){
+        return this.terms;
+    }
+
 }
@@ -67,11 +67,11 @@ public abstract class AbstractFIFOMulPlugin extends AbstractArbMulPlugin{
         createBound(s, 0, null);
 
         //new latency s+T+b/R
-        DifferentialFunction<DoubleReal> latency = s.plus(T.plus(b.div(R)));
+        DifferentialFunction<DoubleReal> latency = terms.plus(s, terms.plus(T, terms.div(b, R)));
         //new R = R-r
-        DifferentialFunction<DoubleReal> new_R = R.minus(r);
+        DifferentialFunction<DoubleReal> new_R = terms.minus(R, r);
         //new L = Rs
-        DifferentialFunction<DoubleReal> new_L = R.mul(s);
+        DifferentialFunction<DoubleReal> new_L = terms.mul(R, s);
 
         //create the stage of the resulting PA curve
         TBArrivalSymbolic stage = new TBArrivalSymbolic(new_R, new_L, t, zero);
@@ -105,13 +105,13 @@ public abstract class AbstractFIFOMulPlugin extends AbstractArbMulPlugin{
         //add a lower bound to the free s parameter
         createBound(s, 0, null);
 
-        DifferentialFunction<DoubleReal> maxStagesTerm = computeMaxStagesTerm(alpha.get_B(), pi.getStages()).plus(s);
-        DifferentialFunction<DoubleReal> latency  = pi.getLatency().plus(maxStagesTerm);
+        DifferentialFunction<DoubleReal> maxStagesTerm = terms.plus(computeMaxStagesTerm(alpha.get_B(), pi.getStages()), s);
+        DifferentialFunction<DoubleReal> latency  = terms.plus(pi.getLatency(), maxStagesTerm);
 
         List<TBArrivalSymbolic> stages = new ArrayList<>();
         for(TBArrivalSymbolic stage : pi.getStages()){
-            DifferentialFunction<DoubleReal> sigma = stage.get_r().mul(maxStagesTerm).minus(alpha.get_B().minus(stage.get_B()));
-            DifferentialFunction<DoubleReal> rho = stage.get_r().minus(alpha.get_r());
+            DifferentialFunction<DoubleReal> sigma = terms.minus(terms.mul(stage.get_r(), maxStagesTerm), terms.minus(alpha.get_B(), stage.get_B()));
+            DifferentialFunction<DoubleReal> rho = terms.minus(stage.get_r(), alpha.get_r());
             TBArrivalSymbolic newStage = new TBArrivalSymbolic(rho, sigma, t, zero);
             stages.add(newStage);
         }
@@ -4,6 +4,7 @@ import nilgiri.math.DoubleReal;
 import nilgiri.math.autodiff.Variable;
 import org.networkcalculus.dnc.network.server_graph.Flow;
 import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.optree.compiled.TermFactory;
 import org.networkcalculus.dnc.optree.nodes.OpTSymbolicNode;
 import org.networkcalculus.dnc.optree.nodes.OpTNode;
 import org.networkcalculus.dnc.optree.nodes.OpTOperatorNode;
@@ -95,6 +96,16 @@ public interface BinOperatorPlugin {
      * @return  all parameters used in the most recently computed symbolic term.
      */
     ArrayList<Variable<DoubleReal>> getParameters();
+
+
+    /**
+     * Retrieves the factory that created (and recorded) the symbolic terms of this plugin. The recorded structure is
+     * required to compile a symbolic term (see CompiledTerm).
+     * @return  the factory; null if the plugin does not record its symbolic terms
+     */
+    default TermFactory getTermFactory(){
+        return null;
+    }
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //methods: computing the bounds
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,373 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.apache.commons.math3.util.Pair;
+import org.networkcalculus.dnc.optree.compiled.CompiledTerm;
+import org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LinearForm_LUDB;
+import org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LpSolver;
+import org.networkcalculus.dnc.tandem.fifo.LUDBOPT.LpSolverSimplex;
+import org.nlopt4j.optimizer.NLopt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Active-set method for the piecewise linear DiffLUDB objective (algorithm code JavaOptimiser.JAVA_ACTIVE_SET). The
+ * delay bound is piecewise linear in the s-parameters (its Hessian is zero almost everywhere, see DemoHessian), the
+ * kinks stem from the minima and maxima of the PA curves and the max stages term. The solver works on the instruction
+ * tape of the objective (see CompiledTerm) instead of sampling the objective like a generic NLP solver.
+ *
+ * Each iteration enumerates the linear pieces meeting at the current point, i.e. the gradients for all combinations of
+ * operands at the kinks of the tape. Locally, the objective is the maximum of the pieces at its convex kinks; at its
+ * concave kinks (e.g. a minimum), selecting either operand yields an upper bound. Hence, for every selection at the
+ * concave kinks, the local LP
+ *      min t  s.t.  g_j * d <= t for all pieces j,  -1 <= d_i <= 1,  d_i >= 0 (<= 0) at a lower (upper) bound
+ * is solved (with the in-process simplex of the LUDB analysis). If no LP has a negative optimum, the point is an exact
+ * local optimum. Otherwise, the solver moves along the best direction from kink to kink (see CompiledTerm.followRay)
+ * as long as the objective decreases along it, or up to the bounds. Only the end point of this walk is evaluated.
+ *
+ * Each accepted step strictly decreases the objective and ends at a kink or a bound, so on a piecewise linear objective
+ * the method reaches a local optimum after finitely many steps. If more than MAX_ENUMERATED_KINKS kinks meet at a point,
+ * the kinks farthest from the root of the tape select their operands by value, and the LPs only cover a subset of the
+ * pieces (the result is then a local optimum among these pieces). The method requires the compiled objective, see
+ * JavaOptimiser.create for the fall-back.
+ *
+ * Every pass over the tape counts as one evaluation against the evaluation limit: the evaluations of the objective, the
+ * kink search (findKinks), every piece gradient (pieceGradient), and every step of a walk (followRay). Hence, at a point
+ * with k enumerated kinks, one iteration costs up to 2^k + 1 evaluations plus the steps of its walk.
+ */
+class ActiveSetOptimiser extends JavaOptimiser {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //relative tolerance on the operands of a kink
+    private static final double KINK_TOLERANCE = 1e-9;
+    //at most 2^MAX_ENUMERATED_KINKS pieces are enumerated per point
+    private static final int MAX_ENUMERATED_KINKS = 10;
+    //local LP optima above -STATIONARITY_TOLERANCE (relative to the largest gradient) count as 0
+    private static final double STATIONARITY_TOLERANCE = 1e-9;
+    //the number of times a walk that did not decrease the objective is halved
+    private static final int MAX_BACKTRACKS = 20;
+
+    //an evaluator of its own (the objective function may use another one of the same tape)
+    private final CompiledTerm tape;
+    private final LpSolver lpSolver = new LpSolverSimplex();
+
+    private final int[] kinks;
+    private final boolean[] convex;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    ActiveSetOptimiser(NLopt.NLopt_func objective, CompiledTerm tape, double[] lowerBounds, double[] upperBounds,
+                       double relativeTolerance, int maxEval){
+        super(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+        this.tape = tape;
+        this.kinks = new int[tape.size()];
+        this.convex = new boolean[tape.size()];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    protected int minimise(double[] x){
+        double value = evaluate(x, null);
+        double[] direction = new double[dimension];
+        double[] y = new double[dimension];
+
+        while(!isExhausted()){
+            double slope = steepestLocalDirection(x, direction);
+            if(isExhausted()){
+                //the enumeration of the pieces may be incomplete
+                break;
+            }
+            if(!(slope < 0)){
+                //no piece decreases the objective: local optimum
+                return SUCCESS;
+            }
+            double travelled = walk(x, direction, y);
+            if(isExhausted()){
+                break;
+            }
+            if(travelled == 0){
+                //the tape does not decrease along the direction either (e.g. a non-linear term)
+                return XTOL_REACHED;
+            }
+
+            double valueY = evaluate(y, null);
+            for(int backtrack = 0; !(valueY < value) && backtrack < MAX_BACKTRACKS; backtrack++){
+                if(isExhausted() || isBelowTolerance(x, y)){
+                    break;
+                }
+                for(int i = 0; i < dimension; i++){
+                    y[i] = x[i] + 0.5 * (y[i] - x[i]);
+                }
+                valueY = evaluate(y, null);
+            }
+            if(!(valueY < value)){
+                return isExhausted() ? exhaustedResultCode() : XTOL_REACHED;
+            }
+            boolean negligible = isBelowTolerance(x, y) && value - valueY <= relativeTolerance * Math.abs(value);
+            System.arraycopy(y, 0, x, 0, dimension);
+            value = valueY;
+            if(negligible){
+                return XTOL_REACHED;
+            }
+        }
+        return exhaustedResultCode();
+    }
+
+
+    /**
+     * Enumerates the linear pieces meeting at x and solves the local LP for every selection at the concave kinks.
+     * @param x
+     *                  the parameter values
+     * @param direction
+     *                  receives the direction of the best LP (undefined if no LP has a negative optimum)
+     * @return  the most negative LP optimum, i.e. the directional derivative along the direction; 0 if there is none
+     *          (the enumeration stops once the evaluation limit is reached)
+     */
+    private double steepestLocalDirection(double[] x, double[] direction){
+        countEvaluation();
+        int noOfKinks = Math.min(tape.findKinks(x, KINK_TOLERANCE, kinks, convex), MAX_ENUMERATED_KINKS);
+
+        //the concave kinks are enumerated in the outer loop, the convex ones in the inner loop
+        int[] order = new int[noOfKinks];
+        int noOfConcave = 0;
+        for(int k = 0; k < noOfKinks; k++){
+            if(!convex[k]){
+                order[noOfConcave++] = k;
+            }
+        }
+        for(int k = 0, next = noOfConcave; k < noOfKinks; k++){
+            if(convex[k]){
+                order[next++] = k;
+            }
+        }
+        int noOfConvex = noOfKinks - noOfConcave;
+
+        boolean[] selectRight = new boolean[noOfKinks];
+        double best = 0;
+        double[] candidate = new double[dimension];
+        for(long concave = 0; concave < 1L << noOfConcave; concave++){
+            List<double[]> pieces = new ArrayList<>();
+            Map<Integer, List<double[]>> seen = new HashMap<>();
+            for(int k = 0; k < noOfConcave; k++){
+                selectRight[order[k]] = (concave >> k & 1) != 0;
+            }
+            for(long convexSelection = 0; convexSelection < 1L << noOfConvex; convexSelection++){
+                if(isExhausted()){
+                    return best;
+                }
+                for(int k = 0; k < noOfConvex; k++){
+                    selectRight[order[noOfConcave + k]] = (convexSelection >> k & 1) != 0;
+                }
+                double[] gradient = new double[dimension];
+                countEvaluation();
+                tape.pieceGradient(kinks, noOfKinks, selectRight, gradient);
+                addPiece(gradient, pieces, seen);
+            }
+
+            double optimum = solveLocalLP(x, pieces, candidate);
+            if(optimum < best){
+                best = optimum;
+                System.arraycopy(candidate, 0, direction, 0, dimension);
+            }
+        }
+        return best;
+    }
+
+
+    /**
+     * Adds a gradient to the pieces unless an identical one is already contained.
+     */
+    private static void addPiece(double[] gradient, List<double[]> pieces, Map<Integer, List<double[]>> seen){
+        List<double[]> bucket = seen.computeIfAbsent(Arrays.hashCode(gradient), h -> new ArrayList<>());
+        for(double[] piece : bucket){
+            if(Arrays.equals(piece, gradient)){
+                return;
+            }
+        }
+        bucket.add(gradient);
+        pieces.add(gradient);
+    }
+
+
+    /**
+     * Solves min t s.t. g_j * d <= t (all pieces j), -1 <= d_i <= 1, and d_i >= 0 (<= 0) if x_i is at its lower (upper)
+     * bound. The LP solver requires non-negative variables, hence it works on u_i = d_i + 1 (variables 0, ..., n-1) and
+     * tau = t + T (variable n), where T bounds |g_j * d| from above.
+     * @param x
+     *                  the parameter values
+     * @param pieces
+     *                  the gradients of the pieces
+     * @param direction
+     *                  receives the optimal d
+     * @return  the optimal t (0 if it is above -STATIONARITY_TOLERANCE or the LP could not be solved)
+     */
+    private double solveLocalLP(double[] x, List<double[]> pieces, double[] direction){
+        int n = dimension;
+        double shift = 0;
+        for(double[] g : pieces){
+            double norm = 0;
+            for(double gi : g){
+                norm += Math.abs(gi);
+            }
+            shift = Math.max(shift, norm);
+        }
+        if(shift == 0 || Double.isNaN(shift) || Double.isInfinite(shift)){
+            return 0;
+        }
+
+        List<LinearForm_LUDB> constraints = new ArrayList<>();
+        double[] coefficients = new double[n + 1];
+        for(double[] g : pieces){
+            //tau - T - g * (u - 1) >= 0
+            double constant = -shift;
+            for(int i = 0; i < n; i++){
+                coefficients[i] = -g[i];
+                constant += g[i];
+            }
+            coefficients[n] = 1;
+            constraints.add(linearForm(constant, coefficients));
+        }
+        Arrays.fill(coefficients, 0);
+        for(int i = 0; i < n; i++){
+            boolean atLower = x[i] <= lowerBounds[i];
+            boolean atUpper = x[i] >= upperBounds[i];
+            //u_i <= 2, resp. u_i <= 1 at the upper bound
+            coefficients[i] = -1;
+            constraints.add(linearForm(atUpper ? 1 : 2, coefficients));
+            if(atLower){
+                //u_i >= 1
+                coefficients[i] = 1;
+                constraints.add(linearForm(-1, coefficients));
+            }
+            coefficients[i] = 0;
+        }
+        coefficients[n] = 1;
+        LinearForm_LUDB lpObjective = linearForm(-shift, coefficients);
+
+        Pair<Double, Map<Integer, Double>> solution;
+        try {
+            solution = lpSolver.solve(lpObjective, constraints, n + 1);
+        }
+        catch(Exception e) {
+            return 0;
+        }
+        double optimum = solution.getFirst();
+        if(Double.isNaN(optimum) || optimum > -STATIONARITY_TOLERANCE * shift){
+            return 0;
+        }
+        for(int i = 0; i < n; i++){
+            double d = solution.getSecond().getOrDefault(i, 1.0) - 1;
+            //remove rounding errors of the simplex, in particular ones pointing out of the bounds
+            direction[i] = Math.abs(d) <= KINK_TOLERANCE ? 0 : d;
+        }
+        return optimum;
+    }
+
+
+    private static LinearForm_LUDB linearForm(double constant, double[] coefficients){
+        LinearForm_LUDB form = LinearForm_LUDB.createConstant(constant);
+        for(int i = 0; i < coefficients.length; i++){
+            if(coefficients[i] != 0){
+                form = form.add(LinearForm_LUDB.createVar(i).mult(LinearForm_LUDB.createConstant(coefficients[i])));
+            }
+        }
+        return form;
+    }
+
+
+    /**
+     * Moves from x along the direction from kink to kink as long as the tape decreases along it, up to the bounds.
+     * @param x
+     *                  the parameter values
+     * @param direction
+     *                  a descent direction at x
+     * @param y
+     *                  receives the end point of the walk
+     * @return  the distance travelled (in multiples of the direction); the walk stops once the evaluation limit is
+     *          reached
+     */
+    private double walk(double[] x, double[] direction, double[] y){
+        System.arraycopy(x, 0, y, 0, dimension);
+        double[] ray = new double[2];
+        double travelled = 0;
+        //every kink is passed at most once along a line through a piecewise linear term
+        for(int segment = 0; segment <= tape.size() && !isExhausted(); segment++){
+            countEvaluation();
+            tape.followRay(y, direction, KINK_TOLERANCE, ray);
+            if(!(ray[0] < 0)){
+                break;
+            }
+            double toBounds = distanceToBounds(y, direction);
+            double t = Math.min(ray[1], toBounds);
+            if(Double.isInfinite(t)){
+                //unbounded along the direction, double the distance
+                t = Math.max(travelled, initialStep(y));
+            }
+            for(int i = 0; i < dimension; i++){
+                y[i] += t * direction[i];
+            }
+            snapToBounds(y);
+            travelled += t;
+            if(t >= toBounds){
+                break;
+            }
+        }
+        return travelled;
+    }
+
+
+    /**
+     * Projects y onto the bounds and moves the coordinates within rounding errors of a bound onto it, such that the
+     * local LP at y restricts the direction at that bound.
+     */
+    private void snapToBounds(double[] y){
+        project(y);
+        for(int i = 0; i < dimension; i++){
+            if(y[i] - lowerBounds[i] <= KINK_TOLERANCE * Math.max(1, Math.abs(lowerBounds[i]))){
+                y[i] = lowerBounds[i];
+            }
+            else if(upperBounds[i] - y[i] <= KINK_TOLERANCE * Math.max(1, Math.abs(upperBounds[i]))){
+                y[i] = upperBounds[i];
+            }
+        }
+    }
+
+
+    /**
+     * @return  the largest t such that y + t * direction is within the bounds
+     */
+    private double distanceToBounds(double[] y, double[] direction){
+        double t = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < dimension; i++){
+            if(direction[i] > 0){
+                t = Math.min(t, (upperBounds[i] - y[i]) / direction[i]);
+            }
+            else if(direction[i] < 0){
+                t = Math.min(t, (lowerBounds[i] - y[i]) / direction[i]);
+            }
+        }
+        return Math.max(t, 0);
+    }
+
+
+    /**
+     * @return  true iff x and y differ by at most the tolerance in every coordinate
+     */
+    private boolean isBelowTolerance(double[] x, double[] y){
+        for(int i = 0; i < dimension; i++){
+            if(Math.abs(y[i] - x[i]) > tolerance(x, i)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
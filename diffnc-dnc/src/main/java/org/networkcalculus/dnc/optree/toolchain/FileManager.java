@@ -10,7 +10,8 @@ import java.nio.charset.StandardCharsets;
  * @author Lukas Herll
  *
  * Manages all interactions with files for DNC analyses involving binary operator trees.
- * Uses a singleton pattern to avoid two instances writing to the same file simultaneously.
+ * Uses a singleton pattern to avoid two instances writing to the same file simultaneously. Appending is synchronized,
+ * so that concurrent analyses can share the result files.
  */
 public class FileManager {
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -24,7 +25,7 @@ public class FileManager {
     private FileManager(){
     }
 
-    public static FileManager getInstance(){
+    public static synchronized FileManager getInstance(){
         if(instance == null){
             instance = new FileManager();
         }
@@ -130,7 +131,7 @@ public class FileManager {
      *                  the content to be appended to the file
      * @return  false iff the file does not exist
      */
-    public boolean appendToFile(String path, String content){
+    public synchronized boolean appendToFile(String path, String content){
         //if the file does not exist, return false
         if(!fileExists(path)){
             return false;
@@ -0,0 +1,251 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.networkcalculus.dnc.optree.compiled.CompiledTerm;
+import org.nlopt4j.optimizer.NLopt;
+import org.nlopt4j.optimizer.NLoptResult;
+
+import java.util.Arrays;
+
+/**
+ * @author Lukas Herll
+ *
+ * Base class of the pure-Java bound-constrained NLP solvers. They are selected via algorithm codes beyond the NLopt
+ * numbering (see isJavaAlgorithm) and never touch the native NLopt library, i.e. the objective function is called
+ * directly and can be inlined by the JIT.
+ *
+ * The solvers are tailored to the DiffLUDB NLPs: few (up to a few dozen) parameters bounded below by 0 and a piecewise
+ * linear, non-smooth objective. Like NLopt, a run returns the best point it has evaluated, and it stops when the
+ * evaluation limit is reached (result code 5), when its steps fall below the relative tolerance on the parameters
+ * (result code 4), or when forceStop() is called (result code -5). The tolerance is relative to max(|x_i|, 1), since
+ * optimal s-parameters are often 0.
+ *
+ * Not thread-safe except for forceStop(), each run needs its own instance (see SolverSession.open).
+ */
+abstract class JavaOptimiser implements Optimiser {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //projected subgradient method with a two-element bundle (needs the gradient of the objective function)
+    static final int JAVA_SUBGRADIENT = 200;
+    //bounded Nelder-Mead with restarts (derivative-free)
+    static final int JAVA_NELDER_MEAD = 201;
+    //active-set method on the linear pieces of the compiled objective (see ActiveSetOptimiser)
+    static final int JAVA_ACTIVE_SET = 202;
+
+    //NLopt result codes
+    static final int SUCCESS = 1;
+    static final int XTOL_REACHED = 4;
+    static final int MAXEVAL_REACHED = 5;
+    static final int FORCED_STOP = -5;
+
+    protected final NLopt.NLopt_func objective;
+    protected final int dimension;
+    protected final double[] lowerBounds;
+    protected final double[] upperBounds;
+    protected final double relativeTolerance;
+    private final int maxEval;
+
+    private volatile boolean stopped;
+    private int evaluations;
+
+    //the best point evaluated so far
+    protected double bestValue = Double.POSITIVE_INFINITY;
+    protected double[] bestX;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    JavaOptimiser(NLopt.NLopt_func objective, double[] lowerBounds, double[] upperBounds, double relativeTolerance,
+                  int maxEval){
+        this.objective = objective;
+        this.dimension = lowerBounds.length;
+        this.lowerBounds = lowerBounds;
+        this.upperBounds = upperBounds;
+        this.relativeTolerance = relativeTolerance;
+        this.maxEval = maxEval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param nlopt_alg_method
+     *                          an algorithm code
+     * @return  true iff the code selects a pure-Java solver
+     */
+    static boolean isJavaAlgorithm(int nlopt_alg_method){
+        return nlopt_alg_method == JAVA_SUBGRADIENT || nlopt_alg_method == JAVA_NELDER_MEAD
+                || nlopt_alg_method == JAVA_ACTIVE_SET;
+    }
+
+
+    /**
+     * Creates a pure-Java solver.
+     * @param nlopt_alg_method
+     *                          JAVA_SUBGRADIENT, JAVA_NELDER_MEAD or JAVA_ACTIVE_SET
+     * @param objective
+     *                          the objective function (the gradient is only requested by JAVA_SUBGRADIENT)
+     * @param evaluator
+     *                          the compiled objective function, required by JAVA_ACTIVE_SET (which falls back to
+     *                          JAVA_SUBGRADIENT if it is null); may be null
+     * @param lowerBounds
+     *                          the lower bounds of the parameters
+     * @param upperBounds
+     *                          the upper bounds of the parameters
+     * @param relativeTolerance
+     *                          the relative tolerance on the parameters
+     * @param maxEval
+     *                          the evaluation limit; <= 0 == no limit
+     * @return  the solver
+     */
+    static JavaOptimiser create(int nlopt_alg_method, NLopt.NLopt_func objective, CompiledTerm evaluator,
+                                double[] lowerBounds, double[] upperBounds, double relativeTolerance, int maxEval){
+        switch(nlopt_alg_method){
+            case JAVA_SUBGRADIENT:
+                return new SubgradientOptimiser(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+            case JAVA_NELDER_MEAD:
+                return new NelderMeadOptimiser(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+            case JAVA_ACTIVE_SET:
+                if(evaluator == null){
+                    return new SubgradientOptimiser(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+                }
+                return new ActiveSetOptimiser(objective, evaluator.copy(), lowerBounds, upperBounds, relativeTolerance,
+                        maxEval);
+            default:
+                throw new IllegalArgumentException("no pure-Java solver with code " + nlopt_alg_method);
+        }
+    }
+
+
+    @Override
+    public NLoptResult optimize(double[] x){
+        bestValue = Double.POSITIVE_INFINITY;
+        bestX = null;
+        evaluations = 0;
+
+        int resultCode;
+        if(dimension == 0){
+            bestValue = objective.execute(x, new double[0]);
+            resultCode = SUCCESS;
+        }
+        else{
+            project(x);
+            resultCode = minimise(x.clone());
+            if(stopped){
+                resultCode = FORCED_STOP;
+            }
+        }
+
+        if(bestX != null){
+            System.arraycopy(bestX, 0, x, 0, dimension);
+        }
+        return new NLoptResult(resultCode, bestValue);
+    }
+
+
+    /**
+     * Runs the solver from the given (feasible) initial point. The best point has to be tracked via evaluate.
+     * @param x
+     *                  the initial parameter values (may be modified)
+     * @return  the NLopt result code
+     */
+    protected abstract int minimise(double[] x);
+
+
+    @Override
+    public void forceStop(){
+        stopped = true;
+    }
+
+
+    /**
+     * @return  true iff the run has to end, i.e. it has been stopped or has reached its evaluation limit
+     */
+    protected boolean isExhausted(){
+        return stopped || (maxEval > 0 && evaluations >= maxEval);
+    }
+
+
+    /**
+     * @return  the result code of a run that ends because isExhausted() holds
+     */
+    protected int exhaustedResultCode(){
+        return stopped ? FORCED_STOP : MAXEVAL_REACHED;
+    }
+
+
+    /**
+     * Evaluates the objective function and keeps track of the best point.
+     * @param x
+     *                  the (feasible) parameter values
+     * @param gradient
+     *                  receives the gradient; null if the gradient is not needed
+     * @return  the objective value
+     */
+    protected double evaluate(double[] x, double[] gradient){
+        evaluations++;
+        double value = objective.execute(x, gradient != null ? gradient : new double[0]);
+        if(Double.isNaN(value)){
+            value = Double.POSITIVE_INFINITY;
+        }
+        if(value < bestValue || bestX == null){
+            bestValue = value;
+            bestX = x.clone();
+        }
+        return value;
+    }
+
+
+    /**
+     * Counts a pass over the objective function that does not go through evaluate (e.g. a forward or backward pass over
+     * the instruction tape) against the evaluation limit.
+     */
+    protected void countEvaluation(){
+        evaluations++;
+    }
+
+
+    /**
+     * Projects the parameter values onto the bounds.
+     * @param x
+     *                  the parameter values (modified in place)
+     */
+    protected void project(double[] x){
+        for(int i = 0; i < dimension; i++){
+            x[i] = Math.min(Math.max(x[i], lowerBounds[i]), upperBounds[i]);
+        }
+    }
+
+
+    /**
+     * @param x
+     *                  the parameter values
+     * @param i
+     *                  the index of a parameter
+     * @return  the absolute tolerance on parameter i at x
+     */
+    protected double tolerance(double[] x, int i){
+        return relativeTolerance * Math.max(Math.abs(x[i]), 1);
+    }
+
+
+    /**
+     * @param x
+     *                  the parameter values
+     * @return  the initial step length: a tenth of the largest parameter magnitude (at least 0.1)
+     */
+    protected double initialStep(double[] x){
+        double max = 1;
+        for(double value : x){
+            max = Math.max(max, Math.abs(value));
+        }
+        return 0.1 * max;
+    }
+
+
+    @Override
+    public String toString(){
+        return getClass().getSimpleName() + "(best " + bestValue + " at " + Arrays.toString(bestX) + ", "
+                + evaluations + " evaluations)";
+    }
+}
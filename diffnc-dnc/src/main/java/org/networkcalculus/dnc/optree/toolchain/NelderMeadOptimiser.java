@@ -0,0 +1,195 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.nlopt4j.optimizer.NLopt;
+
+/**
+ * @author Lukas Herll
+ *
+ * Bounded Nelder-Mead simplex method with restarts (algorithm code JavaOptimiser.JAVA_NELDER_MEAD), a derivative-free
+ * alternative to NLopt's SBPLX.
+ *
+ * All trial points are projected onto the bounds. A run converges when the simplex has shrunk below the tolerance in
+ * every coordinate. As Nelder-Mead may collapse on the kinks of a non-smooth objective, the search then restarts with a
+ * fresh simplex around the best point, until a restart no longer improves the objective value (at most MAX_RESTARTS
+ * times).
+ */
+class NelderMeadOptimiser extends JavaOptimiser {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final int MAX_RESTARTS = 3;
+
+    private static final double REFLECTION = 1;
+    private static final double EXPANSION = 2;
+    private static final double CONTRACTION = 0.5;
+    private static final double SHRINKAGE = 0.5;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    NelderMeadOptimiser(NLopt.NLopt_func objective, double[] lowerBounds, double[] upperBounds,
+                        double relativeTolerance, int maxEval){
+        super(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    protected int minimise(double[] x){
+        int resultCode = runSimplex(x);
+        for(int restart = 0; restart < MAX_RESTARTS && resultCode == XTOL_REACHED; restart++){
+            double before = bestValue;
+            resultCode = runSimplex(bestX.clone());
+            if(!(bestValue < before)){
+                break;
+            }
+        }
+        return resultCode;
+    }
+
+
+    /**
+     * Runs the simplex method from a simplex around the given point.
+     * @param start
+     *                  the (feasible) point the simplex is built around
+     * @return  XTOL_REACHED if the simplex has converged, otherwise the result code of the exhausted run
+     */
+    private int runSimplex(double[] start){
+        int n = dimension;
+        double[][] simplex = new double[n + 1][];
+        double[] values = new double[n + 1];
+
+        simplex[0] = start.clone();
+        double step = initialStep(start);
+        for(int i = 0; i < n; i++){
+            double[] vertex = start.clone();
+            //step into the box if the upper bound is too close
+            vertex[i] = start[i] + step <= upperBounds[i] ? start[i] + step : start[i] - step;
+            project(vertex);
+            simplex[i + 1] = vertex;
+        }
+        for(int j = 0; j <= n; j++){
+            if(isExhausted()){
+                return exhaustedResultCode();
+            }
+            values[j] = evaluate(simplex[j], null);
+        }
+
+        double[] centroid = new double[n];
+        double[] reflected = new double[n];
+        double[] trial = new double[n];
+
+        while(!isExhausted()){
+            sort(simplex, values);
+            if(hasConverged(simplex)){
+                return XTOL_REACHED;
+            }
+
+            //centroid of all vertices but the worst
+            for(int i = 0; i < n; i++){
+                double sum = 0;
+                for(int j = 0; j < n; j++){
+                    sum += simplex[j][i];
+                }
+                centroid[i] = sum / n;
+            }
+
+            double[] worst = simplex[n];
+            moveAlong(centroid, worst, -REFLECTION, reflected);
+            double valueReflected = evaluate(reflected, null);
+
+            if(valueReflected < values[0]){
+                if(isExhausted()){
+                    replaceWorst(simplex, values, reflected, valueReflected);
+                    break;
+                }
+                moveAlong(centroid, worst, -EXPANSION, trial);
+                double valueExpanded = evaluate(trial, null);
+                if(valueExpanded < valueReflected){
+                    replaceWorst(simplex, values, trial, valueExpanded);
+                }
+                else{
+                    replaceWorst(simplex, values, reflected, valueReflected);
+                }
+            }
+            else if(valueReflected < values[n - 1]){
+                replaceWorst(simplex, values, reflected, valueReflected);
+            }
+            else{
+                if(isExhausted()){
+                    break;
+                }
+                //contract towards the better one of the worst and the reflected vertex
+                boolean outside = valueReflected < values[n];
+                moveAlong(centroid, outside ? reflected : worst, CONTRACTION, trial);
+                double valueContracted = evaluate(trial, null);
+                if(valueContracted < Math.min(valueReflected, values[n])){
+                    replaceWorst(simplex, values, trial, valueContracted);
+                }
+                else{
+                    //shrink towards the best vertex
+                    for(int j = 1; j <= n && !isExhausted(); j++){
+                        for(int i = 0; i < n; i++){
+                            simplex[j][i] = simplex[0][i] + SHRINKAGE * (simplex[j][i] - simplex[0][i]);
+                        }
+                        values[j] = evaluate(simplex[j], null);
+                    }
+                }
+            }
+        }
+        return exhaustedResultCode();
+    }
+
+
+    /**
+     * Computes the projection of centroid + factor * (vertex - centroid) onto the bounds.
+     */
+    private void moveAlong(double[] centroid, double[] vertex, double factor, double[] result){
+        for(int i = 0; i < dimension; i++){
+            result[i] = centroid[i] + factor * (vertex[i] - centroid[i]);
+        }
+        project(result);
+    }
+
+
+    private void replaceWorst(double[][] simplex, double[] values, double[] vertex, double value){
+        System.arraycopy(vertex, 0, simplex[dimension], 0, dimension);
+        values[dimension] = value;
+    }
+
+
+    /**
+     * Sorts the vertices by their objective values (ascending), insertion sort since the simplex is mostly sorted.
+     */
+    private static void sort(double[][] simplex, double[] values){
+        for(int j = 1; j < values.length; j++){
+            double[] vertex = simplex[j];
+            double value = values[j];
+            int k = j - 1;
+            while(k >= 0 && values[k] > value){
+                simplex[k + 1] = simplex[k];
+                values[k + 1] = values[k];
+                k--;
+            }
+            simplex[k + 1] = vertex;
+            values[k + 1] = value;
+        }
+    }
+
+
+    /**
+     * @return  true iff all vertices are within the tolerance of the best vertex in every coordinate
+     */
+    private boolean hasConverged(double[][] simplex){
+        double[] best = simplex[0];
+        for(int j = 1; j < simplex.length; j++){
+            for(int i = 0; i < dimension; i++){
+                if(Math.abs(simplex[j][i] - best[i]) > tolerance(best, i)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,177 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import nilgiri.math.DoubleReal;
+import nilgiri.math.autodiff.DifferentialFunction;
+import nilgiri.math.autodiff.Variable;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Server;
+import org.networkcalculus.dnc.optree.bounds.Bound;
+import org.networkcalculus.dnc.optree.compiled.CompiledTerm;
+import org.networkcalculus.dnc.optree.constraints.Constraint;
+import org.networkcalculus.dnc.optree.nodes.OpTNode;
+import org.networkcalculus.dnc.optree.symbolic.SymbolicTerm;
+import org.networkcalculus.dnc.tandem.fifo.TNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Caches the derived objective functions (operator tree, symbolic term, parameters, bounds, constraints, and compiled
+ * term) of the sub-tandems analysed by OpTreeAnalysis. Two sub-tandems share an objective function iff their nesting
+ * trees have the same signature, i.e. the same structure, servers, service curves, flow aliases, and arrival curves.
+ * An OpTreeAnalysis that finds its nesting tree in the cache skips the derivation and only solves the NLP.
+ * Additionally, an entry stores the SolverTraces of the NLopt runs on its objective function. A later analysis of the
+ * same objective function with an evaluation limit that matches a recorded checkpoint takes its solution from the trace
+ * instead of running the solver.
+ *
+ * The cached entries hold the JAutoDiff variables of the objective function, which are set by the analyses using them.
+ * Therefore, a cache must not be shared by analyses that run concurrently. It may be shared by analyses that run one
+ * after the other, e.g. all solver configurations of a pipeline (see DemoDiffLUDB).
+ */
+public class ObjectiveCache {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    //statistics
+    private int hits;
+    private int misses;
+
+    /**
+     * The derived objective function of a sub-tandem.
+     */
+    static class Entry {
+        final OpTNode opTree;
+        final SymbolicTerm symbolicTerm;
+        final Variable<DoubleReal> t;
+        final ArrayList<Variable<DoubleReal>> openParameters;
+        final ArrayList<Bound> bounds;
+        final ArrayList<Constraint> constraints;
+        final CompiledTerm compiledTerm;
+        //the partial derivatives of the symbolic term (derived by the first analysis that needs them)
+        Hashtable<Variable<DoubleReal>, DifferentialFunction<DoubleReal>> jacobi;
+        //<solver configuration (see OpTreeAnalysis.getTraceKey), trace>
+        final Map<String, SolverTrace> traces = new HashMap<>();
+
+        Entry(OpTNode opTree, SymbolicTerm symbolicTerm, Variable<DoubleReal> t,
+              ArrayList<Variable<DoubleReal>> openParameters, ArrayList<Bound> bounds,
+              ArrayList<Constraint> constraints, CompiledTerm compiledTerm){
+            this.opTree = opTree;
+            this.symbolicTerm = symbolicTerm;
+            this.t = t;
+            this.openParameters = openParameters;
+            this.bounds = bounds;
+            this.constraints = constraints;
+            this.compiledTerm = compiledTerm;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param key
+     *              the signature of a nesting tree (see getSignature)
+     * @return  the cached objective function; null if there is none
+     */
+    synchronized Entry get(String key){
+        Entry entry = entries.get(key);
+        if(entry != null){
+            hits++;
+        }
+        else{
+            misses++;
+        }
+        return entry;
+    }
+
+
+    synchronized void put(String key, Entry entry){
+        entries.put(key, entry);
+    }
+
+
+    /**
+     * Removes all cached objective functions (the statistics are kept).
+     */
+    public synchronized void clear(){
+        entries.clear();
+    }
+
+
+    /**
+     * Computes the signature of a nesting tree. The signature contains everything the objective function is derived
+     * from: the tree structure, the servers and their rate-latency service curves, and the flows (aliases) and their
+     * token-bucket arrival curves.
+     * @param nestingTree
+     *                      the root of the nesting tree
+     * @return  the signature
+     */
+    static String getSignature(TNode nestingTree){
+        StringBuilder signature = new StringBuilder();
+        appendSignature(nestingTree, signature);
+        return signature.toString();
+    }
+
+
+    private static void appendSignature(TNode node, StringBuilder signature){
+        Object inf = node.getInf();
+        if(inf instanceof List){
+            //a t-leaf, i.e. a list of servers
+            signature.append("S[");
+            for(Object o : (List) inf){
+                Server server = (Server) o;
+                signature.append(server.getId()).append(':')
+                        .append(server.getServiceCurve().getUltAffineRate().doubleValue()).append(',')
+                        .append(server.getServiceCurve().getLatency().doubleValue()).append(';');
+            }
+            signature.append(']');
+        }
+        else{
+            //a t-node, i.e. a flow
+            Flow flow = (Flow) inf;
+            signature.append("F[").append(flow.getAlias()).append(':')
+                    .append(flow.getArrivalCurve().getUltAffineRate().doubleValue()).append(',')
+                    .append(flow.getArrivalCurve().getBurst().doubleValue()).append(']');
+        }
+        signature.append('(');
+        for(Object child : node.getChildren()){
+            appendSignature((TNode) child, signature);
+        }
+        signature.append(')');
+    }
+
+
+    /**
+     * Adds the hits and misses of another cache to the statistics of this cache (the entries are not copied).
+     * @param other
+     *                  the other cache
+     */
+    public void addStatistics(ObjectiveCache other){
+        int otherHits = other.getHits();
+        int otherMisses = other.getMisses();
+        synchronized (this){
+            hits += otherHits;
+            misses += otherMisses;
+        }
+    }
+
+
+    public synchronized int getHits(){
+        return hits;
+    }
+
+    public synchronized int getMisses(){
+        return misses;
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+}
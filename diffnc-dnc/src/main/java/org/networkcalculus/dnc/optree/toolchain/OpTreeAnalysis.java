@@ -1,19 +1,21 @@
 package org.networkcalculus.dnc.optree.toolchain;
 
 
-import jogamp.opengl.glu.nurbs.Bin;
 import nilgiri.math.DoubleReal;
 import nilgiri.math.autodiff.DifferentialFunction;
 import nilgiri.math.autodiff.Variable;
 
+import org.networkcalculus.dnc.AnalysisConfig;
 import org.networkcalculus.dnc.network.server_graph.Flow;
 import org.networkcalculus.dnc.network.server_graph.Server;
 import org.networkcalculus.dnc.network.server_graph.ServerGraph;
 import org.networkcalculus.dnc.optree.bounds.Bound;
+import org.networkcalculus.dnc.optree.compiled.CompiledTerm;
 import org.networkcalculus.dnc.optree.constraints.Constraint;
 import org.networkcalculus.dnc.optree.nodes.OpTNode;
 import org.networkcalculus.dnc.optree.plugins.BinOperatorPlugin;
 import org.networkcalculus.dnc.optree.symbolic.SymbolicTerm;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
 import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
 import org.networkcalculus.dnc.tandem.fifo.TNode;
 import org.networkcalculus.num.Num;
@@ -26,6 +28,10 @@ import java.lang.reflect.Array;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author Lukas Herll
@@ -55,37 +61,64 @@ public class OpTreeAnalysis {
     //TODO new version:
     //private AbsOpTNode opTree;
     private SymbolicTerm symbolicTerm;
+    //the symbolic term lowered to an instruction tape (null if the term could not be compiled)
+    private CompiledTerm compiledTerm;
+    //the cached objective function (null if the context provides no ObjectiveCache)
+    private ObjectiveCache.Entry cacheEntry;
+    //the trace of the last NLopt run (null if no evaluation checkpoints are configured)
+    private SolverTrace solverTrace;
     private Variable<DoubleReal> t;
     private ArrayList<Variable<DoubleReal>> openParameters;
     private ArrayList<Bound> bounds;
     private ArrayList<Constraint> constraints;
     private ArrayList<Double> initialGuess;
+    //upper bounds on the parameters that tighten the plugin's bounds in this analysis only (null == plugin's bounds)
+    private Map<Flow, Num> parameterUpperBounds;
+    //the box the solver searches, in NLopt notation (set by solveNLopt4j)
+    private double[] lowerBounds, upperBounds;
+    //the solver set-up shared by all NLopt runs of this analysis (set by solveNLopt4j)
+    private SolverSession session;
+    //the partial derivatives of the symbolic term (only derived if needed, shared via the ObjectiveCache)
+    private Hashtable<Variable<DoubleReal>, DifferentialFunction<DoubleReal>> jacobi;
     private ArrayList<Double> paramValues;
     private double result;
 
     private FileManager fileManager;
 
-    //if set to false, only occurring errors will be printed to console (no results etc. Results will still be written to files)
-    public static boolean printToConsole;
-
-    public static int nlopt_alg = 40; // 40 == SLSQP default
-    public static int iterations_max = -1; // -1 == no limit
+    //the settings of the analysis (NLopt algorithm, iteration limit, relative tolerance, console output)
+    private final AnalysisContext context;
     //the maximum time in seconds after which the analysis timeouts
     // public static long maxIterationTimeInSec;
 
-    //set the NLopt relative tolerance
-    public static double nloptRelativeTolerance = 1e-4;
     //timestamps
-    public static long timestampObjFuncDerived;
-    public static long timestampSolverStarted;
+    public long timestampObjFuncDerived;
+    public long timestampSolverStarted;
+    //if the solution was taken from a SolverTrace: the time the traced run needed to reach the checkpoint
+    public long timeReplayedFromTraceInNS;
+
+    //runs the members of a solver portfolio concurrently (shared by all analyses, the threads do not hold any state).
+    //Portfolios are solved from the fork-join workers of the parallel LUDB and arrival bound analyses, which block
+    //until their members are done. The pool is therefore bounded by the number of cores (further members are queued)
+    //instead of starting one thread per member of every concurrently solved portfolio.
+    private static final ExecutorService PORTFOLIO_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "nlopt-portfolio");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     //only the algorithms with the following codes use the gradient => do not compute the gradient for the rest
-    private final ArrayList<Integer> gradientBasedAlgs = new ArrayList<>(Arrays.asList(8,9,10,11,13,14,15-18,21,23,24,31,33,40,41,100,500));
+    private final ArrayList<Integer> gradientBasedAlgs = new ArrayList<>(Arrays.asList(8,9,10,11,13,14,15,16,17,18,21,23,24,31,33,40,41,100,200,202,500));
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //constructors
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     public OpTreeAnalysis(ServerGraph sg, Flow foi){
+        this(sg, foi, new AnalysisContext());
+    }
+
+    public OpTreeAnalysis(ServerGraph sg, Flow foi, AnalysisContext context){
+        this.context = context;
         this.sg = sg;
         this.foi = foi;
         if(!setSourceSink()){
@@ -98,6 +131,11 @@ public class OpTreeAnalysis {
     }
 
     public OpTreeAnalysis(TNode nestingTree){
+        this(nestingTree, new AnalysisContext());
+    }
+
+    public OpTreeAnalysis(TNode nestingTree, AnalysisContext context){
+        this.context = context;
         this.nestingTree = nestingTree;
         this.fileManager = FileManager.getInstance();
     }
@@ -134,7 +172,7 @@ public class OpTreeAnalysis {
         try{
             //compute the nesting tree
             //sg.getShortestPath(Server src, Server snk) returns Path from src to snk
-            NestedTandemAnalysis nta = new NestedTandemAnalysis(sg.getShortestPath(source, sink), foi, sg.getFlows());
+            NestedTandemAnalysis nta = new NestedTandemAnalysis(sg.getShortestPath(source, sink), foi, sg.getFlows(), new AnalysisConfig(), context);
             //use method NestedTandemAnalysis().onlyComputeNestingTree() to retrieve the nesting tree as a TNode object
             nestingTree = nta.onlyComputeNestingTree();
         }
@@ -238,6 +276,18 @@ public class OpTreeAnalysis {
     }
 
 
+    /**
+     * Tightens the upper bounds of the plugin's bounds for the next delay bound analysis. The bounds derived by the plugin
+     * (and possibly shared via the ObjectiveCache) are not modified.
+     * @param parameterUpperBounds
+     *                          a map <cross-flow, upper bound on the parameter of the cross-flow's leftover operation>;
+     *                          the parameters are matched via the cross-flows' aliases at the time of the analysis
+     */
+    public void setParameterUpperBounds(Map<Flow, Num> parameterUpperBounds){
+        this.parameterUpperBounds = parameterUpperBounds;
+    }
+
+
     /**
      * Omits the delay bound analysis and instead tests for convexity of the objective function.
      * @param plugin
@@ -258,6 +308,25 @@ public class OpTreeAnalysis {
      *
      */
     private void deriveOpTree(BinOperatorPlugin plugin){
+        //an identical sub-tandem may already have been derived (see ObjectiveCache)
+        ObjectiveCache cache = context.getObjectiveCache();
+        String signature = cache != null ? ObjectiveCache.getSignature(this.nestingTree) : null;
+        ObjectiveCache.Entry cached = cache != null ? cache.get(signature) : null;
+        this.cacheEntry = cached;
+        if(cached != null){
+            this.opTree = cached.opTree;
+            this.symbolicTerm = cached.symbolicTerm;
+            this.t = cached.t;
+            this.openParameters = cached.openParameters;
+            this.bounds = cached.bounds;
+            this.constraints = cached.constraints;
+            this.compiledTerm = cached.compiledTerm;
+
+            //create a timestamp
+            timestampObjFuncDerived = System.nanoTime();
+            return;
+        }
+
         //transform the nesting tree into an operator tree
         onlyDeriveOpTree();
         //derive the symbolic term, the parameters, bounds, and constraints
@@ -268,12 +337,32 @@ public class OpTreeAnalysis {
         this.openParameters = this.opTree.getParameters();
         this.bounds = this.opTree.getBounds();
         this.constraints = this.opTree.getConstraints();
+        //lower the symbolic term to an instruction tape (if the plugin recorded the term's structure)
+        this.compiledTerm = context.isCompileObjective() ?
+                CompiledTerm.compile(plugin.getTermFactory(), symbolicTerm.getTerm(), openParameters) : null;
+
+        if(cache != null){
+            this.cacheEntry = new ObjectiveCache.Entry(opTree, symbolicTerm, t, openParameters, bounds, constraints,
+                    compiledTerm);
+            cache.put(signature, this.cacheEntry);
+        }
 
         //create a timestamp
         timestampObjFuncDerived = System.nanoTime();
     }
 
 
+    /**
+     * Only derives the objective function (symbolic term, open parameters, bounds, constraints, and the compiled term)
+     * without solving the NLP.
+     * @param plugin
+     *                  the plugin specifying the parameters, bounds, constraints, and operations
+     */
+    public void onlyDeriveObjective(BinOperatorPlugin plugin){
+        deriveOpTree(plugin);
+    }
+
+
     /**
      * Uses the OpTNode constructor to transform the given nesting tree (given in this class's attributes) into a binary
      * operator tree. Stores the result internally in the attribute optree.
@@ -306,7 +395,7 @@ public class OpTreeAnalysis {
         else {
             solveNLopt4j();
 
-            if(printToConsole){
+            if(context.isPrintToConsole()){
                 //print the found parameters to console
                 System.out.println("The found parameter values are:");
                 for(Variable<DoubleReal> param : openParameters){
@@ -318,7 +407,7 @@ public class OpTreeAnalysis {
             this.result = computeResult(paramValues);
         }
 
-        if(printToConsole){
+        if(context.isPrintToConsole()){
             //print the results to console
             System.out.println("The result is: " + result + "\n\n");
         }
@@ -330,48 +419,37 @@ public class OpTreeAnalysis {
     /**
      * Solves the NLP by using the NLopt wrapper nlopt4j. Sets the paramValues attribute.
      *
-     * Note: this.nlopt_alg = 100 indicates SLSQPminSBPLX
+     * Note: this.nlopt_alg = 100 indicates SLSQPminSBPLX, i.e. the solver portfolio (see solvePortfolio)
+     * Note: the codes 200, 201 and 202 select the pure-Java solvers (see JavaOptimiser), which do not need the native
+     * library. 202 is the active-set method on the linear pieces of the compiled objective (see ActiveSetOptimiser)
      * TODO: Check if the returned result is valid (otherwise: error code -1)
      */
     private void solveNLopt4j(){
         NLoptResult result;
 
-        //store the initial guesses in an array
+        setBoxBounds();
+        session = new SolverSession(context.getOptimiserPool(), lowerBounds, upperBounds,
+                context.getNloptRelativeTolerance(), context.getIterationsMax());
+
+        //store the initial guesses in an array (NLopt rejects initial guesses outside of the bounds)
         double[] x = new double[this.initialGuess.size()];
         for(int i = 0; i < this.initialGuess.size(); i++){
-            x[i] = this.initialGuess.get(i);
+            x[i] = this.initialGuess.get(i) == null ? Double.NaN : this.initialGuess.get(i);
         }
+        clampIntoBox(x);
 
         //if any solver code other than 100 (SLSQPminSBPLX) is selected, execute the solver as usual
+        int nlopt_alg = context.getNloptAlg();
         if(nlopt_alg != 100){
-            result = solveNLoptAlg(nlopt_alg, x);
+            //a previous run on the same objective function may already have passed the evaluation limit
+            result = solveFromTrace(nlopt_alg, x);
+            if(result == null){
+                result = solveNLoptAlg(nlopt_alg, x);
+            }
         }
         else{
-            //run both, SLSQP and SBPLX, and take the minimum
-
-            //copy the initial parameter values
-            double[] x_sbplx = new double[this.initialGuess.size()];
-            for(int i = 0; i < this.initialGuess.size(); i++){
-                x_sbplx[i] = this.initialGuess.get(i);
-            }
-
-            //run slsqp
-            result = solveNLoptAlg(40, x); //SLSQP
-
-            //run sbplx
-            NLoptResult result_sbplx = solveNLoptAlg(29, x_sbplx); //SBPLX
-
-            double min_slsqp = result.minValue();
-            double min_sbplx = result_sbplx.minValue();
-
-            //compare the results
-            if(result_sbplx.minValue() < result.minValue()){
-                //SBPLX was better => copy the result and parameters to x and result
-                result = result_sbplx;
-                x = x_sbplx;
-            }
-
-            assert result.minValue() <= Math.min(min_slsqp, min_sbplx);
+            //run the solver portfolio (by default SLSQP and SBPLX) and select the solution according to the policy
+            result = solvePortfolio(context.getPortfolioAlgs(), x);
         }
 
 
@@ -409,6 +487,54 @@ public class OpTreeAnalysis {
     }
 
 
+    /**
+     * Translates the plugin's bounds into NLopt notation and tightens the upper bounds by the parameterUpperBounds.
+     * Sets the attributes lowerBounds and upperBounds.
+     */
+    private void setBoxBounds(){
+        Map<String, Double> upperBoundsByAlias = new HashMap<>();
+        if(parameterUpperBounds != null){
+            for(Flow flow : parameterUpperBounds.keySet()){
+                upperBoundsByAlias.put(flow.getAlias(), parameterUpperBounds.get(flow).doubleValue());
+            }
+        }
+
+        lowerBounds = new double[this.bounds.size()];
+        upperBounds = new double[this.bounds.size()];
+        for(int i = 0; i < bounds.size(); i++){
+            Integer lb = bounds.get(i).getLowerBound();
+            lowerBounds[i] = lb == null ? Double.NEGATIVE_INFINITY : lb;
+            Integer ub = bounds.get(i).getUpperBound();
+            upperBounds[i] = ub == null ? Double.POSITIVE_INFINITY : ub;
+
+            //"s_<crossflowName>"
+            Double tightUb = upperBoundsByAlias.get(bounds.get(i).getVariable().getName().substring(2));
+            if(tightUb != null && !Double.isNaN(tightUb)){
+                upperBounds[i] = Math.max(Math.min(upperBounds[i], tightUb), lowerBounds[i]);
+            }
+        }
+    }
+
+
+    /**
+     * Moves the parameter values into the box [lowerBounds, upperBounds]. NLopt rejects initial guesses outside of the
+     * bounds (INVALID_ARGS), and the Java optimisers would start outside the box. Initial guesses (e.g. a warm start or
+     * lb_thetas_safe) can exceed the tightened upper bounds, hence every solver run starts from a clamped copy.
+     * Undefined values start at the lower bound (0 if the parameter is not bounded below).
+     *
+     * @param x_params
+     *                          the parameter values, clamped in place
+     */
+    private void clampIntoBox(double[] x_params){
+        for(int i = 0; i < x_params.length; i++){
+            if(Double.isNaN(x_params[i])){
+                x_params[i] = Double.isInfinite(lowerBounds[i]) ? 0 : lowerBounds[i];
+            }
+            x_params[i] = Math.min(Math.max(x_params[i], lowerBounds[i]), upperBounds[i]);
+        }
+    }
+
+
     /**
      * Solves the optimisation problem defined by <code>symbolicTerm</code>. The resulting parameter values are stored in
      * <code>x_param</code>
@@ -423,22 +549,280 @@ public class OpTreeAnalysis {
      * @return  the resulting NLoptResult
      */
     private NLoptResult solveNLoptAlg(int nlopt_alg_method, double[] x_params){
-        NLopt optimiser = new NLopt(nlopt_alg_method, openParameters.size());
-        optimiser.setRelativeToleranceOnX(nloptRelativeTolerance);
-        if(OpTreeAnalysis.iterations_max > 0 ) {
-            optimiser.setMaxEval(iterations_max);
+        clampIntoBox(x_params);
+        //record the best-so-far solution at the evaluation checkpoints
+        String traceKey = getTraceKey(nlopt_alg_method, x_params);
+        SolverTrace trace = context.getEvaluationCheckpoints() != null ?
+                new SolverTrace(context.getEvaluationCheckpoints()) : null;
+        Optimiser optimiser = createOptimiser(nlopt_alg_method, compiledTerm, trace);
+
+        //take a timestamp
+        timestampSolverStarted = System.nanoTime();
+
+        //solve the NLP
+        NLoptResult result = new NLoptResult(-1, Double.NEGATIVE_INFINITY);
+        boolean failed = true;
+        try {
+            result = optimiser.optimize(x_params);
+            failed = false;
+
+            if(trace != null){
+                trace.finish(result.resultCode());
+                this.solverTrace = trace;
+                //runs on the same objective function with a matching evaluation limit can use the trace
+                if(cacheEntry != null && result.resultCode() > 0){
+                    cacheEntry.traces.put(traceKey, trace);
+                }
+            }
+        }
+        catch(Exception e) {
+            if(context.isPrintToConsole()){
+                System.out.println(e);
+            }
         }
-       //  optimiser.setMaxTime(maxIterationTimeInSec);
+        //a failed optimiser is not reused
+        session.close(optimiser, failed);
 
-        Hashtable<Variable<DoubleReal>, DifferentialFunction<DoubleReal>> jacobi = new Hashtable<>();
-        if(gradientBasedAlgs.contains(nlopt_alg_method)){
-            for(Variable<DoubleReal> param : openParameters){
-                jacobi.put(param, symbolicTerm.getTerm().diff(param));
+        return result;
+    }
+
+
+    /**
+     * Takes the solution from a SolverTrace of a previous run on the same (cached) objective function, if that run used
+     * the same algorithm, initial guesses and tolerance, and passed a checkpoint matching the current evaluation limit.
+     * Only used if the context has evaluation checkpoints. The solution is the traced run's best-so-far solution at the
+     * checkpoint, which is not necessarily the solution NLopt returns when run with this evaluation limit.
+     *
+     * @param nlopt_alg_method
+     *                          the code of the nlopt solver to be used
+     * @param x_params
+     *                          an array with initial parameter guesses. If a matching trace exists, x_param holds the
+     *                          parameter values at the checkpoint after this function has terminated.
+     * @return  the NLoptResult the solver would have returned; null if there is no matching trace
+     */
+    private NLoptResult solveFromTrace(int nlopt_alg_method, double[] x_params){
+        if(cacheEntry == null || context.getIterationsMax() <= 0){
+            return null;
+        }
+        SolverTrace trace = cacheEntry.traces.get(getTraceKey(nlopt_alg_method, x_params));
+        int checkpoint = trace != null ? trace.indexOf(context.getIterationsMax()) : -1;
+        if(checkpoint < 0){
+            return null;
+        }
+
+        timestampSolverStarted = System.nanoTime();
+        timeReplayedFromTraceInNS = trace.getCheckpointTimeInNS(checkpoint);
+        this.solverTrace = trace;
+        System.arraycopy(trace.getCheckpointX(checkpoint), 0, x_params, 0, x_params.length);
+        return new NLoptResult(trace.getResultCode(checkpoint), trace.getCheckpointValue(checkpoint));
+    }
+
+
+    /**
+     * @param nlopt_alg_method
+     *                          the code of the nlopt solver
+     * @param x_params
+     *                          the initial parameter guesses
+     * @return  the key identifying the SolverTraces of an objective function that were recorded with the given settings
+     */
+    private String getTraceKey(int nlopt_alg_method, double[] x_params){
+        return nlopt_alg_method + ";" + context.getNloptRelativeTolerance() + ";" + context.isCompileObjective() + ";"
+                + Arrays.toString(x_params) + ";" + Arrays.toString(upperBounds);
+    }
+
+
+    /**
+     * Runs a portfolio of NLopt algorithms on copies of the initial parameter guesses. If the objective function could be
+     * compiled, the members run concurrently, each on its own optimiser and its own evaluator of the compiled term.
+     * Otherwise (the JAutoDiff terms cannot be evaluated concurrently), they run one after the other.
+     * The solution is selected according to the context's PortfolioPolicy:
+     * MINIMUM waits for all members and takes the smallest minimum (ties are won by the later member, i.e. SBPLX
+     * for the default portfolio);
+     * FIRST_CONVERGED takes the first member that converges within its tolerance and stops the remaining members.
+     *
+     * @param algs
+     *                          the codes of the nlopt solvers in the portfolio
+     * @param x_params
+     *                          an array with initial parameter guesses. After this function has terminated, x_param holds
+     *                          the parameter values of the selected solution.
+     * @return  the NLoptResult of the selected solution
+     */
+    private NLoptResult solvePortfolio(int[] algs, double[] x_params){
+        int n = algs.length;
+        boolean firstConverged = context.getPortfolioPolicy() == PortfolioPolicy.FIRST_CONVERGED;
+
+        double[][] xs = new double[n][];
+        for(int i = 0; i < n; i++){
+            xs[i] = x_params.clone();
+            clampIntoBox(xs[i]);
+        }
+        NLoptResult[] results = new NLoptResult[n];
+        int winner = -1;
+
+        if(!context.isParallelPortfolio() || compiledTerm == null || n == 1){
+            for(int i = 0; i < n; i++){
+                results[i] = solveNLoptAlg(algs[i], xs[i]);
+                if(firstConverged && isConverged(results[i])){
+                    winner = i;
+                    break;
+                }
+            }
+        }
+        else{
+            Optimiser[] optimisers = new Optimiser[n];
+            for(int i = 0; i < n; i++){
+                optimisers[i] = createOptimiser(algs[i], compiledTerm.copy(), null);
+            }
+            //an optimiser must not be stopped after it has been released (or given back to the pool)
+            boolean[] running = new boolean[n];
+            boolean[] stopped = new boolean[n];
+            Arrays.fill(running, true);
+            int[] firstWinner = {-1};
+
+            //take a timestamp
+            timestampSolverStarted = System.nanoTime();
+
+            List<Future<NLoptResult>> futures = new ArrayList<>();
+            for(int i = 0; i < n; i++){
+                final int member = i;
+                futures.add(PORTFOLIO_EXECUTOR.submit(() -> {
+                    NLoptResult result = new NLoptResult(-1, Double.NEGATIVE_INFINITY);
+                    boolean failed = false;
+                    boolean alreadyStopped;
+                    synchronized (running){
+                        alreadyStopped = stopped[member];
+                    }
+                    try {
+                        //a queued member may have been stopped before it started (the executor is bounded)
+                        if(!alreadyStopped){
+                            result = optimisers[member].optimize(xs[member]);
+                        }
+                    }
+                    catch(Exception e) {
+                        failed = true;
+                        if(context.isPrintToConsole()){
+                            System.out.println(e);
+                        }
+                    }
+                    synchronized (running){
+                        running[member] = false;
+                        if(firstConverged && firstWinner[0] < 0 && isConverged(result)){
+                            firstWinner[0] = member;
+                            for(int j = 0; j < n; j++){
+                                if(running[j]){
+                                    optimisers[j].forceStop();
+                                    stopped[j] = true;
+                                }
+                            }
+                        }
+                    }
+                    boolean stoppedOrFailed;
+                    synchronized (running){
+                        stoppedOrFailed = stopped[member] || failed;
+                    }
+                    session.close(optimisers[member], stoppedOrFailed);
+                    return result;
+                }));
+            }
+
+            for(int i = 0; i < n; i++){
+                try {
+                    results[i] = futures.get(i).get();
+                }
+                catch(InterruptedException | ExecutionException e) {
+                    if(context.isPrintToConsole()){
+                        System.out.println(e);
+                    }
+                    results[i] = new NLoptResult(-1, Double.NEGATIVE_INFINITY);
+                }
             }
+            synchronized (running){
+                winner = firstWinner[0];
+            }
+        }
+
+        //no member converged (or policy MINIMUM) => take the minimum
+        if(winner < 0){
+            for(int i = 0; i < n; i++){
+                //failed members (see solveNLoptAlg) are only selected if all members failed
+                if(results[i] == null || results[i].minValue() == Double.NEGATIVE_INFINITY){
+                    continue;
+                }
+                if(winner < 0 || results[i].minValue() <= results[winner].minValue()){
+                    winner = i;
+                }
+            }
+            if(winner < 0){
+                winner = 0;
+            }
+        }
+
+        System.arraycopy(xs[winner], 0, x_params, 0, x_params.length);
+        return results[winner];
+    }
+
+
+    /**
+     * @param result
+     *                  the result of an NLopt run
+     * @return  true iff NLopt terminated successfully due to one of its stopping criteria (stopval, ftol, xtol), i.e.
+     *          not due to the evaluation or time limit
+     */
+    private static boolean isConverged(NLoptResult result){
+        return result != null && result.resultCode() >= 1 && result.resultCode() <= 4;
+    }
+
+
+    /**
+     * Provides an optimiser for the optimisation problem defined by <code>symbolicTerm</code> (objective function and
+     * bounds). The optimiser is set up by the session and must be handed to session.close after its run.
+     * @param nlopt_alg_method
+     *                          the code of the nlopt solver to be used
+     * @param evaluator
+     *                          the compiled objective function used by the optimiser; if null, the objective function
+     *                          is evaluated via JAutoDiff
+     * @param trace
+     *                          records the evaluations of the objective function (may be null)
+     * @return  the optimiser
+     */
+    private Optimiser createOptimiser(int nlopt_alg_method, CompiledTerm evaluator, SolverTrace trace){
+        NLopt.NLopt_func objectiveFunction;
+        boolean gradientBased = gradientBasedAlgs.contains(nlopt_alg_method);
+        if(evaluator != null){
+            //evaluate the objective function and its gradient on the instruction tape
+            objectiveFunction = new NLopt.NLopt_func() {
+                @Override
+                public double execute(double[] x, double[] gradient) {
+                    double value = evaluator.execute(x, gradientBased ? gradient : null);
+                    if(trace != null){
+                        trace.record(x, value);
+                    }
+                    return value;
+                }
+            };
+        }
+        else{
+            objectiveFunction = createSymbolicObjective(nlopt_alg_method, trace);
         }
+        return session.open(nlopt_alg_method, objectiveFunction, evaluator);
+    }
+
+
+    /**
+     * Creates the objective function for an optimiser, the objective function (and its gradient) is evaluated on the
+     * symbolic term via JAutoDiff. Used if the symbolic term could not be compiled.
+     * @param nlopt_alg_method
+     *                          the code of the nlopt solver to be used
+     * @param trace
+     *                          records the evaluations of the objective function (may be null)
+     * @return  the objective function in NLopt notation
+     */
+    private NLopt.NLopt_func createSymbolicObjective(int nlopt_alg_method, SolverTrace trace){
+        boolean gradientBased = gradientBasedAlgs.contains(nlopt_alg_method);
+        Hashtable<Variable<DoubleReal>, DifferentialFunction<DoubleReal>> jacobi = gradientBased ? getJacobi() : null;
 
         //define the objective function in NLopt notation
-        NLopt.NLopt_func objectiveFunction = new NLopt.NLopt_func() {
+        return new NLopt.NLopt_func() {
             @Override
             public double execute(double[] x, double[] gradient) {
                 //copy the param values provided by the arguments to the open parameters in the OpTree
@@ -447,7 +831,7 @@ public class OpTreeAnalysis {
                     openParameters.get(i).set(new DoubleReal(x[i]));
                 }
 
-                if(gradientBasedAlgs.contains(nlopt_alg_method)){
+                if(gradientBased){
                     //set the gradient values (the initial binary conditional is required) (only for gradient-based solvers)
                     if(gradient.length == x.length){
                         for(int i = 0; i < gradient.length; i++){
@@ -458,48 +842,35 @@ public class OpTreeAnalysis {
                     }
                 }
 
-                return symbolicTerm.getTerm().getValue().doubleValue();
+                double value = symbolicTerm.getTerm().getValue().doubleValue();
+                if(trace != null){
+                    trace.record(x, value);
+                }
+                return value;
             }
         };
-
-        optimiser.setMinObjective(objectiveFunction);
-
-
-        //define the bounds in NLopt notation
-        double[] lowerBounds = new double[this.bounds.size()];
-        double[] upperBounds = new double[this.bounds.size()];
-
-        for(int i = 0; i < bounds.size(); i++){
-            Integer lb = bounds.get(i).getLowerBound();
-            lowerBounds[i] = lb == null ? Double.NEGATIVE_INFINITY : lb;
-            Integer ub = bounds.get(i).getUpperBound();
-            upperBounds[i] = ub == null ? Double.POSITIVE_INFINITY : ub;
-        }
-
-        optimiser.setLowerBounds(lowerBounds);
-        optimiser.setUpperBounds(upperBounds);
-
-        //TODO create a wrapper for constraints
-
-
-        //take a timestamp
-        timestampSolverStarted = System.nanoTime();
+    }
 
 
-        //solve the NLP
-        NLoptResult result = new NLoptResult(-1, Double.NEGATIVE_INFINITY);
-        try {
-            result = optimiser.optimize(x_params);
-            optimiser.release();
+    /**
+     * Differentiates the symbolic term w.r.t. every open parameter, once per objective function (the result is shared
+     * with later analyses of the same objective function via the ObjectiveCache).
+     * @return  a map <open parameter, partial derivative of the symbolic term>
+     */
+    private Hashtable<Variable<DoubleReal>, DifferentialFunction<DoubleReal>> getJacobi(){
+        if(jacobi == null && cacheEntry != null){
+            jacobi = cacheEntry.jacobi;
         }
-        catch(Exception e) {
-            if(printToConsole){
-                System.out.println(e);
+        if(jacobi == null){
+            jacobi = new Hashtable<>();
+            for(Variable<DoubleReal> param : openParameters){
+                jacobi.put(param, symbolicTerm.getTerm().diff(param));
+            }
+            if(cacheEntry != null){
+                cacheEntry.jacobi = jacobi;
             }
-            optimiser.release();
         }
-
-        return result;
+        return jacobi;
     }
 
 
@@ -727,6 +1098,14 @@ public class OpTreeAnalysis {
     }
 
 
+    /**
+     * @return  the instruction tape of the symbolic term; null if the term was not compiled
+     */
+    public CompiledTerm getCompiledTerm(){
+        return compiledTerm;
+    }
+
+
     /**
      *
      * @return  the function variable t
@@ -790,6 +1169,16 @@ public class OpTreeAnalysis {
     }
 
 
+    /**
+     *
+     * @return  the trace of the last NLopt run (null if no evaluation checkpoints are configured or no NLopt run took
+     *          place)
+     */
+    public SolverTrace getSolverTrace(){
+        return solverTrace;
+    }
+
+
     /**
      * Maps the cross-flow aliases of each parameter to their values. (The name of each FIFO parameter comprises "s_" followed
      * by the alias of the respective cross-flow of the corresponding leftover operation.)
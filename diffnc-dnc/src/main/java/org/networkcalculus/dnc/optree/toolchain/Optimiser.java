@@ -0,0 +1,29 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.nlopt4j.optimizer.NLoptResult;
+
+/**
+ * @author Lukas Herll
+ *
+ * A bound-constrained NLP solver that has been set up for one run on an objective function (see SolverSession.open):
+ * either a native NLopt optimiser (OptimiserPool.PooledOptimiser) or one of the pure-Java solvers (JavaOptimiser).
+ */
+interface Optimiser {
+
+    /**
+     * Minimises the objective function.
+     * @param x
+     *                  the initial parameter values. After this function has terminated, x holds the parameter values
+     *                  corresponding to the found minimum.
+     * @return  the result in NLopt notation (result code and minimum)
+     * @throws Exception
+     *                  if the run fails
+     */
+    NLoptResult optimize(double[] x) throws Exception;
+
+
+    /**
+     * Stops a running optimisation. May be called by another thread; the run returns the best point found so far.
+     */
+    void forceStop();
+}
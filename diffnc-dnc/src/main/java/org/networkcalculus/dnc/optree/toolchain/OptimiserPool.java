@@ -0,0 +1,194 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.nlopt4j.optimizer.NLopt;
+import org.nlopt4j.optimizer.NLoptResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Pools native NLopt optimisers, so that the NLPs of the sub-tandems do not create (and release) a native handle per
+ * solver run. An NLopt handle is bound to its algorithm and to the number of parameters; the pool keeps the idle
+ * handles per such pair. A handle is used by one thread at a time: it is taken from the pool by acquire and returned by
+ * giveBack once its run has finished. Every handle registers a single objective function that delegates to the
+ * objective of its current run (see PooledOptimiser.setObjective), i.e. the callback is only registered once per handle.
+ *
+ * The pool may be shared by analyses that run concurrently. All native handles are released by close (handles that are
+ * in use at that time are released when they are given back).
+ */
+public class OptimiserPool implements AutoCloseable {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final int DEFAULT_MAX_IDLE_PER_KEY = 8;
+
+    //<algorithm;number of parameters, idle optimisers>
+    private final Map<String, ArrayDeque<PooledOptimiser>> idle = new HashMap<>();
+    private final int maxIdlePerKey;
+    private boolean closed;
+
+    //statistics
+    private int created;
+    private int reused;
+
+    /**
+     * A native NLopt optimiser with a delegating objective function.
+     */
+    public static class PooledOptimiser implements Optimiser {
+        private final NLopt nlopt;
+        private final int algorithm;
+        private final int dimension;
+        private volatile NLopt.NLopt_func objective;
+
+        PooledOptimiser(int algorithm, int dimension){
+            this.algorithm = algorithm;
+            this.dimension = dimension;
+            this.nlopt = new NLopt(algorithm, dimension);
+            this.nlopt.setMinObjective(new NLopt.NLopt_func() {
+                @Override
+                public double execute(double[] x, double[] gradient) {
+                    return objective.execute(x, gradient);
+                }
+            });
+        }
+
+        /**
+         * @param objective
+         *                      the objective function of the next run
+         */
+        void setObjective(NLopt.NLopt_func objective){
+            this.objective = objective;
+        }
+
+        NLopt getNLopt(){
+            return nlopt;
+        }
+
+        @Override
+        public NLoptResult optimize(double[] x) throws Exception {
+            return nlopt.optimize(x);
+        }
+
+        @Override
+        public void forceStop(){
+            nlopt.forceStop();
+        }
+
+        void release(){
+            objective = null;
+            nlopt.release();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public OptimiserPool(){
+        this(DEFAULT_MAX_IDLE_PER_KEY);
+    }
+
+    /**
+     * @param maxIdlePerKey
+     *                      the maximum number of idle optimisers kept per algorithm and number of parameters; further
+     *                      optimisers are released when they are given back
+     */
+    public OptimiserPool(int maxIdlePerKey){
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Takes an idle optimiser from the pool or creates a new one.
+     * @param algorithm
+     *                      the code of the nlopt solver
+     * @param dimension
+     *                      the number of parameters
+     * @return  an optimiser that is used exclusively by the caller until it is given back
+     */
+    PooledOptimiser acquire(int algorithm, int dimension){
+        synchronized (this){
+            if(closed){
+                throw new IllegalStateException("the optimiser pool is closed");
+            }
+            ArrayDeque<PooledOptimiser> optimisers = idle.get(getKey(algorithm, dimension));
+            if(optimisers != null && !optimisers.isEmpty()){
+                reused++;
+                return optimisers.pop();
+            }
+            created++;
+        }
+        return new PooledOptimiser(algorithm, dimension);
+    }
+
+
+    /**
+     * Returns an optimiser to the pool. Optimisers that were stopped via forceStop() must not be given back (the stop
+     * flag would end their next run), use discard instead.
+     * @param optimiser
+     *                      an optimiser taken from this pool whose run has finished
+     */
+    void giveBack(PooledOptimiser optimiser){
+        synchronized (this){
+            if(!closed){
+                ArrayDeque<PooledOptimiser> optimisers = idle.computeIfAbsent(getKey(optimiser.algorithm, optimiser.dimension),
+                        key -> new ArrayDeque<>());
+                if(optimisers.size() < maxIdlePerKey){
+                    optimiser.setObjective(null);
+                    optimisers.push(optimiser);
+                    return;
+                }
+            }
+        }
+        optimiser.release();
+    }
+
+
+    /**
+     * Releases an optimiser taken from this pool instead of returning it.
+     * @param optimiser
+     *                      an optimiser taken from this pool whose run has finished
+     */
+    void discard(PooledOptimiser optimiser){
+        optimiser.release();
+    }
+
+
+    private static String getKey(int algorithm, int dimension){
+        return algorithm + ";" + dimension;
+    }
+
+
+    /**
+     * Releases all idle optimisers. Optimisers that are given back afterwards are released immediately.
+     */
+    @Override
+    public void close(){
+        List<PooledOptimiser> optimisers = new ArrayList<>();
+        synchronized (this){
+            closed = true;
+            for(ArrayDeque<PooledOptimiser> deque : idle.values()){
+                optimisers.addAll(deque);
+            }
+            idle.clear();
+        }
+        for(PooledOptimiser optimiser : optimisers){
+            optimiser.release();
+        }
+    }
+
+
+    public synchronized int getCreated(){
+        return created;
+    }
+
+    public synchronized int getReused(){
+        return reused;
+    }
+}
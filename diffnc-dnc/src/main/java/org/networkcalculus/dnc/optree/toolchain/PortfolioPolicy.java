@@ -0,0 +1,13 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+/**
+ * @author Lukas Herll
+ *
+ * Decides which member of a solver portfolio (NLopt algorithm code 100, see OpTreeAnalysis) provides the solution.
+ */
+public enum PortfolioPolicy {
+    //wait for all members and take the minimum (the original SLSQPminSBPLX behaviour)
+    MINIMUM,
+    //the first member that converges within its tolerance wins, the remaining members are stopped via forceStop()
+    FIRST_CONVERGED
+}
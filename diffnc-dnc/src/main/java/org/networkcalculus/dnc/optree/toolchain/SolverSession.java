@@ -0,0 +1,110 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.networkcalculus.dnc.optree.compiled.CompiledTerm;
+import org.nlopt4j.optimizer.NLopt;
+
+/**
+ * @author Lukas Herll
+ *
+ * The solver set-up of one NLP (one OpTreeAnalysis): the bounds in NLopt notation and the solver settings are prepared
+ * once and applied to every optimiser the NLP is solved with (e.g. to each member of a solver portfolio). The native
+ * optimisers are taken from an OptimiserPool if one is given, otherwise each run creates and releases its own native
+ * handle. The pure-Java solvers (see JavaOptimiser) are created per run and do not load the native NLopt library.
+ */
+class SolverSession {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private final OptimiserPool pool;
+    private final int dimension;
+    private final double[] lowerBounds;
+    private final double[] upperBounds;
+    private final double relativeTolerance;
+    private final int maxEval;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param pool
+     *                          the pool the optimisers are taken from (null == no pooling)
+     * @param lowerBounds
+     *                          the lower bounds of the parameters in NLopt notation
+     * @param upperBounds
+     *                          the upper bounds of the parameters in NLopt notation
+     * @param relativeTolerance
+     *                          the relative tolerance on the parameters
+     * @param maxEval
+     *                          the evaluation limit; <= 0 == no limit
+     */
+    SolverSession(OptimiserPool pool, double[] lowerBounds, double[] upperBounds, double relativeTolerance, int maxEval){
+        this.pool = pool;
+        this.dimension = lowerBounds.length;
+        this.lowerBounds = lowerBounds;
+        this.upperBounds = upperBounds;
+        this.relativeTolerance = relativeTolerance;
+        this.maxEval = Math.max(maxEval, 0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Provides an optimiser for one run on this NLP. The optimiser must be handed to close after the run.
+     * @param nlopt_alg_method
+     *                          the code of the nlopt solver to be used
+     * @param objective
+     *                          the objective function of the run
+     * @param evaluator
+     *                          the compiled objective function (the tape the objective evaluates); may be null
+     * @return  the optimiser (exclusively used by the caller until it is closed)
+     */
+    Optimiser open(int nlopt_alg_method, NLopt.NLopt_func objective, CompiledTerm evaluator){
+        if(JavaOptimiser.isJavaAlgorithm(nlopt_alg_method)){
+            //the evaluations still go through the objective, the evaluator only provides the structure of the tape
+            return JavaOptimiser.create(nlopt_alg_method, objective, evaluator, lowerBounds, upperBounds,
+                    relativeTolerance, maxEval);
+        }
+
+        OptimiserPool.PooledOptimiser optimiser = pool != null ? pool.acquire(nlopt_alg_method, dimension) :
+                new OptimiserPool.PooledOptimiser(nlopt_alg_method, dimension);
+        optimiser.setObjective(objective);
+
+        //a pooled optimiser still has the settings of its previous run, hence all settings are applied (0 == no limit)
+        NLopt nlopt = optimiser.getNLopt();
+        nlopt.setRelativeToleranceOnX(relativeTolerance);
+        nlopt.setMaxEval(maxEval);
+       //  nlopt.setMaxTime(maxIterationTimeInSec);
+        nlopt.setLowerBounds(lowerBounds);
+        nlopt.setUpperBounds(upperBounds);
+
+        //TODO create a wrapper for constraints
+
+        return optimiser;
+    }
+
+
+    /**
+     * Returns the optimiser of a finished run to the pool or releases it.
+     * @param optimiser
+     *                          an optimiser provided by open
+     * @param stopped
+     *                          true iff the run was stopped via forceStop() or failed; such optimisers are released
+     */
+    void close(Optimiser optimiser, boolean stopped){
+        if(!(optimiser instanceof OptimiserPool.PooledOptimiser)){
+            //nothing to release
+            return;
+        }
+        OptimiserPool.PooledOptimiser pooledOptimiser = (OptimiserPool.PooledOptimiser) optimiser;
+        if(pool == null){
+            pooledOptimiser.release();
+        }
+        else if(stopped){
+            pool.discard(pooledOptimiser);
+        }
+        else{
+            pool.giveBack(pooledOptimiser);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import java.util.Arrays;
+
+/**
+ * @author Lukas Herll
+ *
+ * Records the progress of a single NLopt run: the best objective value and parameter vector found so far (and the
+ * elapsed time) at configurable evaluation checkpoints. Since NLopt returns the best point found when it hits its
+ * evaluation limit, the state at checkpoint k equals the result of the same run with the evaluation limit k (for
+ * deterministic algorithms whose search does not depend on the limit, and for identical initial values, bounds, and
+ * tolerances). Checkpoints that are not reached, because the solver converged before, get the final state of the run.
+ * Checkpoints beyond the evaluation limit of a run that was stopped by the limit remain empty.
+ *
+ * Not thread-safe, each optimiser needs its own trace.
+ */
+public class SolverTrace {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //NLopt result code of a run that was stopped due to its evaluation limit
+    static final int MAXEVAL_REACHED = 5;
+
+    //the evaluation counts (ascending)
+    private final int[] checkpoints;
+    private final long startTimeInNS;
+
+    private int evaluations;
+    private double bestValue = Double.POSITIVE_INFINITY;
+    private double[] bestX;
+
+    //state at the checkpoints
+    private final double[] checkpointValues;
+    private final double[][] checkpointX;
+    private final long[] checkpointTimesInNS;
+    private int reachedCheckpoints;
+
+    //the final state (set by finish)
+    private int resultCode;
+    private boolean finished;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param checkpoints
+     *                      the evaluation counts at which the state is recorded (positive)
+     */
+    public SolverTrace(int[] checkpoints){
+        this.checkpoints = Arrays.stream(checkpoints).filter(c -> c > 0).sorted().distinct().toArray();
+        this.checkpointValues = new double[this.checkpoints.length];
+        this.checkpointX = new double[this.checkpoints.length][];
+        this.checkpointTimesInNS = new long[this.checkpoints.length];
+        this.startTimeInNS = System.nanoTime();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Records one evaluation of the objective function (called from the NLopt callback).
+     * @param x
+     *              the evaluated parameter vector
+     * @param value
+     *              the objective value
+     */
+    void record(double[] x, double value){
+        evaluations++;
+        if(value < bestValue || bestX == null){
+            bestValue = value;
+            bestX = x.clone();
+        }
+        while(reachedCheckpoints < checkpoints.length && checkpoints[reachedCheckpoints] == evaluations){
+            snapshot(reachedCheckpoints++);
+        }
+    }
+
+
+    /**
+     * Completes the trace after the solver has terminated: all checkpoints that were not reached get the final state.
+     * @param resultCode
+     *              the NLopt result code of the run
+     */
+    void finish(int resultCode){
+        this.resultCode = resultCode;
+        this.finished = true;
+        //a run that was stopped by its evaluation limit says nothing about the later checkpoints
+        if(resultCode == MAXEVAL_REACHED){
+            return;
+        }
+        while(reachedCheckpoints < checkpoints.length){
+            snapshot(reachedCheckpoints++);
+        }
+    }
+
+
+    private void snapshot(int i){
+        checkpointValues[i] = bestValue;
+        checkpointX[i] = bestX == null ? null : bestX.clone();
+        checkpointTimesInNS[i] = System.nanoTime() - startTimeInNS;
+    }
+
+
+    /**
+     * @param maxEval
+     *              an evaluation limit
+     * @return  the index of the checkpoint representing a run with the given evaluation limit; -1 if there is none
+     */
+    int indexOf(int maxEval){
+        if(!finished){
+            return -1;
+        }
+        for(int i = 0; i < checkpoints.length; i++){
+            if(checkpoints[i] == maxEval){
+                return checkpointX[i] == null ? -1 : i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * @param i
+     *              the index of a checkpoint
+     * @return  the NLopt result code a run limited to the checkpoint's evaluation count would have returned
+     */
+    int getResultCode(int i){
+        //the run was stopped by the limit iff it went on afterwards
+        return evaluations > checkpoints[i] ? MAXEVAL_REACHED : resultCode;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //getters
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public int[] getCheckpoints() {
+        return checkpoints;
+    }
+
+    public double getCheckpointValue(int i) {
+        return checkpointValues[i];
+    }
+
+    public double[] getCheckpointX(int i) {
+        return checkpointX[i];
+    }
+
+    public long getCheckpointTimeInNS(int i) {
+        return checkpointTimesInNS[i];
+    }
+
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    public double getBestValue() {
+        return bestValue;
+    }
+}
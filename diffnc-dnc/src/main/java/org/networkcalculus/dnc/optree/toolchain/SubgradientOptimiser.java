@@ -0,0 +1,136 @@
+package org.networkcalculus.dnc.optree.toolchain;
+
+import org.nlopt4j.optimizer.NLopt;
+
+/**
+ * @author Lukas Herll
+ *
+ * Projected subgradient method with a two-element bundle (algorithm code JavaOptimiser.JAVA_SUBGRADIENT).
+ *
+ * Each iteration steps along the projected negative (sub-)gradient, normalised to the current step length. A successful
+ * step (lower objective value) is accepted and the step length grows. Otherwise, the point is kept, the step length is
+ * halved, and the direction is recomputed from the bundle of the subgradient at the point and the one at the rejected
+ * trial point: the element of minimal norm of their convex hull. At a kink of the piecewise linear objective, the
+ * subgradients on both sides of the kink thereby cancel in the direction across the kink, and the method moves along it.
+ * The run ends when the step length falls below the tolerance or the projected direction vanishes (a stationary point
+ * within the bounds).
+ */
+class SubgradientOptimiser extends JavaOptimiser {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private static final double GROWTH = 2;
+    private static final double REDUCTION = 0.5;
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    SubgradientOptimiser(NLopt.NLopt_func objective, double[] lowerBounds, double[] upperBounds,
+                         double relativeTolerance, int maxEval){
+        super(objective, lowerBounds, upperBounds, relativeTolerance, maxEval);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    @Override
+    protected int minimise(double[] x){
+        double[] gradient = new double[dimension];
+        double value = evaluate(x, gradient);
+        double maxStep = initialStep(x);
+        double step = maxStep;
+
+        double[] direction = new double[dimension];
+        double[] y = new double[dimension];
+        double[] gradientY = new double[dimension];
+
+        while(!isExhausted()){
+            double norm = projectedDirection(x, gradient, direction);
+            if(norm == 0){
+                //no feasible descent direction
+                return SUCCESS;
+            }
+            if(isBelowTolerance(x, step)){
+                return XTOL_REACHED;
+            }
+
+            for(int i = 0; i < dimension; i++){
+                y[i] = x[i] + step * direction[i] / norm;
+            }
+            project(y);
+            double valueY = evaluate(y, gradientY);
+
+            if(valueY < value){
+                System.arraycopy(y, 0, x, 0, dimension);
+                System.arraycopy(gradientY, 0, gradient, 0, dimension);
+                value = valueY;
+                step = Math.min(step * GROWTH, maxStep);
+            }
+            else{
+                minimalNormCombination(gradient, gradientY);
+                step *= REDUCTION;
+            }
+        }
+        return exhaustedResultCode();
+    }
+
+
+    /**
+     * Computes the negative gradient, with the components that would leave the bounds set to 0.
+     * @param x
+     *                  the parameter values
+     * @param gradient
+     *                  the (sub-)gradient at x
+     * @param direction
+     *                  receives the direction
+     * @return  the euclidean norm of the direction
+     */
+    private double projectedDirection(double[] x, double[] gradient, double[] direction){
+        double norm = 0;
+        for(int i = 0; i < dimension; i++){
+            double d = -gradient[i];
+            if((d < 0 && x[i] <= lowerBounds[i]) || (d > 0 && x[i] >= upperBounds[i]) || Double.isNaN(d)){
+                d = 0;
+            }
+            direction[i] = d;
+            norm += d * d;
+        }
+        return Math.sqrt(norm);
+    }
+
+
+    /**
+     * Replaces g by the element of minimal norm of the line segment between g and h.
+     * @param g
+     *                  the subgradient at the current point (modified in place)
+     * @param h
+     *                  the subgradient at the rejected trial point
+     */
+    private void minimalNormCombination(double[] g, double[] h){
+        double diff = 0;
+        double dot = 0;
+        for(int i = 0; i < dimension; i++){
+            double d = g[i] - h[i];
+            diff += d * d;
+            dot += h[i] * d;
+        }
+        if(diff == 0 || Double.isNaN(dot)){
+            return;
+        }
+        //minimise |lambda * g + (1 - lambda) * h| over lambda in [0,1]
+        double lambda = Math.min(Math.max(-dot / diff, 0), 1);
+        for(int i = 0; i < dimension; i++){
+            g[i] = lambda * g[i] + (1 - lambda) * h[i];
+        }
+    }
+
+
+    private boolean isBelowTolerance(double[] x, double step){
+        for(int i = 0; i < dimension; i++){
+            if(step > tolerance(x, i)){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,6 +2,7 @@ package org.networkcalculus.dnc.tandem.analyses;
 
 import java.util.*;
 
+import org.apache.commons.math3.util.Pair;
 import org.networkcalculus.dnc.AnalysisConfig;
 import org.networkcalculus.dnc.Calculator;
 import org.networkcalculus.dnc.bounds.disco.pw_affine.LeftOverService_Disco_PwAffine;
@@ -15,6 +16,7 @@ import org.networkcalculus.dnc.network.server_graph.Path;
 import org.networkcalculus.dnc.network.server_graph.Server;
 import org.networkcalculus.dnc.network.server_graph.ServerGraph;
 import org.networkcalculus.dnc.tandem.AbstractTandemAnalysis;
+import org.networkcalculus.dnc.tandem.fifo.AnalysisContext;
 import org.networkcalculus.dnc.tandem.fifo.NestedTandemAnalysis;
 import org.networkcalculus.dnc.tandem.fifo.NonNestedTandemAnalysis;
 import org.networkcalculus.dnc.tandem.fifo.TNode;
@@ -29,18 +31,26 @@ import org.networkcalculus.num.Num;
  */
 public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
     private final boolean checkStabilityConstraint = false;
+    // Per-analysis settings and book-keeping, handed to all tandem analyses created for the flow of interest
+    private final AnalysisContext context;
 
     public FIFOTandemAnalysis(ServerGraph server_graph ) {
-        super.server_graph = server_graph;
-        super.result = new FIFOTandemAnalysisResults();
-        super.configuration = new AnalysisConfig();
-        configuration.enforceMultiplexing(AnalysisConfig.MultiplexingEnforcement.GLOBAL_FIFO);
+        this(server_graph, new AnalysisConfig());
     }
 
     public FIFOTandemAnalysis(ServerGraph server_graph, AnalysisConfig configuration ) {
+        this(server_graph, configuration, new AnalysisContext());
+    }
+
+    public FIFOTandemAnalysis(ServerGraph server_graph, AnalysisContext context ) {
+        this(server_graph, new AnalysisConfig(), context);
+    }
+
+    public FIFOTandemAnalysis(ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context ) {
         super.server_graph = server_graph;
         super.result = new FIFOTandemAnalysisResults();
         this.configuration = configuration;
+        this.context = context;
         configuration.enforceMultiplexing(AnalysisConfig.MultiplexingEnforcement.GLOBAL_FIFO);
     }
 
@@ -111,47 +121,28 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
         Map<Path,Set<Flow>> crossflows_subpath_grouped = server_graph.groupFlowsPerSubPath(path, crossflows);
 
         // Determine if the network|path is a nested / non-nested tandem
-        HashMap<Server, Integer> server_numbers = new HashMap<Server, Integer>();
-        LinkedList<Server> servers_on_path = path.getServers();
-        // Needs to start from 0 because we use those numbers for indexing in the matrix
-        int num = 0;
-        for (Server server : servers_on_path) {
-            server_numbers.put(server, num++);
-        }
+        boolean nested = isNested(path, crossflows_subpath_grouped);
 
-        // All entries initially false
-        boolean[][] flowMatrix = new boolean[num][num];
-
-        // Construction of flowMatrix (we just mark the source and sink server of each flow)
-        for (Path path_xf : crossflows_subpath_grouped.keySet()) {
-
-            int source_num = server_numbers.get(path_xf.getSource());
-            int sink_num = server_numbers.get(path_xf.getSink());
 
-
-            flowMatrix[source_num][sink_num] = true;
-        }
-
-        boolean nested = true;
-        loop:
-        for (Path path_xf : crossflows_subpath_grouped.keySet()) {
-
-            int source_num = server_numbers.get(path_xf.getSource());
-            int sink_num = server_numbers.get(path_xf.getSink());
-
-            // Relevant search space: [0, source_num - 1] x [source_num, sink_num - 1] "and" [source_num + 1, sink_num] x [sink_num + 1, num - 1]
-            // "[0, source_num - 1] x [source_num, sink_num - 1]" already found by corresponding flow
-
-            for (int i = source_num + 1; i <= sink_num; i++) {
-                for (int j = sink_num + 1; j <= num - 1; j++) {
-                    if (flowMatrix[i][j]) {
-                        nested = false;
-                        break loop;
-                    }
-                }
+        // Compute the arrival bounds of the crossflow groups, the groups are independent of each other (computed concurrently if the context allows it)
+        List<Path> paths_to_bound = new ArrayList<>();
+        List<Pair<Server, Set<Flow>>> arrival_bound_requests = new ArrayList<>();
+        for(Path path_curr : crossflows_subpath_grouped.keySet())
+        {
+            if(nested || path_curr.equals(path))
+            {
+                // nested: compute output arrival curve for crossflow aggregate
+                // non-nested: path_curr equals path => need the output arrival curve for this aggregate (see case distinctions below)
+                paths_to_bound.add(path_curr);
+                arrival_bound_requests.add(new Pair<>(path_curr.getSource(), crossflows_subpath_grouped.get(path_curr)));
             }
         }
-
+        List<ArrivalCurve> arrival_bounds = ArrivalBoundDispatchFIFO.computeArrivalBounds(server_graph, configuration, context, arrival_bound_requests);
+        Map<Path, ArrivalCurve> ac_crossflows_at_source = new HashMap<>();
+        for(int i = 0; i < paths_to_bound.size(); i++)
+        {
+            ac_crossflows_at_source.put(paths_to_bound.get(i), arrival_bounds.get(i));
+        }
 
         // Compute flow substitutes (Nested/NonNestedTandemAnalysis will use them)
         Map<Path, Flow> crossflow_substitutes = new HashMap<>();
@@ -160,11 +151,9 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
             Set<Flow> crossflows_with_path_curr = crossflows_subpath_grouped.get(path_curr);
 
             ArrivalCurve ac_crossflows_at_path_curr_source = null;
-            if(nested || path_curr.equals(path))
+            if(ac_crossflows_at_source.containsKey(path_curr))
             {
-                // nested: compute output arrival curve for crossflow aggregate
-                // non-nested: path_curr equals path => need the output arrival curve for this aggregate (see case distinctions below)
-                ac_crossflows_at_path_curr_source = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, path_curr.getSource(), crossflows_with_path_curr);
+                ac_crossflows_at_path_curr_source = ac_crossflows_at_source.get(path_curr);
             }
 
             else{
@@ -192,7 +181,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                 if(outputbound)
                 {
                     // Nested, at least one crossflow has path as subpath, solve for "best" output bound
-                    NestedTandemAnalysis tandem_analysis_crossflow_w_path_as_subpath = new NestedTandemAnalysis(path, crossflow_substitutes.get(path), new HashSet<>(crossflow_substitutes.values()), configuration);
+                    NestedTandemAnalysis tandem_analysis_crossflow_w_path_as_subpath = new NestedTandemAnalysis(path, crossflow_substitutes.get(path), new HashSet<>(crossflow_substitutes.values()), configuration, context);
                     ServiceCurve sc_crossflow_w_path_as_subpath = tandem_analysis_crossflow_w_path_as_subpath.getServiceCurve();
 
                     ArrivalCurve ac = crossflow_substitutes.get(path).getArrivalCurve();
@@ -222,7 +211,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     all_flow_substitutes.remove(crossflow_substitutes.get(path));
                     all_flow_substitutes.add(flow_substitute_foi_w_crossflow);
 
-                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, flow_substitute_foi_w_crossflow, all_flow_substitutes, configuration);
+                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, flow_substitute_foi_w_crossflow, all_flow_substitutes, configuration, context);
                     ServiceCurve sc_lo_foi_w_crossflow = tandem_analysis.getServiceCurve();
                     Num burst = flow_substitute_foi_w_crossflow.getArrivalCurve().getBurst();
                     Curve_Disco_PwAffine curve = (Curve_Disco_PwAffine) sc_lo_foi_w_crossflow;
@@ -238,7 +227,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     Set<Flow> all_flow_substitutes = new HashSet<>();
                     all_flow_substitutes.addAll(crossflow_substitutes.values());
                     all_flow_substitutes.add(foi_substitute);
-                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, foi_substitute, all_flow_substitutes, configuration);
+                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, foi_substitute, all_flow_substitutes, configuration, context);
                     TNode root = tandem_analysis.onlyComputeNestingTree();
                     ArrayList<TNode> foi_children = root.getChildren();
                     ServiceCurve leftover = Curve.getFactory().createZeroDelayInfiniteBurst();
@@ -263,7 +252,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                                 }
                             }
 
-                            NestedTandemAnalysis tandem_analysis_child = new NestedTandemAnalysis(foi_child_flow.getPath(), foi_child_flow, flows_nested_into_foi_child, configuration);
+                            NestedTandemAnalysis tandem_analysis_child = new NestedTandemAnalysis(foi_child_flow.getPath(), foi_child_flow, flows_nested_into_foi_child, configuration, context);
                             ServiceCurve beta_lo_child = tandem_analysis_child.getServiceCurve();
 
                             ArrivalCurve ac = foi_child_flow.getArrivalCurve();
@@ -284,7 +273,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     Set<Flow> all_flow_substitutes = new HashSet<>();
                     all_flow_substitutes.addAll(crossflow_substitutes.values());
                     all_flow_substitutes.add(foi_substitute);
-                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, foi_substitute, all_flow_substitutes, configuration);
+                    NestedTandemAnalysis tandem_analysis = new NestedTandemAnalysis(path, foi_substitute, all_flow_substitutes, configuration, context);
                     return tandem_analysis.getServiceCurve();
                 }
             }
@@ -297,7 +286,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                 {
                     // Non nested, at least one crossflow has path as subpath, solve for "best" output bound
                     // yes the flag has to be set to solve_for_output_bound_opt == false because we do the analysis with the crossflows that have path as subpath as flow of interest (and use the respective left-over to get a left-over for the flows_of_interest)
-                    NonNestedTandemAnalysis tandem_analysis_crossflow_w_path_as_subpath = new NonNestedTandemAnalysis(server_graph, configuration, path, crossflow_substitutes.get(path), new ArrayList<>(crossflow_substitutes.values()), crossflows_subpath_grouped, false);
+                    NonNestedTandemAnalysis tandem_analysis_crossflow_w_path_as_subpath = new NonNestedTandemAnalysis(server_graph, configuration, context, path, crossflow_substitutes.get(path), new ArrayList<>(crossflow_substitutes.values()), crossflows_subpath_grouped, false);
                     ServiceCurve sc_crossflow_w_path_as_subpath = tandem_analysis_crossflow_w_path_as_subpath.getServiceCurve();
                     ArrivalCurve ac = crossflow_substitutes.get(path).getArrivalCurve();
                     ServiceCurve sc = sc_crossflow_w_path_as_subpath;
@@ -334,7 +323,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     crossflows_subpath_grouped_minus_crossflow_w_path.putAll(crossflows_subpath_grouped);
                     crossflows_subpath_grouped_minus_crossflow_w_path.remove(path);
 
-                    NonNestedTandemAnalysis tandem_analysis = new NonNestedTandemAnalysis(server_graph, configuration, path, flow_substitute_foi_w_crossflow, all_flow_substitutes, crossflows_subpath_grouped_minus_crossflow_w_path, false);
+                    NonNestedTandemAnalysis tandem_analysis = new NonNestedTandemAnalysis(server_graph, configuration, context, path, flow_substitute_foi_w_crossflow, all_flow_substitutes, crossflows_subpath_grouped_minus_crossflow_w_path, false);
                     ServiceCurve sc_lo_foi_w_crossflow = tandem_analysis.getServiceCurve();
                     Num burst = flow_substitute_foi_w_crossflow.getArrivalCurve().getBurst();
                     Curve_Disco_PwAffine curve = (Curve_Disco_PwAffine) sc_lo_foi_w_crossflow;
@@ -349,7 +338,7 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     ArrayList<Flow> all_flow_substitutes = new ArrayList<>();
                     all_flow_substitutes.addAll(crossflow_substitutes.values());
                     all_flow_substitutes.add(foi_substitute);
-                    NonNestedTandemAnalysis tandem_analysis  = new NonNestedTandemAnalysis(server_graph, configuration, path, foi_substitute, all_flow_substitutes, crossflows_subpath_grouped, true);
+                    NonNestedTandemAnalysis tandem_analysis  = new NonNestedTandemAnalysis(server_graph, configuration, context, path, foi_substitute, all_flow_substitutes, crossflows_subpath_grouped, true);
                     return tandem_analysis.getServiceCurve();
                 }
 
@@ -358,13 +347,93 @@ public class FIFOTandemAnalysis extends AbstractTandemAnalysis {
                     ArrayList<Flow> all_flow_substitutes = new ArrayList<>();
                     all_flow_substitutes.addAll(crossflow_substitutes.values());
                     all_flow_substitutes.add(foi_substitute);
-                    NonNestedTandemAnalysis tandem_analysis  = new NonNestedTandemAnalysis(server_graph, configuration, path, foi_substitute, all_flow_substitutes, crossflows_subpath_grouped, false);
+                    NonNestedTandemAnalysis tandem_analysis  = new NonNestedTandemAnalysis(server_graph, configuration, context, path, foi_substitute, all_flow_substitutes, crossflows_subpath_grouped, false);
                     return tandem_analysis.getServiceCurve();
                 }
             }
         }
     }
 
+    /**
+     * Returns the crossflow groups (grouped by their sub-path of <code>path</code>) whose arrival bound at the source of
+     * their sub-path is computed by getServiceCurve via ArrivalBoundDispatchFIFO: all groups in case of a nested
+     * tandem, otherwise only the group that has <code>path</code> as sub-path (if any). The arrival bounds of the
+     * other groups of a non-nested tandem are only requested by the NonNestedTandemAnalysis (per sub-tandem).
+     *
+     * @param flows_of_interest the flows of interest, they need to cross all servers on the path
+     * @param path the path of the tandem
+     * @return the crossflow groups whose arrival bounds are requested
+     * @throws Exception
+     */
+    public Map<Path, Set<Flow>> getCrossflowGroupsToBound(Set<Flow> flows_of_interest, Path path) throws Exception {
+        Set<Flow> crossflows = SetUtils.getDifference(server_graph.getFlows(path), flows_of_interest);
+        if(crossflows.isEmpty())
+        {
+            return new HashMap<>();
+        }
+
+        Map<Path,Set<Flow>> crossflows_subpath_grouped = server_graph.groupFlowsPerSubPath(path, crossflows);
+        if(isNested(path, crossflows_subpath_grouped))
+        {
+            return crossflows_subpath_grouped;
+        }
+        Map<Path,Set<Flow>> crossflows_w_path_as_subpath = new HashMap<>();
+        if(crossflows_subpath_grouped.containsKey(path))
+        {
+            crossflows_w_path_as_subpath.put(path, crossflows_subpath_grouped.get(path));
+        }
+        return crossflows_w_path_as_subpath;
+    }
+
+    // The tandem is nested iff no two crossflow sub-paths partially overlap
+    private static boolean isNested(Path path, Map<Path,Set<Flow>> crossflows_subpath_grouped) {
+        HashMap<Server, Integer> server_numbers = new HashMap<Server, Integer>();
+        LinkedList<Server> servers_on_path = path.getServers();
+        // Needs to start from 0 because we use those numbers for indexing in the matrix
+        int num = 0;
+        for (Server server : servers_on_path) {
+            server_numbers.put(server, num++);
+        }
+
+        // All entries initially false
+        boolean[][] flowMatrix = new boolean[num][num];
+
+        // Construction of flowMatrix (we just mark the source and sink server of each flow)
+        for (Path path_xf : crossflows_subpath_grouped.keySet()) {
+
+            int source_num = server_numbers.get(path_xf.getSource());
+            int sink_num = server_numbers.get(path_xf.getSink());
+
+
+            flowMatrix[source_num][sink_num] = true;
+        }
+
+        boolean nested = true;
+        loop:
+        for (Path path_xf : crossflows_subpath_grouped.keySet()) {
+
+            int source_num = server_numbers.get(path_xf.getSource());
+            int sink_num = server_numbers.get(path_xf.getSink());
+
+            // Relevant search space: [0, source_num - 1] x [source_num, sink_num - 1] "and" [source_num + 1, sink_num] x [sink_num + 1, num - 1]
+            // "[0, source_num - 1] x [source_num, sink_num - 1]" already found by corresponding flow
+
+            for (int i = source_num + 1; i <= sink_num; i++) {
+                for (int j = sink_num + 1; j <= num - 1; j++) {
+                    if (flowMatrix[i][j]) {
+                        nested = false;
+                        break loop;
+                    }
+                }
+            }
+        }
+        return nested;
+    }
+
+    public AnalysisContext getContext() {
+        return context;
+    }
+
     public String computeAlias(ArrayList<Flow> flows, String start)
     {
         String alias = start + "{";
@@ -0,0 +1,445 @@
+package org.networkcalculus.dnc.tandem.fifo;
+
+import org.networkcalculus.dnc.feedforward.ArrivalBoundCacheFIFO;
+import org.networkcalculus.dnc.optree.toolchain.ObjectiveCache;
+import org.networkcalculus.dnc.optree.toolchain.OptimiserPool;
+import org.networkcalculus.dnc.optree.toolchain.PortfolioPolicy;
+
+import java.util.Arrays;
+
+/**
+ * @author Lukas Herll
+ *
+ * Holds the settings and the book-keeping of a single FIFO analysis (i.e. of one flow of interest).
+ * The context is handed from the FIFOTandemAnalysis to all NestedTandemAnalysis and OpTreeAnalysis instances that are
+ * created while analysing the flow of interest. Since no state is shared via static fields, several flows can be
+ * analysed concurrently in one JVM as long as every analysis uses its own context (and its own ServerGraph, as the
+ * DiffLUDB analysis renames the flows' aliases).
+ *
+ * The counters may be updated from several threads of the same analysis and are therefore synchronized.
+ */
+public class AnalysisContext {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //settings of the NestedTandemAnalysis
+    private NestedTandemAnalysis.mode selectedMode = NestedTandemAnalysis.mode.DIFF_LUDB;
+    //decide whether to compute lb_thetas_safe and use them as the initial parameter values
+    private boolean approximateInitialThetas = false;
+    //if this flag is set, then no meaningful delay bound analysis is carried out. Instead, every tandem's objective
+    //function is tested for convexity
+    private boolean onlyTestConvexity = false;
+    //if set to false, only occurring errors will be printed to console (no results etc.)
+    private boolean printToConsole = false;
+    //explore the decompositions of the LUDB analysis (LUDB_FF) on the common fork-join pool (with LpSolverCplex, this
+    //starts several cplex processes at once)
+    private boolean parallelLUDB = false;
+    //solve the LPs of the LUDB analysis (LUDB_FF) with the in-process simplex (LpSolverWarmStart) instead of cplex
+    private boolean javaLpSolver = false;
+    //the analysis (LB_FF or DS_FF) whose delay bound yields finite upper bounds on the s-parameters of DIFF_LUDB
+    //(null == the s-parameters are only bounded below)
+    private NestedTandemAnalysis.mode parameterBoundsMode = null;
+
+    //settings of the OpTreeAnalysis
+    private int nloptAlg = 40; // 40 == SLSQP default
+    private int iterationsMax = -1; // -1 == no limit
+    private double nloptRelativeTolerance = 1e-4;
+    //lower the objective function to an instruction tape instead of evaluating the JAutoDiff term
+    private boolean compileObjective = true;
+    //the NLopt algorithms run by the solver portfolio (nloptAlg == 100), default: SLSQP and SBPLX
+    private int[] portfolioAlgs = {40, 29};
+    private PortfolioPolicy portfolioPolicy = PortfolioPolicy.MINIMUM;
+    //run the portfolio members concurrently (only if the objective function could be compiled)
+    private boolean parallelPortfolio = true;
+    //derived objective functions shared with other analyses that run one after the other (null == no caching)
+    private ObjectiveCache objectiveCache = null;
+    //the evaluation counts at which each NLopt run records its best-so-far solution (null == no recording). Runs with an
+    //evaluation limit among the checkpoints take their solution from the trace of a longer run on the same objective
+    //function (if any) instead of running the solver, see OpTreeAnalysis.solveFromTrace
+    private int[] evaluationCheckpoints = null;
+    //native NLopt optimisers reused by the NLopt runs (null == every run creates and releases its own optimiser)
+    private OptimiserPool optimiserPool = null;
+
+    //settings of the FIFOTandemAnalysis
+    //arrival bounds shared with the analyses of the other flows of the network (null == no caching)
+    private ArrivalBoundCacheFIFO arrivalBoundCache = null;
+    //compute independent arrival bounds on the common fork-join pool (only if no ObjectiveCache is used); the aggregated
+    //times of the context then add up the times of concurrent sub-tandems
+    private boolean parallelArrivalBounds = false;
+    //left-over service curves of the nested (sub-)tandems shared with other analyses (null == no caching)
+    private LeftOverServiceCache leftOverServiceCache = null;
+    //solved sub-tandems shared with other runs via the file system (null == no persistent store)
+    private PersistentSubTandemStore subTandemStore = null;
+    //s-values of the solved sub-tandems, the NLPs of similar sub-tandems start from (null == no warm start)
+    private WarmStartProvider warmStartProvider = null;
+
+    //identification of the analysed network and foi (for printing only)
+    private int networkID;
+    private int networkFoi;
+
+    //book-keeping (aggregated over all sub-tandems of one flow of interest)
+    private int subNetwork;
+    //sub-tandems taken from a LeftOverServiceCache or PersistentSubTandemStore (not part of subNetwork)
+    private int noOfCachedSubTandems;
+    private int noOfConvexTandems;
+    private int noOfNonConvexTandems;
+    private long aggrTimeToFindInitialThetasInNS;
+    private long aggrTimeToDeriveObjFuncInNS;
+    private long aggrTimeToStartSolverInNS;
+    private long aggrTimeToSolveNLPInNS;
+    private long aggrTimeToComputeServiceCurveInNS;
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public AnalysisContext(){
+    }
+
+    public AnalysisContext(NestedTandemAnalysis.mode selectedMode){
+        this.selectedMode = selectedMode;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Creates a new context with the same settings as this context. Identification and book-keeping are not copied.
+     * @return  the new context
+     */
+    public AnalysisContext copySettings(){
+        AnalysisContext copy = new AnalysisContext(selectedMode);
+        copy.approximateInitialThetas = approximateInitialThetas;
+        copy.onlyTestConvexity = onlyTestConvexity;
+        copy.printToConsole = printToConsole;
+        copy.parallelLUDB = parallelLUDB;
+        copy.javaLpSolver = javaLpSolver;
+        copy.parameterBoundsMode = parameterBoundsMode;
+        copy.nloptAlg = nloptAlg;
+        copy.iterationsMax = iterationsMax;
+        copy.nloptRelativeTolerance = nloptRelativeTolerance;
+        copy.compileObjective = compileObjective;
+        copy.portfolioAlgs = portfolioAlgs.clone();
+        copy.portfolioPolicy = portfolioPolicy;
+        copy.parallelPortfolio = parallelPortfolio;
+        copy.objectiveCache = objectiveCache;
+        copy.evaluationCheckpoints = evaluationCheckpoints;
+        copy.optimiserPool = optimiserPool;
+        copy.arrivalBoundCache = arrivalBoundCache;
+        copy.parallelArrivalBounds = parallelArrivalBounds;
+        copy.leftOverServiceCache = leftOverServiceCache;
+        copy.subTandemStore = subTandemStore;
+        copy.warmStartProvider = warmStartProvider;
+        return copy;
+    }
+
+
+    /**
+     * Returns a string that contains all settings the computed bounds depend on, i.e. two analyses with the same
+     * signature derive the same bounds for the same tandem. Settings that only affect the runtime (e.g. parallelism,
+     * compilation of the objective function) and the caches are not part of the signature. The evaluation checkpoints
+     * are, as bounds replayed from a SolverTrace are only valid for the checkpoints of the traced run. So is whether
+     * the NLPs are warm-started (WarmStartProvider), as a different starting point yields a different local optimum.
+     * @return  the signature of the settings
+     */
+    public String getSettingsSignature(){
+        return selectedMode + "," + approximateInitialThetas + "," + onlyTestConvexity + "," + javaLpSolver + "," + nloptAlg + ","
+                + iterationsMax + "," + nloptRelativeTolerance + "," + Arrays.toString(portfolioAlgs) + ","
+                + portfolioPolicy + "," + parameterBoundsMode + "," + Arrays.toString(evaluationCheckpoints) + ","
+                + (warmStartProvider != null);
+    }
+
+
+    /**
+     * Resets the book-keeping (sub-tandem index, cached sub-tandems, convexity counters and aggregated times).
+     */
+    public synchronized void resetStatistics(){
+        subNetwork = 0;
+        noOfCachedSubTandems = 0;
+        noOfConvexTandems = 0;
+        noOfNonConvexTandems = 0;
+        aggrTimeToFindInitialThetasInNS = 0;
+        aggrTimeToDeriveObjFuncInNS = 0;
+        aggrTimeToStartSolverInNS = 0;
+        aggrTimeToSolveNLPInNS = 0;
+        aggrTimeToComputeServiceCurveInNS = 0;
+    }
+
+
+    /**
+     * Returns the index of the current sub-tandem and increments it.
+     * @return  the index of the sub-tandem that was analysed last
+     */
+    public synchronized int nextSubNetwork(){
+        return subNetwork++;
+    }
+
+    public synchronized void incrementCachedSubTandems(){
+        noOfCachedSubTandems++;
+    }
+
+    public synchronized void incrementConvexTandems(){
+        noOfConvexTandems++;
+    }
+
+    public synchronized void incrementNonConvexTandems(){
+        noOfNonConvexTandems++;
+    }
+
+    public synchronized void addTimeToFindInitialThetas(long ns){
+        aggrTimeToFindInitialThetasInNS += ns;
+    }
+
+    public synchronized void addTimeToDeriveObjFunc(long ns){
+        aggrTimeToDeriveObjFuncInNS += ns;
+    }
+
+    public synchronized void addTimeToStartSolver(long ns){
+        aggrTimeToStartSolverInNS += ns;
+    }
+
+    public synchronized void addTimeToSolveNLP(long ns){
+        aggrTimeToSolveNLPInNS += ns;
+    }
+
+    public synchronized void addTimeToComputeServiceCurve(long ns){
+        aggrTimeToComputeServiceCurveInNS += ns;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //getters and setters
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public NestedTandemAnalysis.mode getSelectedMode() {
+        return selectedMode;
+    }
+
+    public void setSelectedMode(NestedTandemAnalysis.mode selectedMode) {
+        this.selectedMode = selectedMode;
+    }
+
+    public boolean isApproximateInitialThetas() {
+        return approximateInitialThetas;
+    }
+
+    public void setApproximateInitialThetas(boolean approximateInitialThetas) {
+        this.approximateInitialThetas = approximateInitialThetas;
+    }
+
+    public NestedTandemAnalysis.mode getParameterBoundsMode() {
+        return parameterBoundsMode;
+    }
+
+    public void setParameterBoundsMode(NestedTandemAnalysis.mode parameterBoundsMode) {
+        if (parameterBoundsMode != null && parameterBoundsMode != NestedTandemAnalysis.mode.LB_FF
+                && parameterBoundsMode != NestedTandemAnalysis.mode.DS_FF) {
+            throw new IllegalArgumentException("parameter bounds can only be derived from LB_FF or DS_FF");
+        }
+        this.parameterBoundsMode = parameterBoundsMode;
+    }
+
+    public boolean isOnlyTestConvexity() {
+        return onlyTestConvexity;
+    }
+
+    public void setOnlyTestConvexity(boolean onlyTestConvexity) {
+        this.onlyTestConvexity = onlyTestConvexity;
+    }
+
+    public boolean isPrintToConsole() {
+        return printToConsole;
+    }
+
+    public void setPrintToConsole(boolean printToConsole) {
+        this.printToConsole = printToConsole;
+    }
+
+    public boolean isParallelLUDB() {
+        return parallelLUDB;
+    }
+
+    public void setParallelLUDB(boolean parallelLUDB) {
+        this.parallelLUDB = parallelLUDB;
+    }
+
+    public boolean isJavaLpSolver() {
+        return javaLpSolver;
+    }
+
+    public void setJavaLpSolver(boolean javaLpSolver) {
+        this.javaLpSolver = javaLpSolver;
+    }
+
+    public int getNloptAlg() {
+        return nloptAlg;
+    }
+
+    public void setNloptAlg(int nloptAlg) {
+        this.nloptAlg = nloptAlg;
+    }
+
+    public int getIterationsMax() {
+        return iterationsMax;
+    }
+
+    public void setIterationsMax(int iterationsMax) {
+        this.iterationsMax = iterationsMax;
+    }
+
+    public double getNloptRelativeTolerance() {
+        return nloptRelativeTolerance;
+    }
+
+    public void setNloptRelativeTolerance(double nloptRelativeTolerance) {
+        this.nloptRelativeTolerance = nloptRelativeTolerance;
+    }
+
+    public boolean isCompileObjective() {
+        return compileObjective;
+    }
+
+    public void setCompileObjective(boolean compileObjective) {
+        this.compileObjective = compileObjective;
+    }
+
+    public int[] getPortfolioAlgs() {
+        return portfolioAlgs;
+    }
+
+    public void setPortfolioAlgs(int[] portfolioAlgs) {
+        this.portfolioAlgs = portfolioAlgs;
+    }
+
+    public PortfolioPolicy getPortfolioPolicy() {
+        return portfolioPolicy;
+    }
+
+    public void setPortfolioPolicy(PortfolioPolicy portfolioPolicy) {
+        this.portfolioPolicy = portfolioPolicy;
+    }
+
+    public boolean isParallelPortfolio() {
+        return parallelPortfolio;
+    }
+
+    public void setParallelPortfolio(boolean parallelPortfolio) {
+        this.parallelPortfolio = parallelPortfolio;
+    }
+
+    public ObjectiveCache getObjectiveCache() {
+        return objectiveCache;
+    }
+
+    public void setObjectiveCache(ObjectiveCache objectiveCache) {
+        this.objectiveCache = objectiveCache;
+    }
+
+    public int[] getEvaluationCheckpoints() {
+        return evaluationCheckpoints;
+    }
+
+    public void setEvaluationCheckpoints(int[] evaluationCheckpoints) {
+        this.evaluationCheckpoints = evaluationCheckpoints;
+    }
+
+    public OptimiserPool getOptimiserPool() {
+        return optimiserPool;
+    }
+
+    public void setOptimiserPool(OptimiserPool optimiserPool) {
+        this.optimiserPool = optimiserPool;
+    }
+
+    public ArrivalBoundCacheFIFO getArrivalBoundCache() {
+        return arrivalBoundCache;
+    }
+
+    public void setArrivalBoundCache(ArrivalBoundCacheFIFO arrivalBoundCache) {
+        this.arrivalBoundCache = arrivalBoundCache;
+    }
+
+    public boolean isParallelArrivalBounds() {
+        return parallelArrivalBounds;
+    }
+
+    public void setParallelArrivalBounds(boolean parallelArrivalBounds) {
+        this.parallelArrivalBounds = parallelArrivalBounds;
+    }
+
+    public LeftOverServiceCache getLeftOverServiceCache() {
+        return leftOverServiceCache;
+    }
+
+    public void setLeftOverServiceCache(LeftOverServiceCache leftOverServiceCache) {
+        this.leftOverServiceCache = leftOverServiceCache;
+    }
+
+    public PersistentSubTandemStore getSubTandemStore() {
+        return subTandemStore;
+    }
+
+    public void setSubTandemStore(PersistentSubTandemStore subTandemStore) {
+        this.subTandemStore = subTandemStore;
+    }
+
+    public WarmStartProvider getWarmStartProvider() {
+        return warmStartProvider;
+    }
+
+    public void setWarmStartProvider(WarmStartProvider warmStartProvider) {
+        this.warmStartProvider = warmStartProvider;
+    }
+
+    public int getNetworkID() {
+        return networkID;
+    }
+
+    public void setNetworkID(int networkID) {
+        this.networkID = networkID;
+    }
+
+    public int getNetworkFoi() {
+        return networkFoi;
+    }
+
+    public void setNetworkFoi(int networkFoi) {
+        this.networkFoi = networkFoi;
+    }
+
+    public synchronized int getSubNetwork() {
+        return subNetwork;
+    }
+
+    public synchronized int getNoOfCachedSubTandems() {
+        return noOfCachedSubTandems;
+    }
+
+    public synchronized int getNoOfConvexTandems() {
+        return noOfConvexTandems;
+    }
+
+    public synchronized int getNoOfNonConvexTandems() {
+        return noOfNonConvexTandems;
+    }
+
+    public synchronized long getAggrTimeToFindInitialThetasInNS() {
+        return aggrTimeToFindInitialThetasInNS;
+    }
+
+    public synchronized long getAggrTimeToDeriveObjFuncInNS() {
+        return aggrTimeToDeriveObjFuncInNS;
+    }
+
+    public synchronized long getAggrTimeToStartSolverInNS() {
+        return aggrTimeToStartSolverInNS;
+    }
+
+    public synchronized long getAggrTimeToSolveNLPInNS() {
+        return aggrTimeToSolveNLPInNS;
+    }
+
+    public synchronized long getAggrTimeToComputeServiceCurveInNS() {
+        return aggrTimeToComputeServiceCurveInNS;
+    }
+}
@@ -28,10 +28,16 @@ public class Expression_LUDB {
 
     Expression_LUDB.ExpressionType selected_type;
 
+    // The flattened form of this expression, built from the forms of the children when the expression is created (i.e., the
+    // expression tree never has to be traversed for simplification). For GEQ, the form of left - right (the constraint is form >= 0).
+    // null in case the expression is not linear (or divides by zero); simplifyExpression then reports the reason.
+    private final LinearForm_LUDB linear_form;
+
 
     public Expression_LUDB(Num n) {
         this.n_const = n;
         selected_type = ExpressionType.NUMBER;
+        linear_form = LinearForm_LUDB.createConstant(n.doubleValue());
     }
 
 
@@ -39,12 +45,50 @@ public class Expression_LUDB {
     public Expression_LUDB(int id) {
         selected_type = ExpressionType.VAR;
         this.id = id;
+        linear_form = LinearForm_LUDB.createVar(id);
     }
 
     public Expression_LUDB(Expression_LUDB left, Expression_LUDB right, ExpressionType type) {
         this.left = left;
         this.right = right;
         selected_type = type;
+        linear_form = combineLinearForms(left.linear_form, right.linear_form, type);
+    }
+
+    private static LinearForm_LUDB combineLinearForms(LinearForm_LUDB form_left, LinearForm_LUDB form_right, ExpressionType type) {
+        if (form_left == null || form_right == null) {
+            return null;
+        }
+        switch (type) {
+            case ADD:
+                return form_left.add(form_right);
+            case SUB:
+            case GEQ:
+                return form_left.sub(form_right);
+            case MULT:
+                return form_left.mult(form_right);
+            case DIV:
+                return form_left.div(form_right);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the flattened form of this expression (for a GEQ constraint: the form of left - right, i.e., the constraint is form >= 0)
+     * @throws Exception in case the expression is not linear or divides by zero
+     */
+    public LinearForm_LUDB getLinearForm() throws Exception {
+        if (linear_form == null) {
+            // throws the reason
+            if (selected_type == ExpressionType.GEQ) {
+                simplifyConstraint();
+            } else {
+                simplifyExpression();
+            }
+            throw new Exception("Faulty Expression!");
+        }
+        return linear_form;
     }
 
     public ExpressionType getType() {
@@ -96,6 +140,14 @@ public class Expression_LUDB {
 
 
     public Pair<Num, Map<Integer, Num>> simplifyExpression() throws Exception {
+        if (linear_form != null && selected_type != ExpressionType.GEQ) {
+            return linear_form.toNumPair();
+        }
+        return simplifyExpressionRecursively();
+    }
+
+    // Only reached for GEQ and for expressions without a linear form (to throw the respective exception); linear children are not traversed
+    private Pair<Num, Map<Integer, Num>> simplifyExpressionRecursively() throws Exception {
         Num constant = null;
         Map<Integer, Num> map_to_return = new HashMap();
         Num zero = Num.getUtils(Calculator.getInstance().getNumBackend()).createZero();
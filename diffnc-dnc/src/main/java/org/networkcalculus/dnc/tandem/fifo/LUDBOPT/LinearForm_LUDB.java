@@ -0,0 +1,165 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+import org.networkcalculus.dnc.Calculator;
+import org.networkcalculus.num.Num;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Flattened form constant + sum_i coeffs[i] * s_i of an Expression_LUDB (immutable).
+ * The coefficients are stored densely over the variable id space; the array ends with the last non-zero coefficient, i.e.,
+ * forms that only hold low ids (or only a constant) stay small.
+ * The arithmetic follows Expression_LUDB.simplifyExpression (e.g. MULT/DIV are only linear if the operands do not share a variable).
+ */
+public final class LinearForm_LUDB {
+    private static final double[] NO_COEFFS = new double[0];
+
+    private final double constant;
+    private final double[] coeffs; // index coincides with the var id
+
+    private LinearForm_LUDB(double constant, double[] coeffs) {
+        this.constant = constant;
+        this.coeffs = trim(coeffs);
+    }
+
+    public static LinearForm_LUDB createConstant(double constant) {
+        return new LinearForm_LUDB(constant, NO_COEFFS);
+    }
+
+    public static LinearForm_LUDB createVar(int id) {
+        double[] coeffs = new double[id + 1];
+        coeffs[id] = 1;
+        return new LinearForm_LUDB(0, coeffs);
+    }
+
+    public double getConstant() {
+        return constant;
+    }
+
+    // number of coefficients stored (all coefficients of ids >= getDimension() are zero)
+    public int getDimension() {
+        return coeffs.length;
+    }
+
+    public double getCoefficient(int id) {
+        return id < coeffs.length ? coeffs[id] : 0;
+    }
+
+    public boolean isConstant() {
+        return coeffs.length == 0;
+    }
+
+    public LinearForm_LUDB add(LinearForm_LUDB other) {
+        double[] result = Arrays.copyOf(coeffs, Math.max(coeffs.length, other.coeffs.length));
+        for (int i = 0; i < other.coeffs.length; i++) {
+            result[i] += other.coeffs[i];
+        }
+        return new LinearForm_LUDB(constant + other.constant, result);
+    }
+
+    public LinearForm_LUDB sub(LinearForm_LUDB other) {
+        double[] result = Arrays.copyOf(coeffs, Math.max(coeffs.length, other.coeffs.length));
+        for (int i = 0; i < other.coeffs.length; i++) {
+            result[i] -= other.coeffs[i];
+        }
+        return new LinearForm_LUDB(constant - other.constant, result);
+    }
+
+    // null in case both operands hold the same variable (nonlinear)
+    public LinearForm_LUDB mult(LinearForm_LUDB other) {
+        double[] result = new double[Math.max(coeffs.length, other.coeffs.length)];
+        for (int i = 0; i < result.length; i++) {
+            double coeff_left = getCoefficient(i);
+            double coeff_right = other.getCoefficient(i);
+            if (coeff_left != 0 && coeff_right != 0) {
+                return null;
+            }
+            if (coeff_right != 0) {
+                result[i] = constant * coeff_right;
+            } else if (coeff_left != 0) {
+                result[i] = coeff_left * other.constant;
+            }
+        }
+        return new LinearForm_LUDB(constant * other.constant, result);
+    }
+
+    // null in case both operands hold the same variable (nonlinear) or the divisor's constant is zero
+    public LinearForm_LUDB div(LinearForm_LUDB other) {
+        if (other.constant == 0) {
+            return null;
+        }
+        double[] result = new double[Math.max(coeffs.length, other.coeffs.length)];
+        for (int i = 0; i < result.length; i++) {
+            double coeff_left = getCoefficient(i);
+            double coeff_right = other.getCoefficient(i);
+            if (coeff_left != 0 && coeff_right != 0) {
+                return null;
+            }
+            if (coeff_right != 0) {
+                result[i] = constant / coeff_right;
+            } else if (coeff_left != 0) {
+                result[i] = coeff_left / other.constant;
+            }
+        }
+        return new LinearForm_LUDB(constant / other.constant, result);
+    }
+
+    /**
+     * @return the form as returned by Expression_LUDB.simplifyExpression (constant, var id -> non-zero coefficient)
+     */
+    public Pair<Num, Map<Integer, Num>> toNumPair() {
+        Map<Integer, Num> var_coeffs_map = new HashMap<>();
+        for (int i = 0; i < coeffs.length; i++) {
+            if (coeffs[i] != 0) {
+                var_coeffs_map.put(i, Num.getUtils(Calculator.getInstance().getNumBackend()).create(coeffs[i]));
+            }
+        }
+        return new Pair<>(Num.getUtils(Calculator.getInstance().getNumBackend()).create(constant), var_coeffs_map);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LinearForm_LUDB)) {
+            return false;
+        }
+        LinearForm_LUDB other = (LinearForm_LUDB) obj;
+        return Double.compare(constant, other.constant) == 0 && Arrays.equals(coeffs, other.coeffs);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(constant) + Arrays.hashCode(coeffs);
+    }
+
+    // constant;id:coeff;... (non-zero coefficients only)
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(constant);
+        for (int i = 0; i < coeffs.length; i++) {
+            if (coeffs[i] != 0) {
+                str.append(';').append(i).append(':').append(coeffs[i]);
+            }
+        }
+        return str.toString();
+    }
+
+    private static double[] trim(double[] coeffs) {
+        int length = coeffs.length;
+        while (length > 0 && coeffs[length - 1] == 0) {
+            length--;
+        }
+        if (length == 0) {
+            return NO_COEFFS;
+        }
+        return length == coeffs.length ? coeffs : Arrays.copyOf(coeffs, length);
+    }
+}
@@ -0,0 +1,325 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * An LP (min objective(s) s.t. constraint(s) >= 0 for all constraints, s >= 0) whose constraints can be added and removed one by one.
+ * The simplex tableau is kept in canonical form w.r.t. the current basis between the changes, i.e., solve() re-optimizes from the basis
+ * of the previous solve: dual simplex after constraints were added (the old basis stays dual feasible), primal simplex after the
+ * objective changed (the old basis stays primal feasible). Only if neither holds, a primal feasible basis is searched first
+ * (dual simplex w.r.t. the zero objective).
+ *
+ * Not thread-safe; see LpSolverWarmStart for the use as LpSolver.
+ */
+public class LpSession {
+    private static final double EPS = 1e-9;
+    private static final int MAX_PIVOTS_PER_COLUMN = 50; // guards against cycling caused by rounding
+
+    private final int number_vars; // structural columns 0, ..., number_vars - 1
+    // constraint i owns the slack column number_vars + i; its slack is the value of the constraint, i.e., constraint(s) - slack = 0
+    private final List<LinearForm_LUDB> constraints = new ArrayList<>();
+    private final Set<LinearForm_LUDB> constraint_set = new HashSet<>();
+    // tableau rows: the coefficients of all columns followed by the right-hand side; row r has a 1 in column basis[r] and a 0 in all other basic columns
+    private final List<double[]> rows = new ArrayList<>();
+    private final List<Integer> basis = new ArrayList<>();
+    // reduced costs of all columns w.r.t. the current basis
+    private double[] cost;
+    private LinearForm_LUDB objective = LinearForm_LUDB.createConstant(0);
+
+    public LpSession(int number_vars) {
+        this.number_vars = number_vars;
+        this.cost = new double[number_vars];
+    }
+
+    public int getNumberVars() {
+        return number_vars;
+    }
+
+    public boolean hasConstraint(LinearForm_LUDB constraint) {
+        return constraint_set.contains(constraint);
+    }
+
+    public List<LinearForm_LUDB> getConstraints() {
+        return new ArrayList<>(constraints);
+    }
+
+    private int getNumberColumns() {
+        return number_vars + constraints.size();
+    }
+
+    /**
+     * Adds the constraint (if it is not part of the LP yet) with its slack as basic variable.
+     * @param constraint
+     *              constraint(s) >= 0; must not hold vars with an id >= getNumberVars()
+     */
+    public void addConstraint(LinearForm_LUDB constraint) {
+        if (constraint_set.contains(constraint)) {
+            return;
+        }
+        if (constraint.getDimension() > number_vars) {
+            throw new IllegalArgumentException("Constraint holds vars beyond s_" + (number_vars - 1));
+        }
+        // new (zero) slack column in front of the right-hand side
+        int slack_col = getNumberColumns();
+        for (int r = 0; r < rows.size(); r++) {
+            double[] row = rows.get(r);
+            double[] extended = Arrays.copyOf(row, slack_col + 2);
+            extended[slack_col + 1] = row[slack_col];
+            extended[slack_col] = 0;
+            rows.set(r, extended);
+        }
+        cost = Arrays.copyOf(cost, slack_col + 1);
+        constraints.add(constraint);
+        constraint_set.add(constraint);
+
+        // slack - a * s = constant, expressed in terms of the current basis (subtract the rows of the basic vars)
+        double[] row = new double[slack_col + 2];
+        for (int j = 0; j < constraint.getDimension(); j++) {
+            row[j] = -constraint.getCoefficient(j);
+        }
+        row[slack_col] = 1;
+        row[slack_col + 1] = constraint.getConstant();
+        for (int r = 0; r < rows.size(); r++) {
+            double factor = row[basis.get(r)];
+            if (factor != 0) {
+                double[] basic_row = rows.get(r);
+                for (int j = 0; j < row.length; j++) {
+                    row[j] -= factor * basic_row[j];
+                }
+                row[basis.get(r)] = 0;
+            }
+        }
+        rows.add(row);
+        basis.add(slack_col);
+        // the reduced cost of the new (basic) slack is zero, all others are unchanged
+    }
+
+    /**
+     * Removes the constraint (if it is part of the LP). If its slack is nonbasic, it is pivoted into the basis first.
+     * @param constraint
+     *              the constraint to remove
+     */
+    public void removeConstraint(LinearForm_LUDB constraint) {
+        int index = constraints.indexOf(constraint);
+        if (index == -1) {
+            return;
+        }
+        int slack_col = number_vars + index;
+        int row_index = basis.indexOf(slack_col);
+        if (row_index == -1) {
+            double max_abs = EPS;
+            for (int r = 0; r < rows.size(); r++) {
+                if (Math.abs(rows.get(r)[slack_col]) > max_abs) {
+                    max_abs = Math.abs(rows.get(r)[slack_col]);
+                    row_index = r;
+                }
+            }
+            if (row_index != -1) {
+                pivot(row_index, slack_col);
+            }
+        }
+        if (row_index != -1) {
+            rows.remove(row_index);
+            basis.remove(row_index);
+        }
+        // remove the slack column
+        for (int r = 0; r < rows.size(); r++) {
+            rows.set(r, removeColumn(rows.get(r), slack_col));
+        }
+        cost = removeColumn(cost, slack_col);
+        for (int r = 0; r < basis.size(); r++) {
+            if (basis.get(r) > slack_col) {
+                basis.set(r, basis.get(r) - 1);
+            }
+        }
+        constraints.remove(index);
+        constraint_set.remove(constraint);
+    }
+
+    public void setObjective(LinearForm_LUDB objective) {
+        if (objective.getDimension() > number_vars) {
+            throw new IllegalArgumentException("Objective holds vars beyond s_" + (number_vars - 1));
+        }
+        this.objective = objective;
+        computeReducedCosts();
+    }
+
+    /**
+     * Re-optimizes from the current basis.
+     * @throws IllegalStateException in case the simplex cycles due to rounding (the session should be discarded then)
+     * @return the optimal objective (including its constant) and the optimal setting of every variable; (NaN, empty map) in case the
+     *         LP is infeasible or unbounded
+     */
+    public Pair<Double, Map<Integer, Double>> solve() {
+        if (!isDualFeasible()) {
+            // search a primal feasible basis first (every basis is dual feasible w.r.t. the zero objective)
+            cost = new double[getNumberColumns()];
+            boolean feasible = dualSimplex();
+            computeReducedCosts();
+            if (!feasible) {
+                return new Pair<>(Double.NaN, new HashMap<>());
+            }
+        } else if (!dualSimplex()) {
+            return new Pair<>(Double.NaN, new HashMap<>());
+        }
+        // optimal unless the basis was primal feasible (but not dual feasible) from the start
+        if (!primalSimplex()) {
+            return new Pair<>(Double.NaN, new HashMap<>());
+        }
+
+        double[] s = new double[number_vars];
+        int rhs_col = getNumberColumns();
+        for (int r = 0; r < rows.size(); r++) {
+            if (basis.get(r) < number_vars) {
+                s[basis.get(r)] = Math.max(rows.get(r)[rhs_col], 0);
+            }
+        }
+        double result = objective.getConstant();
+        Map<Integer, Double> opt_s_values = new HashMap<>();
+        for (int j = 0; j < number_vars; j++) {
+            result += objective.getCoefficient(j) * s[j];
+            opt_s_values.put(j, s[j]);
+        }
+        return new Pair<>(result, opt_s_values);
+    }
+
+    private void computeReducedCosts() {
+        int cols = getNumberColumns();
+        cost = new double[cols];
+        for (int j = 0; j < objective.getDimension(); j++) {
+            cost[j] = objective.getCoefficient(j);
+        }
+        for (int r = 0; r < rows.size(); r++) {
+            int basic = basis.get(r);
+            double c_basic = basic < number_vars ? objective.getCoefficient(basic) : 0;
+            if (c_basic != 0) {
+                double[] row = rows.get(r);
+                for (int j = 0; j < cols; j++) {
+                    cost[j] -= c_basic * row[j];
+                }
+            }
+        }
+    }
+
+    private boolean isDualFeasible() {
+        for (double reduced_cost : cost) {
+            if (reduced_cost < -EPS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Dual simplex with Bland's rule (leaving: smallest basic column with negative right-hand side; entering: minimal ratio, then smallest column).
+    // Returns false iff the LP is infeasible.
+    private boolean dualSimplex() {
+        int rhs_col = getNumberColumns();
+        for (int pivots = 0; ; pivots++) {
+            checkPivotLimit(pivots);
+            int leaving = -1;
+            for (int r = 0; r < rows.size(); r++) {
+                if (rows.get(r)[rhs_col] < -EPS && (leaving == -1 || basis.get(r) < basis.get(leaving))) {
+                    leaving = r;
+                }
+            }
+            if (leaving == -1) {
+                return true;
+            }
+            double[] row = rows.get(leaving);
+            int entering = -1;
+            double min_ratio = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < rhs_col; j++) {
+                if (row[j] < -EPS) {
+                    double ratio = Math.max(cost[j], 0) / -row[j];
+                    if (ratio < min_ratio - EPS) {
+                        min_ratio = ratio;
+                        entering = j;
+                    }
+                }
+            }
+            if (entering == -1) {
+                return false;
+            }
+            pivot(leaving, entering);
+        }
+    }
+
+    // Primal simplex with Bland's rule, the basis has to be primal feasible. Returns false iff the LP is unbounded.
+    private boolean primalSimplex() {
+        int rhs_col = getNumberColumns();
+        for (int pivots = 0; ; pivots++) {
+            checkPivotLimit(pivots);
+            int entering = -1;
+            for (int j = 0; j < rhs_col; j++) {
+                if (cost[j] < -EPS) {
+                    entering = j;
+                    break;
+                }
+            }
+            if (entering == -1) {
+                return true;
+            }
+            int leaving = -1;
+            double min_ratio = Double.POSITIVE_INFINITY;
+            for (int r = 0; r < rows.size(); r++) {
+                double a = rows.get(r)[entering];
+                if (a > EPS) {
+                    double ratio = Math.max(rows.get(r)[rhs_col], 0) / a;
+                    if (ratio < min_ratio - EPS || (ratio <= min_ratio + EPS && (leaving == -1 || basis.get(r) < basis.get(leaving)))) {
+                        min_ratio = Math.min(ratio, min_ratio);
+                        leaving = r;
+                    }
+                }
+            }
+            if (leaving == -1) {
+                return false;
+            }
+            pivot(leaving, entering);
+        }
+    }
+
+    private void checkPivotLimit(int pivots) {
+        if (pivots > MAX_PIVOTS_PER_COLUMN * (getNumberColumns() + 1)) {
+            throw new IllegalStateException("Simplex does not terminate (cycling)");
+        }
+    }
+
+    private void pivot(int row_index, int col) {
+        double[] pivot_row = rows.get(row_index);
+        double p = pivot_row[col];
+        for (int j = 0; j < pivot_row.length; j++) {
+            pivot_row[j] /= p;
+        }
+        pivot_row[col] = 1;
+        for (int r = 0; r < rows.size(); r++) {
+            if (r != row_index) {
+                eliminate(rows.get(r), pivot_row, col);
+            }
+        }
+        eliminate(cost, pivot_row, col);
+        basis.set(row_index, col);
+    }
+
+    private static void eliminate(double[] row, double[] pivot_row, int col) {
+        double factor = row[col];
+        if (factor != 0) {
+            // the cost row has no right-hand side
+            int length = Math.min(row.length, pivot_row.length);
+            for (int j = 0; j < length; j++) {
+                row[j] -= factor * pivot_row[j];
+            }
+            row[col] = 0;
+        }
+    }
+
+    private static double[] removeColumn(double[] row, int col) {
+        double[] result = new double[row.length - 1];
+        System.arraycopy(row, 0, result, 0, col);
+        System.arraycopy(row, col + 1, result, col, row.length - col - 1);
+        return result;
+    }
+}
@@ -0,0 +1,27 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Lukas Herll
+ *
+ * Solves the LPs of the LUDB analysis. All linear forms are given as flattened by Expression_LUDB.
+ * The variables s_i are the FIFO parameters and are all >= 0.
+ */
+public interface LpSolver {
+
+    /**
+     * @param objective
+     *              the linear form to minimize
+     * @param constraints
+     *              each constraint c stands for c(s) >= 0
+     * @param number_vars
+     *              the number of variables s_0, ..., s_(number_vars - 1)
+     * @return the optimal objective (including its constant) and the optimal setting of every variable; (NaN, empty map)
+     *         in case the LP is infeasible (or unbounded)
+     */
+    Pair<Double, Map<Integer, Double>> solve(LinearForm_LUDB objective, List<LinearForm_LUDB> constraints, int number_vars) throws Exception;
+}
@@ -0,0 +1,138 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+import org.networkcalculus.dnc.AnalysisConfig;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * Writes every LP to a file in AnalysisConfig.path_to_lp_dir (cplex lp format) and solves it by starting
+ * ./cplex in AnalysisConfig.path_to_cplex.
+ */
+public class LpSolverCplex implements LpSolver {
+    private static int fileId = 0;
+    private static final boolean keepLPsOnDrive = false;
+
+    private static synchronized int next_file_id() {
+        fileId++;
+        return fileId;
+    }
+
+    @Override
+    public Pair<Double, Map<Integer, Double>> solve(LinearForm_LUDB objective, List<LinearForm_LUDB> constraints, int number_vars) throws Exception {
+        int id = next_file_id();
+        File file_lp = new File(AnalysisConfig.path_to_lp_dir + "lp_" + id);
+        Writer w_lp = new OutputStreamWriter(new FileOutputStream(file_lp), StandardCharsets.UTF_8);
+        PrintWriter pw_lp = new PrintWriter(w_lp);
+        pw_lp.println("Minimize");
+
+        StringBuffer delay_str_buffer = new StringBuffer();
+        for (int var_id = 0; var_id < objective.getDimension(); var_id++) {
+            if (objective.getCoefficient(var_id) != 0) {
+                appendTerm(delay_str_buffer, objective.getCoefficient(var_id), " s_" + var_id);
+            }
+        }
+        // costant term has to come last in the lp format...
+        appendTerm(delay_str_buffer, objective.getConstant(), "");
+
+        pw_lp.println(delay_str_buffer.toString());
+        pw_lp.println("Subject To");
+
+        // We have to adhere to the cplex lp file format restrictions:
+        // * The left-side of the inequality is not allowed to hold constant(s) => put the constant to the right-side (swap algebraic sign)
+        // * In case a constraint only holds a constant, we use the pseudo-variable c_0 which represents 0 and put it on the left side -- for this we will add 0 <= c_0 <= 0 to the bounds section
+        // in the end (even if we do not use it -- cplex just gives a warning in that case which we then simply ignore)
+        for (LinearForm_LUDB constraint : constraints) {
+            StringBuffer constraint_str_buffer = new StringBuffer();
+            for (int var_id = 0; var_id < constraint.getDimension(); var_id++) {
+                if (constraint.getCoefficient(var_id) != 0) {
+                    appendTerm(constraint_str_buffer, constraint.getCoefficient(var_id), " s_" + var_id);
+                }
+            }
+            if (constraint_str_buffer.length() == 0) {
+                constraint_str_buffer.append("c_0");
+            }
+            constraint_str_buffer.append(" >= " + (0 - constraint.getConstant()));
+            pw_lp.println(constraint_str_buffer.toString());
+        }
+
+        pw_lp.println("Bounds");
+        pw_lp.println("0 <= c_0 <= 0");
+        pw_lp.println("End");
+        pw_lp.flush();
+        pw_lp.close();
+
+        ProcessBuilder pb_cplex = new ProcessBuilder("./cplex", "-c", "read", AnalysisConfig.path_to_lp_dir + "lp_" + id, "lp", "optimize", "Display solution variables -", "quit");
+        pb_cplex.directory(new File(AnalysisConfig.path_to_cplex));
+
+        Process process_cplex = pb_cplex.start();
+        InputStream terminal_output_cplex = process_cplex.getInputStream();
+
+        Pair<Double, Map<Integer, Double>> result_cplex_pair = cplexDelayAndVarOpt(terminal_output_cplex, number_vars);
+
+        if (!keepLPsOnDrive) {
+            file_lp.delete();
+        }
+        return result_cplex_pair;
+    }
+
+    // appends " + coeff name" or " - |coeff| name" (without the leading " + " for the first term)
+    private static void appendTerm(StringBuffer buffer, double coeff, String name) {
+        if (coeff >= 0) {
+            buffer.append((buffer.length() == 0 ? "" : " + ") + coeff + name);
+        } else {
+            buffer.append((buffer.length() == 0 ? "- " : " - ") + (-coeff) + name);
+        }
+    }
+
+    private static Pair<Double, Map<Integer, Double>> cplexDelayAndVarOpt(InputStream inputStream, int number_vars) throws IOException {
+        BufferedReader br = null;
+
+        Double result = Double.NaN;
+
+        Map<Integer, Double>opt_s_values = new HashMap<>();
+        br = new BufferedReader(new InputStreamReader(inputStream));
+        String line = null;
+        while ((line = br.readLine()) != null) {
+            if (line.contains("Infeasible")) {
+                break;
+            }
+
+            if (line.contains("Objective = ")) {
+                try {
+                    result = Double.parseDouble(line.substring(line.indexOf("Objective =") + 12));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    result = Double.NaN;
+                }
+            }
+            if (line.startsWith("s_")) {
+                String[] splited = line.split("\\s+");
+                String var_name = splited[0];
+                String[] var_name_splitted = var_name.split("s_");
+                int var_id = Integer.parseInt(var_name_splitted[1]);
+                Double var_value_opt = Double.parseDouble(splited[1]);
+                opt_s_values.put(var_id, var_value_opt);
+            }
+        }
+        if(opt_s_values.size() != number_vars && !result.equals(Double.NaN))
+        {
+            // have to set some vars specifically to zero (cplex outputs with "Display solution variables -" the vars with their optimal setting if
+            // that setting is != 0; it justs outputs that all the other vars are set to 0)
+            for(int i = 0; i < number_vars; i++)
+            {
+                if(!opt_s_values.containsKey(i))
+                {
+                    // have to explicitly list s_i* = 0
+                    opt_s_values.put(i, 0.0);
+                }
+            }
+        }
+        // else{  // all vars found or infeasible: nothing to do }
+        return new Pair<>(result, opt_s_values);
+    }
+}
@@ -0,0 +1,213 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * In-process two-phase simplex (dense tableau, Bland's rule) for the LPs of the LUDB analysis.
+ * No files are written and no process is started, hence no cplex installation is required.
+ */
+public class LpSolverSimplex implements LpSolver {
+    private static final double EPS = 1e-9;
+
+    @Override
+    public Pair<Double, Map<Integer, Double>> solve(LinearForm_LUDB objective, List<LinearForm_LUDB> constraints, int number_vars) {
+        int n = Math.max(number_vars, objective.getDimension());
+        for (LinearForm_LUDB constraint : constraints) {
+            n = Math.max(n, constraint.getDimension());
+        }
+
+        // Rows: a * s - e_i = b (with b = -constant), multiplied by -1 if b < 0 (then e_i is a feasible basic variable, otherwise an artificial one is added)
+        List<double[]> rows = new ArrayList<>();
+        List<Double> rhs = new ArrayList<>();
+        for (LinearForm_LUDB constraint : constraints) {
+            double b = -constraint.getConstant();
+            if (constraint.isConstant()) {
+                if (b > 0) {
+                    // 0 >= b is violated
+                    return infeasible();
+                }
+                continue;
+            }
+            double[] a = new double[n];
+            for (int j = 0; j < constraint.getDimension(); j++) {
+                a[j] = constraint.getCoefficient(j);
+            }
+            rows.add(a);
+            rhs.add(b);
+        }
+
+        int m = rows.size();
+        int no_artificials = 0;
+        for (double b : rhs) {
+            if (b >= 0) {
+                no_artificials++;
+            }
+        }
+        int first_artificial = n + m;
+        int cols = n + m + no_artificials;
+        // the last row holds the reduced costs, the last column the right-hand side
+        double[][] tableau = new double[m + 1][cols + 1];
+        int[] basis = new int[m];
+
+        int next_artificial = first_artificial;
+        for (int i = 0; i < m; i++) {
+            double sign = rhs.get(i) >= 0 ? 1 : -1;
+            double[] a = rows.get(i);
+            for (int j = 0; j < n; j++) {
+                tableau[i][j] = sign * a[j];
+            }
+            tableau[i][n + i] = -sign;
+            tableau[i][cols] = sign * rhs.get(i);
+            if (sign > 0) {
+                tableau[i][next_artificial] = 1;
+                basis[i] = next_artificial;
+                next_artificial++;
+            } else {
+                basis[i] = n + i;
+            }
+        }
+
+        // Phase 1: minimize the sum of the artificial variables
+        double[] cost = tableau[m];
+        for (int i = 0; i < m; i++) {
+            if (basis[i] >= first_artificial) {
+                for (int j = 0; j <= cols; j++) {
+                    cost[j] -= tableau[i][j];
+                }
+                cost[basis[i]] = 0;
+            }
+        }
+        double scale = 1;
+        for (double b : rhs) {
+            scale += Math.abs(b);
+        }
+        if (no_artificials > 0) {
+            iterate(tableau, basis, cols, cols);
+            if (-cost[cols] > EPS * scale) {
+                return infeasible();
+            }
+            // drive the remaining (zero-valued) artificial variables out of the basis; a row without any other candidate is redundant
+            for (int i = 0; i < m; i++) {
+                if (basis[i] >= first_artificial) {
+                    for (int j = 0; j < first_artificial; j++) {
+                        if (Math.abs(tableau[i][j]) > EPS) {
+                            pivot(tableau, basis, i, j);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Phase 2: minimize the objective, the artificial variables must not enter the basis again
+        double[] c = new double[n];
+        for (int j = 0; j < objective.getDimension(); j++) {
+            c[j] = objective.getCoefficient(j);
+        }
+        Arrays.fill(cost, 0);
+        System.arraycopy(c, 0, cost, 0, n);
+        for (int i = 0; i < m; i++) {
+            if (basis[i] < n && c[basis[i]] != 0) {
+                double c_basic = c[basis[i]];
+                for (int j = 0; j <= cols; j++) {
+                    cost[j] -= c_basic * tableau[i][j];
+                }
+            }
+        }
+        if (!iterate(tableau, basis, cols, first_artificial)) {
+            // unbounded
+            return infeasible();
+        }
+
+        double[] s = new double[n];
+        for (int i = 0; i < m; i++) {
+            if (basis[i] < n) {
+                s[basis[i]] = tableau[i][cols];
+            }
+        }
+        double result = objective.getConstant();
+        for (int j = 0; j < n; j++) {
+            result += c[j] * s[j];
+        }
+        Map<Integer, Double> opt_s_values = new HashMap<>();
+        for (int j = 0; j < n; j++) {
+            opt_s_values.put(j, s[j]);
+        }
+        return new Pair<>(result, opt_s_values);
+    }
+
+    /**
+     * Pivots until no reduced cost is negative (Bland's rule: smallest entering and leaving index).
+     * @param tableau
+     *              the tableau, its last row holds the reduced costs
+     * @param basis
+     *              the basic variable of each row
+     * @param rhs_col
+     *              the column of the right-hand side
+     * @param allowed_cols
+     *              only the columns 0, ..., allowed_cols - 1 may enter the basis
+     * @return false iff the LP is unbounded
+     */
+    private static boolean iterate(double[][] tableau, int[] basis, int rhs_col, int allowed_cols) {
+        int m = basis.length;
+        double[] cost = tableau[m];
+        while (true) {
+            int entering = -1;
+            for (int j = 0; j < allowed_cols; j++) {
+                if (cost[j] < -EPS) {
+                    entering = j;
+                    break;
+                }
+            }
+            if (entering == -1) {
+                return true;
+            }
+            int leaving = -1;
+            double min_ratio = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < m; i++) {
+                double a = tableau[i][entering];
+                if (a > EPS) {
+                    double ratio = tableau[i][rhs_col] / a;
+                    if (ratio < min_ratio - EPS || (ratio <= min_ratio + EPS && (leaving == -1 || basis[i] < basis[leaving]))) {
+                        min_ratio = Math.min(ratio, min_ratio);
+                        leaving = i;
+                    }
+                }
+            }
+            if (leaving == -1) {
+                return false;
+            }
+            pivot(tableau, basis, leaving, entering);
+        }
+    }
+
+    private static void pivot(double[][] tableau, int[] basis, int row, int col) {
+        double[] pivot_row = tableau[row];
+        double p = pivot_row[col];
+        for (int j = 0; j < pivot_row.length; j++) {
+            pivot_row[j] /= p;
+        }
+        pivot_row[col] = 1;
+        for (int i = 0; i < tableau.length; i++) {
+            if (i != row) {
+                double factor = tableau[i][col];
+                if (factor != 0) {
+                    double[] r = tableau[i];
+                    for (int j = 0; j < r.length; j++) {
+                        r[j] -= factor * pivot_row[j];
+                    }
+                    r[col] = 0;
+                }
+            }
+        }
+        basis[row] = col;
+    }
+
+    private static Pair<Double, Map<Integer, Double>> infeasible() {
+        return new Pair<>(Double.NaN, new HashMap<>());
+    }
+}
@@ -0,0 +1,93 @@
+package org.networkcalculus.dnc.tandem.fifo.LUDBOPT;
+
+import org.apache.commons.math3.util.Pair;
+
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * Solves every LP by updating the LpSession of the previous LP (of the same thread): only the constraints that differ are removed and
+ * added and the session re-optimizes from the previous basis. Consecutive LPs of the LUDB search mostly differ in the constraints of
+ * a single crossflow's decomposition, hence a few pivots usually suffice.
+ * In case the result does not satisfy the constraints (rounding), the LP is solved from scratch by the fallback solver.
+ */
+public class LpSolverWarmStart implements LpSolver {
+    private static final double FEASIBILITY_TOLERANCE = 1e-6;
+    private static final int SOLVES_PER_SESSION = 1000; // start with a fresh tableau from time to time (rounding errors accumulate)
+
+    private final LpSolver fallback_solver = new LpSolverSimplex();
+    private final ThreadLocal<LpSession> sessions = new ThreadLocal<>();
+    private final ThreadLocal<int[]> solves = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public Pair<Double, Map<Integer, Double>> solve(LinearForm_LUDB objective, List<LinearForm_LUDB> constraints, int number_vars) throws Exception {
+        int n = Math.max(number_vars, objective.getDimension());
+        Set<LinearForm_LUDB> lp_constraints = new LinkedHashSet<>();
+        for (LinearForm_LUDB constraint : constraints) {
+            if (constraint.isConstant()) {
+                if (constraint.getConstant() < 0) {
+                    // 0 >= -constant is violated
+                    return new Pair<>(Double.NaN, new HashMap<>());
+                }
+                continue;
+            }
+            n = Math.max(n, constraint.getDimension());
+            lp_constraints.add(constraint);
+        }
+
+        LpSession session = sessions.get();
+        int[] solves_of_session = solves.get();
+        if (session != null) {
+            List<LinearForm_LUDB> obsolete_constraints = session.getConstraints();
+            obsolete_constraints.removeAll(lp_constraints);
+            // removing is more expensive than adding: start from scratch in case only a small part is kept
+            if (session.getNumberVars() != n || obsolete_constraints.size() > lp_constraints.size() || solves_of_session[0] >= SOLVES_PER_SESSION) {
+                session = null;
+            } else {
+                for (LinearForm_LUDB constraint : obsolete_constraints) {
+                    session.removeConstraint(constraint);
+                }
+            }
+        }
+        if (session == null) {
+            session = new LpSession(n);
+            sessions.set(session);
+            solves_of_session[0] = 0;
+        }
+        for (LinearForm_LUDB constraint : lp_constraints) {
+            session.addConstraint(constraint);
+        }
+        session.setObjective(objective);
+        solves_of_session[0]++;
+
+        Pair<Double, Map<Integer, Double>> result;
+        try {
+            result = session.solve();
+        } catch (IllegalStateException e) {
+            sessions.remove();
+            return fallback_solver.solve(objective, constraints, number_vars);
+        }
+        if (!result.getFirst().isNaN() && !isFeasible(result.getSecond(), lp_constraints)) {
+            sessions.remove();
+            return fallback_solver.solve(objective, constraints, number_vars);
+        }
+        return result;
+    }
+
+    private static boolean isFeasible(Map<Integer, Double> s_values, Set<LinearForm_LUDB> constraints) {
+        for (LinearForm_LUDB constraint : constraints) {
+            double value = constraint.getConstant();
+            double scale = 1 + Math.abs(value);
+            for (int j = 0; j < constraint.getDimension(); j++) {
+                double term = constraint.getCoefficient(j) * s_values.get(j);
+                value += term;
+                scale += Math.abs(term);
+            }
+            if (value < -FEASIBILITY_TOLERANCE * scale) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
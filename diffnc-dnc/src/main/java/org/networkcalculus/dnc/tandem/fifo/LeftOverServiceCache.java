@@ -0,0 +1,159 @@
+package org.networkcalculus.dnc.tandem.fifo;
+
+import org.networkcalculus.dnc.curves.ServiceCurve;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Path;
+import org.networkcalculus.dnc.network.server_graph.Server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Lukas Herll
+ *
+ * Caches the left-over service curves computed by NestedTandemAnalysis.getServiceCurve. Two nested tandems share their
+ * left-over service curve iff they have the same signature (see Signature), which only consists of the service curves
+ * of the servers, the path intervals and arrival curves of the flows, and the analysis settings. Aliases and ids are
+ * not part of the signature, i.e., the same sub-tandem is recognised even if it is built from other substitute flows,
+ * from other servers with the same service curves, or in another instance of the network.
+ *
+ * Besides the service curve, an entry holds the parameter setting (s-values of LUDB_FF and DIFF_LUDB) the curve was
+ * computed with, in the canonical order of the crossflows (see Signature). The cache is thread-safe.
+ */
+public class LeftOverServiceCache {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    //statistics
+    private int hits;
+    private int misses;
+
+    /**
+     * The left-over service curve of a nested tandem and the parameters it was computed with.
+     */
+    static class Entry {
+        private final ServiceCurve serviceCurve;
+        //parameter of the i-th crossflow in canonical order; null if the analysis mode has no such parameters
+        private final double[] parameters;
+
+        Entry(ServiceCurve serviceCurve, double[] parameters){
+            this.serviceCurve = serviceCurve.copy();
+            this.parameters = parameters == null ? null : parameters.clone();
+        }
+
+        ServiceCurve getServiceCurve(){
+            return serviceCurve.copy();
+        }
+
+        double[] getParameters(){
+            return parameters == null ? null : parameters.clone();
+        }
+    }
+
+    /**
+     * The canonical signature of a nested tandem: the analysis settings, the service curves of the servers on the path,
+     * the flow of interest's arrival curve, and the path interval (indices of the first and last server on the tandem's
+     * path) and arrival curve of every crossflow. The crossflows are sorted by their interval and arrival curve; this
+     * canonical order is kept in getCrossflows.
+     */
+    static class Signature {
+        private final String key;
+        private final List<Flow> crossflows;
+
+        Signature(AnalysisContext context, Path path, Flow foi, Set<Flow> flows){
+            List<Server> servers = path.getServers();
+            List<Flow> crossflows = new ArrayList<>();
+            Map<Flow, String> descriptions = new HashMap<>();
+            for(Flow flow : flows){
+                if(!flow.equals(foi)){
+                    crossflows.add(flow);
+                    descriptions.put(flow, "[" + servers.indexOf(flow.getPath().getSource()) + ","
+                            + servers.indexOf(flow.getPath().getSink()) + "]" + flow.getArrivalCurve());
+                }
+            }
+            crossflows.sort(Comparator.comparing(descriptions::get));
+
+            StringBuilder key = new StringBuilder(context.getSettingsSignature());
+            key.append("|S");
+            for(Server server : servers){
+                key.append(server.getServiceCurve()).append(';');
+            }
+            key.append("|F").append(foi.getArrivalCurve());
+            for(Flow crossflow : crossflows){
+                key.append('|').append(descriptions.get(crossflow));
+            }
+            this.key = key.toString();
+            this.crossflows = crossflows;
+        }
+
+        String getKey(){
+            return key;
+        }
+
+        List<Flow> getCrossflows(){
+            return crossflows;
+        }
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param signature
+     *                      the signature of a nested tandem
+     * @return  the cached left-over service curve and parameters; null if there are none
+     */
+    Entry get(Signature signature){
+        Entry entry = entries.get(signature.getKey());
+        synchronized (this){
+            if(entry != null){
+                hits++;
+            }
+            else{
+                misses++;
+            }
+        }
+        return entry;
+    }
+
+
+    void put(Signature signature, Entry entry){
+        entries.putIfAbsent(signature.getKey(), entry);
+    }
+
+
+    /**
+     * Removes all cached service curves (the statistics are kept).
+     */
+    public void clear(){
+        entries.clear();
+    }
+
+
+    public synchronized int getHits(){
+        return hits;
+    }
+
+    public synchronized int getMisses(){
+        return misses;
+    }
+
+    /**
+     * @return  the share of the lookups that found a cached service curve (0 if there was no lookup yet)
+     */
+    public synchronized double getHitRate(){
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public int size(){
+        return entries.size();
+    }
+}
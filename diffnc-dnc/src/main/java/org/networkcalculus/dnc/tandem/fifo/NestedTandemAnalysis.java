@@ -1,6 +1,8 @@
 package org.networkcalculus.dnc.tandem.fifo;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.math3.util.Pair;
 import org.networkcalculus.dnc.AnalysisConfig;
@@ -39,7 +41,7 @@ public class NestedTandemAnalysis {
     // represents the nesting tree of the given non-nested tandem
     private TNode nestingTree;
 
-    private static boolean compute_flows_without_foi_ordered = false; // don't change
+    private boolean compute_flows_without_foi_ordered = false; // don't change
 
     private static final boolean flows_without_foi_ordered_tree = true; // don't change, same order as bottom up call order in tree (like in the construction of the nesting tree)
 
@@ -53,12 +55,14 @@ public class NestedTandemAnalysis {
          LUDB_FF, LB_FF, DS_FF, GS, DIFF_LUDB
     }
 
-    public static mode selected_mode;
+    // per-analysis settings and book-keeping (selected mode, DiffLUDB settings, aggregated times)
+    private final AnalysisContext context;
 
     /////////////////// /////////////////// /////// LUDB_FF
     private final ArrayList<Flow> crossflowList = new ArrayList(); // mapping of id to Flow for LP computation (LUDB) (index coincides with id)
     private double curr_min_delay_ludb; // for the on the run version (i.e. the one that does not compute all decompositions a priori)
     private Map<Integer, Double> curr_best_s_setting; //  curr_lb + s <=> theta (note that s >= 0!) [s from LUDB paper fifo l.o. theorem, theta is free parameter in the general fifo left over theorem]
+    private List<Integer> curr_best_ludb_selection; // parallel version: the selected max of every crossflow and the foi leading to curr_min_delay_ludb (ties are broken like in the sequential search order)
     /////////////////// /////////////////// ///////
 
     private Map<Flow, Num> lb_thetas_global_min_so_far;
@@ -79,28 +83,8 @@ public class NestedTandemAnalysis {
     public static Num granularity = Num.getUtils(Calculator.getInstance().getNumBackend()).create(3); // "how" many theta-values get considered per theta
 
     /////////////////// /////////////////// /////// DiffLUDB
-    public static int networkID; //for printing
-    public static int subNetwork;
-    public static int networkFoi; //for more readable console output
-    // if set to false, only occurring errors will be printed to console (no results etc. Results will still be written to files)
-    public static boolean printToConsole;
-
-    //if this flag is set, then no meaningful delay bound analysis is carried out. Instead, every tandem's objective function
-    //is tested for convexity
-    public static boolean onlyTestConvexity = false;
-    public static int noOfNonConvexTandems;
-    public static int noOfConvexTandems;
-
-    //decide whether to compute lb_thetas_safe and use them as the initial parameter values
-    public static boolean approximateInitialThetas;
-    //static variables to keep track of the aggregated time to derive the objective function from the nesting tree and
-    //the time to solve the NLP (aggregated over all sub-tandems of one network)
-    public static long aggrTimeToCmputeNestingSetsInNS;
-    public static long aggrTimeToFindInitialThetasInNS;
-    public static long aggrTimeToDeriveObjFuncInNS;
-    public static long aggrTimeToStartSolverInNS;
-    public static long aggrTimeToSolveNLPInNS;
-    public static long aggrTimeToComputeServiceCurveInNS;
+    // DiffLUDB settings (approximateInitialThetas, onlyTestConvexity, printToConsole) and the aggregated time
+    // measurements are kept in the AnalysisContext so that several flows can be analysed concurrently
 
 
     public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, List<Flow> flows) {
@@ -111,11 +95,20 @@ public class NestedTandemAnalysis {
         this(tandem, flow_of_interest, flows, new AnalysisConfig());
     }
 
+    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, List<Flow> flows, AnalysisConfig config) {
+        this(tandem, flow_of_interest, flows, config, new AnalysisContext());
+    }
+
+    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, Set<Flow> flows, AnalysisConfig config) {
+        this(tandem, flow_of_interest, flows, config, new AnalysisContext());
+    }
+
     // AnalysisConfig global FIFO necessary
     // Network needs to be a tandem
     // flows need to include flow_of_interest
     // path must be a nested tandem
-    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, List<Flow> flows, AnalysisConfig config) {
+    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, List<Flow> flows, AnalysisConfig config, AnalysisContext context) {
+        this.context = context;
         this.foi_path = tandem;
         foi = flow_of_interest;
         this.flows = new HashSet<Flow>(flows);
@@ -133,7 +126,8 @@ public class NestedTandemAnalysis {
 
     // flows need to include flow_of_interest
     // path must be a nested tandem
-    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, Set<Flow> flows, AnalysisConfig config) {
+    public NestedTandemAnalysis(Path tandem, Flow flow_of_interest, Set<Flow> flows, AnalysisConfig config, AnalysisContext context) {
+        this.context = context;
         this.foi_path = tandem;
         foi = flow_of_interest;
         this.flows = flows;
@@ -158,7 +152,34 @@ public class NestedTandemAnalysis {
         computeNestingSets();
         createNestingTreeOrdered();
 
-        switch (selected_mode) {
+        // In the convexity test every sub-tandem has to be analysed (and counted), hence no caching
+        LeftOverServiceCache cache = context.isOnlyTestConvexity() ? null : context.getLeftOverServiceCache();
+        PersistentSubTandemStore store = context.isOnlyTestConvexity() ? null : context.getSubTandemStore();
+        LeftOverServiceCache.Signature signature = null;
+        if (cache != null || store != null) {
+            signature = new LeftOverServiceCache.Signature(context, foi_path, foi, flows);
+            LeftOverServiceCache.Entry entry = cache == null ? null : cache.get(signature);
+            if (entry == null && store != null) {
+                // solved in a previous run
+                PersistentSubTandemStore.Record record = store.get(signature.getKey());
+                ServiceCurve stored_sc = record == null ? null : parseStoredServiceCurve(record);
+                if (stored_sc != null) {
+                    entry = new LeftOverServiceCache.Entry(stored_sc, record.getParameters());
+                    if (cache != null) {
+                        cache.put(signature, entry);
+                    }
+                }
+            }
+            if (entry != null) {
+                // not analysed, hence not counted as sub-network (nextSubNetwork) and without times of its own
+                context.incrementCachedSubTandems();
+                e2e = entry.getServiceCurve();
+                setCanonicalSSetting(signature, entry.getParameters());
+                return e2e;
+            }
+        }
+
+        switch (context.getSelectedMode()) {
 
             case LB_FF:
                 computeServiceCurve_LB_FF();
@@ -179,9 +200,72 @@ public class NestedTandemAnalysis {
             case DIFF_LUDB:
                 computeDiffLUDB();
         }
+
+        if (signature != null && e2e != null) {
+            double[] s_setting = getCanonicalSSetting(signature);
+            if (cache != null) {
+                cache.put(signature, new LeftOverServiceCache.Entry(e2e, s_setting));
+            }
+            if (store != null) {
+                double delay = Calculator.getInstance().getDncBackend().getBounds().delayFIFO(foi.getArrivalCurve(), e2e).doubleValue();
+                store.put(signature.getKey(), new PersistentSubTandemStore.Record(delay, s_setting, e2e.toString()));
+            }
+        }
         return e2e;
     }
 
+    // The service curve of a stored sub-tandem; null (i.e. the sub-tandem is analysed again) if the curve cannot be parsed or
+    // does not yield the stored delay bound
+    private ServiceCurve parseStoredServiceCurve(PersistentSubTandemStore.Record record) {
+        try {
+            ServiceCurve service_curve = Curve.getFactory().createServiceCurve(record.getServiceCurve());
+            double delay = Calculator.getInstance().getDncBackend().getBounds().delayFIFO(foi.getArrivalCurve(), service_curve).doubleValue();
+            if (record.isConsistent(delay)) {
+                return service_curve;
+            }
+        } catch (Exception e) {
+            // corrupt record
+        }
+        if (context.isPrintToConsole()) {
+            System.out.println("Discarded an inconsistent record of the persistent sub-tandem store (network " + context.getNetworkID()
+                    + ", foi " + context.getNetworkFoi() + ")");
+        }
+        return null;
+    }
+
+    // The s-values of LUDB_FF/DIFF_LUDB in the canonical crossflow order of the signature (null if there are none)
+    private double[] getCanonicalSSetting(LeftOverServiceCache.Signature signature) {
+        if (curr_best_s_setting == null) {
+            return null;
+        }
+        List<Flow> canonical_crossflows = signature.getCrossflows();
+        double[] s_setting = new double[canonical_crossflows.size()];
+        for (int i = 0; i < s_setting.length; i++) {
+            Double s = curr_best_s_setting.get(crossflowList.indexOf(canonical_crossflows.get(i)));
+            if (s == null) {
+                return null;
+            }
+            s_setting[i] = s;
+        }
+        return s_setting;
+    }
+
+    // Counterpart of getCanonicalSSetting: maps the cached s-values to the crossflows of this tandem (ids as in computeDiffLUDB)
+    private void setCanonicalSSetting(LeftOverServiceCache.Signature signature, double[] s_setting) {
+        if (s_setting == null) {
+            return;
+        }
+        List<Flow> canonical_crossflows = signature.getCrossflows();
+        crossflowList.clear();
+        curr_best_s_setting = new HashMap<>();
+        for (Flow flow : flows) {
+            if (!flow.equals(foi)) {
+                crossflowList.add(flow);
+                curr_best_s_setting.put(crossflowList.size() - 1, s_setting[canonical_crossflows.indexOf(flow)]);
+            }
+        }
+    }
+
 
     /**
      * Analyses the given nested tandem using a Diff NC analysis. Makes use of a binary operator tree to derive a symbolic
@@ -196,16 +280,39 @@ public class NestedTandemAnalysis {
 
         //run an OpTreeAnalysis using a binary operator tree to derive a symbolic term for the delay bound and an NLP solver
         //to find the optimal parameter settings
-        OpTreeAnalysis opTreeAnalysis = new OpTreeAnalysis(nestingTree);
-        OpTreeAnalysis.printToConsole = printToConsole;
+        OpTreeAnalysis opTreeAnalysis = new OpTreeAnalysis(nestingTree, context);
 
         //compute lower bounds for the open parameters to speed up the solver time
-        if(approximateInitialThetas){
+        if(context.isApproximateInitialThetas()){
             computeSafeBoundsLb();
         }
+        //bound the open parameters above to shrink the box the solver searches (the LB_FF/DS_FF pass leaves the state of
+        //this analysis untouched, its time counts as time to find the initial thetas)
+        Map<Flow, Num> ub_s = null;
+        if(context.getParameterBoundsMode() != null && !context.isOnlyTestConvexity()){
+            ub_s = computeParameterUpperBounds(context.getParameterBoundsMode());
+        }
+        //start from the s-values of the nearest sub-tandem solved before (if any)
+        WarmStartProvider warmStartProvider = context.isOnlyTestConvexity() ? null : context.getWarmStartProvider();
+        WarmStartProvider.Problem warmStartProblem = null;
+        Map<Flow, Num> warmStart = null;
+        if(warmStartProvider != null){
+            warmStartProblem = new WarmStartProvider.Problem(context, foi_path, foi, flows);
+            double[] s_guess = warmStartProvider.getInitialGuess(warmStartProblem);
+            if(s_guess != null){
+                warmStart = new HashMap<>();
+                List<Flow> crossflows = warmStartProblem.getCrossflows();
+                for(int i = 0; i < s_guess.length; i++){
+                    //the crossflows without counterpart start at s = 0, no s-value is negative (the s-values are
+                    //no thetas, hence lb_thetas_safe does not bound them)
+                    double s = Double.isNaN(s_guess[i]) ? 0 : Math.max(s_guess[i], 0);
+                    warmStart.put(crossflows.get(i), Num.getUtils(Calculator.getInstance().getNumBackend()).create(s));
+                }
+            }
+        }
         //take another timestamp
         long timestampInitialThetas = System.nanoTime();
-        aggrTimeToFindInitialThetasInNS += timestampInitialThetas - timestampNestingTree;
+        context.addTimeToFindInitialThetas(timestampInitialThetas - timestampNestingTree);
 
 
         //for the NLP solver, the flow's aliases must be unique => change them
@@ -214,35 +321,44 @@ public class NestedTandemAnalysis {
             flow.setAlias(flow.getAlias().split("_")[0] + "_" + startAliasID++);
         }
 
-        if(printToConsole){
-            System.out.println("Analysing network " + networkID + " (foi: " + networkFoi + ")" + " subnetwork " + subNetwork + " (foi: " + foi.getAlias() + ")");
+        int subNetwork = context.nextSubNetwork();
+        if(context.isPrintToConsole()){
+            System.out.println("Analysing network " + context.getNetworkID() + " (foi: " + context.getNetworkFoi() + ")" + " subnetwork " + subNetwork + " (foi: " + foi.getAlias() + ")");
         }
 
-        if(onlyTestConvexity){
+        if(ub_s != null){
+            opTreeAnalysis.setParameterUpperBounds(ub_s);
+        }
+
+        if(context.isOnlyTestConvexity()){
             if(opTreeAnalysis.runConvexityAnalysis(new DiffLUDBPlugin())){
-                noOfConvexTandems++;
+                context.incrementConvexTandems();
             }
             else{
-                noOfNonConvexTandems++;
-                System.out.println("Non-convex objective function for network " + networkID + " (foi: " + networkFoi + ")" +
+                context.incrementNonConvexTandems();
+                System.out.println("Non-convex objective function for network " + context.getNetworkID() + " (foi: " + context.getNetworkFoi() + ")" +
                         " subnetwork " + subNetwork + " (foi: " + foi.getAlias() + ")");
             }
         }
-        else if(approximateInitialThetas){
+        else if(warmStart != null){
+            opTreeAnalysis.runDelayBoundAnalysis(new DiffLUDBPlugin(), warmStart);
+        }
+        else if(context.isApproximateInitialThetas()){
             opTreeAnalysis.runDelayBoundAnalysis(new DiffLUDBPlugin(), lb_thetas_safe);
         }
         else {
             opTreeAnalysis.runDelayBoundAnalysis(new DiffLUDBPlugin());
         }
-        subNetwork++;
         //the OpTreeAnalysis should automatically set the parameter values of the operator tree to the optimal values
 
         //take note of the elapsed time (differentiate between the time to derive the objective function and the time to
         //solve the NLP)
-        aggrTimeToDeriveObjFuncInNS += opTreeAnalysis.timestampObjFuncDerived - timestampInitialThetas;
-        aggrTimeToStartSolverInNS += opTreeAnalysis.timestampSolverStarted - opTreeAnalysis.timestampObjFuncDerived;
+        context.addTimeToDeriveObjFunc(opTreeAnalysis.timestampObjFuncDerived - timestampInitialThetas);
+        context.addTimeToStartSolver(opTreeAnalysis.timestampSolverStarted - opTreeAnalysis.timestampObjFuncDerived);
         long timestampNLPSolved = System.nanoTime();
-        aggrTimeToSolveNLPInNS += timestampNLPSolved - opTreeAnalysis.timestampSolverStarted;
+        //a solution taken from a solver trace is charged with the time the traced run needed to find it
+        context.addTimeToSolveNLP(timestampNLPSolved - opTreeAnalysis.timestampSolverStarted
+                + opTreeAnalysis.timeReplayedFromTraceInNS);
 
         //extract the parameters from the OpTNode and map them to the mapping curr_best_s_setting
         //the mapping curr_best_s_setting has to be of the form <index of flow in crossflowList, parameter value>
@@ -257,17 +373,155 @@ public class NestedTandemAnalysis {
                 curr_best_s_setting.put(crossflowList.indexOf(flow), flowAliasToParamValue.get(flow.getAlias()));
             }
         }
+        if(warmStartProblem != null){
+            List<Flow> crossflows = warmStartProblem.getCrossflows();
+            double[] s_setting = new double[crossflows.size()];
+            boolean complete = true;
+            for(int i = 0; i < s_setting.length && complete; i++){
+                Double s = flowAliasToParamValue.get(crossflows.get(i).getAlias());
+                complete = s != null;
+                s_setting[i] = complete ? s : Double.NaN;
+            }
+            if(complete){
+                warmStartProvider.add(warmStartProblem, s_setting);
+            }
+        }
 
         e2e = computeLeftOverSCFromLUDB_s_setting(nestingTree, curr_best_s_setting);
 
         if(e2e.getUltAffineRate().eqZero()){
-            System.out.println("Warning: network " + networkID + " (foi: " + networkFoi + ")" + " subnetwork " + subNetwork + " (foi: " + foi.getAlias() + ") produced a Null Curve");
+            System.out.println("Warning: network " + context.getNetworkID() + " (foi: " + context.getNetworkFoi() + ")" + " subnetwork " + subNetwork + " (foi: " + foi.getAlias() + ") produced a Null Curve");
+        }
+
+        context.addTimeToComputeServiceCurve(System.nanoTime() - timestampNLPSolved);
+
+    }
+
+
+    /**
+     * Derives finite upper bounds on the s-parameters of the DiffLUDB analysis (s = theta - curr_lb, see
+     * computeLeftOverSCFromLUDB_s_setting). A cheap LB_FF or DS_FF pass yields a delay bound that the NLP's optimum
+     * cannot exceed (s = 0 resp. the thetas found by DS_FF are feasible), from which computeSafeBoundsUb and
+     * computeUpperBounds derive upper bounds on the thetas. curr_lb depends on the s-parameters of the nested flows and
+     * is not necessarily smallest for s = 0. However, the left-over service curve under a flow's node never exceeds the
+     * concatenation of the servers under that node, hence the flow's burst is reached no earlier than by this
+     * concatenation (see computeCurrLbLowerBounds). These lower bounds on curr_lb (and thus on theta = curr_lb + s) hold
+     * for all s-settings; they replace the LB_FF thetas in computeUpperBounds and are subtracted from the upper bounds on
+     * the thetas to yield upper bounds on the s-parameters.
+     *
+     * The pass runs on the attributes of this analysis, i.e. it overwrites e2e, curr_min_delay, the theta bounds
+     * (lb_thetas_global_min_so_far, ub_thetas_global_max_so_far, lb_thetas_safe, ub_thetas_safe, stepsize_thetas),
+     * flows_without_foi_ordered and the left-over service curves of the nesting tree's nodes. All of them are restored
+     * afterwards, hence the DiffLUDB analysis sees the same state as without the bounds. Note that the time of the pass is
+     * added to the context's time to find the initial thetas.
+     * @param boundsMode
+     *                      LB_FF or DS_FF
+     * @return  a map <crossflow, upper bound on its s-parameter>; null if the pass produced no finite delay bound
+     * @throws Exception
+     */
+    private Map<Flow, Num> computeParameterUpperBounds(mode boundsMode) throws Exception {
+        ServiceCurve saved_e2e = e2e;
+        Num saved_curr_min_delay = curr_min_delay;
+        Map<Flow, Num> saved_lb_thetas_global_min_so_far = lb_thetas_global_min_so_far;
+        Map<Flow, Num> saved_ub_thetas_global_max_so_far = ub_thetas_global_max_so_far;
+        Map<Flow, Num> saved_lb_thetas_safe = lb_thetas_safe;
+        Map<Flow, Num> saved_ub_thetas_safe = ub_thetas_safe;
+        Map<Flow, Num> saved_stepsize_thetas = stepsize_thetas;
+        boolean saved_compute_flows_without_foi_ordered = compute_flows_without_foi_ordered;
+        List<Flow> saved_flows_without_foi_ordered = new ArrayList<>(flows_without_foi_ordered);
+        Map<TNode, ServiceCurve> saved_leftovers = new IdentityHashMap<>();
+        collectLeftovers(nestingTree, saved_leftovers);
+        try {
+            return computeParameterUpperBoundsFromPass(boundsMode);
+        } finally {
+            e2e = saved_e2e;
+            curr_min_delay = saved_curr_min_delay;
+            lb_thetas_global_min_so_far = saved_lb_thetas_global_min_so_far;
+            ub_thetas_global_max_so_far = saved_ub_thetas_global_max_so_far;
+            lb_thetas_safe = saved_lb_thetas_safe;
+            ub_thetas_safe = saved_ub_thetas_safe;
+            stepsize_thetas = saved_stepsize_thetas;
+            compute_flows_without_foi_ordered = saved_compute_flows_without_foi_ordered;
+            flows_without_foi_ordered.clear();
+            flows_without_foi_ordered.addAll(saved_flows_without_foi_ordered);
+            for (Map.Entry<TNode, ServiceCurve> saved_leftover : saved_leftovers.entrySet()) {
+                saved_leftover.getKey().setLeftover(saved_leftover.getValue());
+            }
+        }
+    }
+
+    // The LB_FF or DS_FF pass of computeParameterUpperBounds and the derivation of the bounds (changes the attributes)
+    private Map<Flow, Num> computeParameterUpperBoundsFromPass(mode boundsMode) throws Exception {
+        Num delay;
+        if (boundsMode == mode.DS_FF) {
+            computeServiceCurve_DS_FF();
+            delay = curr_min_delay;
+        } else {
+            computeServiceCurve_LB_FF();
+            delay = Calculator.getInstance().getDncBackend().getBounds().delayFIFO(foi.getArrivalCurve(), e2e);
+        }
+        e2e = null;
+        if (delay.eq(Num.getUtils(Calculator.getInstance().getNumBackend()).createPositiveInfinity())) {
+            return null;
+        }
+
+        computeSafeBoundsUb(delay);
+        lb_thetas_global_min_so_far = new HashMap<>();
+        computeCurrLbLowerBounds(nestingTree, lb_thetas_global_min_so_far);
+        ub_thetas_global_max_so_far = new HashMap<>();
+        computeUpperBounds(nestingTree, delay);
+
+        Map<Flow, Num> ub_s = new HashMap<>();
+        Num zero = Num.getUtils(Calculator.getInstance().getNumBackend()).createZero();
+        for (Flow xflow : flows) {
+            if (!(xflow.equals(foi)) && lb_thetas_global_min_so_far.containsKey(xflow)) {
+                Num ub_theta = ub_thetas_safe.get(xflow);
+                Num ub_theta_tree = ub_thetas_global_max_so_far.get(xflow);
+                if (ub_theta_tree != null && ub_theta_tree.lt(ub_theta)) {
+                    ub_theta = ub_theta_tree;
+                }
+                Num ub = Num.getUtils(Calculator.getInstance().getNumBackend()).sub(ub_theta, lb_thetas_global_min_so_far.get(xflow));
+                ub_s.put(xflow, ub.lt(zero) ? zero : ub);
+            }
         }
+        return ub_s;
+    }
 
-        aggrTimeToComputeServiceCurveInNS += System.nanoTime() - timestampNLPSolved;
+    // The left-over service curves of the node and all nodes below it
+    private void collectLeftovers(TNode node, Map<TNode, ServiceCurve> leftovers) {
+        leftovers.put(node, node.getLeftover());
+        for (TNode child : node.getChildren()) {
+            collectLeftovers(child, leftovers);
+        }
+    }
 
+    // Lower bounds on curr_lb of the flows below the node that hold for all s-settings: f_inv(burst) of the concatenation
+    // of the servers under the flow's node (no cross-traffic subtracted)
+    private void computeCurrLbLowerBounds(TNode node, Map<Flow, Num> lower_bounds) throws Exception {
+        for (TNode child : node.getChildren()) {
+            if (!(child.getInf() instanceof LinkedList)) {
+                Flow flow = (Flow) child.getInf();
+                Curve_Disco_PwAffine concatenation = (Curve_Disco_PwAffine) concatenateServers(child);
+                lower_bounds.put(flow, concatenation.f_inv(flow.getArrivalCurve().getBurst()));
+                computeCurrLbLowerBounds(child, lower_bounds);
+            }
+        }
     }
 
+    // The concatenation of all servers in the subtree of the node
+    private ServiceCurve concatenateServers(TNode node) throws Exception {
+        ServiceCurve concatenation = Curve.getFactory().createZeroDelayInfiniteBurst();
+        if (node.getInf() instanceof LinkedList) {
+            for (Server server : (LinkedList<Server>) node.getInf()) {
+                concatenation = Calculator.getInstance().getMinPlus().convolve(concatenation, server.getServiceCurve());
+            }
+        } else {
+            for (TNode child : node.getChildren()) {
+                concatenation = Calculator.getInstance().getMinPlus().convolve(concatenation, concatenateServers(child));
+            }
+        }
+        return concatenation;
+    }
 
     public void computeServiceCurve_LB_FF() throws Exception {
         lb_thetas_global_min_so_far = new HashMap<>();
@@ -792,9 +1046,14 @@ public class NestedTandemAnalysis {
             // compute curve for curr_flow (only convolution of leaf nodes)
             TNode curr_flow_node = flow_tnode_map.get(curr_flow);
             curr_min_delay_ludb = Double.POSITIVE_INFINITY;
+            curr_best_ludb_selection = null;
             computeCurrLeftOverandConstraints(curr_flow_node, new HashMap<Flow, Integer>());
 
-            computeLUDBSkippingInfeasibleDecompositions(curr_flow, 0, new HashMap<Flow, Integer>());
+            if (context.isParallelLUDB()) {
+                computeLUDBSkippingInfeasibleDecompositionsInParallel(curr_flow);
+            } else {
+                computeLUDBSkippingInfeasibleDecompositions(curr_flow, 0, new HashMap<Flow, Integer>(), new ArrayList<>(), new ArrayList<>());
+            }
 
             // need to set e2e service curve with the best "s" setting
 
@@ -814,7 +1073,7 @@ public class NestedTandemAnalysis {
 
             for (int j = -1; j < foi_nr_stages; j++) {
                 Pair<Expression_LUDB, List<Expression_LUDB>> delay_composition_j = getDelayLPDecomposition(foi_curve, foi_constraints, foi_burst_exp, j);
-                Pair<Double, Map<Integer, Double>> result_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(delay_composition_j.getFirst(), delay_composition_j.getSecond(), crossflowList.size());
+                Pair<Double, Map<Integer, Double>> result_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(delay_composition_j.getFirst(), delay_composition_j.getSecond(), crossflowList.size(), context.isJavaLpSolver());
                 double result_tmp = result_cplex_pair.getFirst();
                 // we know that the map is empty anyways
                 if (result_tmp < delay) {
@@ -829,6 +1088,13 @@ public class NestedTandemAnalysis {
 
     // Updates the current left-over curve and constraints of the node
     public void computeCurrLeftOverandConstraints(TNode node, Map<Flow, Integer> curr_selection_max) {
+        Pair<PseudoAffine, List<Expression_LUDB>> result = computeCurrLeftOverandConstraints(node, curr_selection_max, null);
+        node.setCurrentPseudoAffineCurveAndConstraints(result.getFirst(), result.getSecond());
+    }
+
+    // Computes the current left-over curve and constraints of the node without storing them
+    // curr_decompositions holds the current curves and constraints of the flow nodes of one branch of the parallel search (null == the ones stored in the nodes)
+    private Pair<PseudoAffine, List<Expression_LUDB>> computeCurrLeftOverandConstraints(TNode node, Map<Flow, Integer> curr_selection_max, Map<TNode, Pair<PseudoAffine, List<Expression_LUDB>>> curr_decompositions) {
         ArrayList<TNode> children = node.getChildren();
 
 
@@ -867,8 +1133,9 @@ public class NestedTandemAnalysis {
             // We assume token bucket arrivals (LUDB is constrained to those arrival curves)
             Expression_LUDB ac_burst = new Expression_LUDB(ac.getBurst());
             Expression_LUDB ac_rate = new Expression_LUDB(ac.getUltAffineRate());
-            PseudoAffine curr_child_curve = child.getCurrentPseudoAffineCurve();
-            List<Expression_LUDB> curr_child_constraints = child.getCurrentConstraints();
+            Pair<PseudoAffine, List<Expression_LUDB>> curr_child_decomposition = getCurrentDecomposition(child, curr_decompositions);
+            PseudoAffine curr_child_curve = curr_child_decomposition.getFirst();
+            List<Expression_LUDB> curr_child_constraints = curr_child_decomposition.getSecond();
             int curr_child_which_max = curr_selection_max.get(child_flow);
 
             Pair<PseudoAffine, List<Expression_LUDB>> child_left_over_decompositions_pair = leftOverDecomposition(ac_burst, ac_rate, curr_child_curve, curr_child_constraints, id, curr_child_which_max);
@@ -878,32 +1145,36 @@ public class NestedTandemAnalysis {
         }
 
 
-        node.setCurrentPseudoAffineCurveAndConstraints(result_curve, result_constraints);
+        return new Pair<>(result_curve, result_constraints);
+    }
+
+    private Pair<PseudoAffine, List<Expression_LUDB>> getCurrentDecomposition(TNode node, Map<TNode, Pair<PseudoAffine, List<Expression_LUDB>>> curr_decompositions) {
+        if (curr_decompositions != null && curr_decompositions.containsKey(node)) {
+            return curr_decompositions.get(node);
+        }
+        return new Pair<>(node.getCurrentPseudoAffineCurve(), node.getCurrentConstraints());
     }
 
-    private void computeLUDBSkippingInfeasibleDecompositions(Flow curr_flow, int index, Map<Flow, Integer> curr_selection_max) throws Exception {
+    // curr_selection: the selected max of the crossflows flows_without_foi_ordered[0..index-1]; curr_flow_delays: the values of their per-flow LPs
+    private void computeLUDBSkippingInfeasibleDecompositions(Flow curr_flow, int index, Map<Flow, Integer> curr_selection_max, List<Integer> curr_selection, List<Double> curr_flow_delays) throws Exception {
 
         // Determine how many stages the l.o. service curve for curr_flow has
         TNode curr_flow_node = flow_tnode_map.get(curr_flow);
         PseudoAffine curr_flow_curve = curr_flow_node.getCurrentPseudoAffineCurve();
-        List<TB_LUDB> curr_flow_curve_stages = curr_flow_curve.getStages();
-        int nr_stages = curr_flow_curve_stages.size();
-
-
-        // if k == -1, we select the null term as max
-        for (int k = -1; k < nr_stages; k++) {
-            // Only put k to the map if it is feasible for curr_flow, i.e., we compute the LUDB for the curr_flow with k
-            // if (!use_cache) {
-            List<Expression_LUDB> curr_flow_constraints = curr_flow_node.getCurrentConstraints();
-            Num curr_flow_burst = curr_flow.getArrivalCurve().getBurst();
-            Expression_LUDB curr_flow_burst_exp = new Expression_LUDB(curr_flow_burst);
-            Pair<Expression_LUDB, List<Expression_LUDB>> curr_flow_delay_composition_k = getDelayLPDecomposition(curr_flow_curve, curr_flow_constraints, curr_flow_burst_exp, k);
-            Pair<Double, Map<Integer, Double>> result_curr_flow_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(curr_flow_delay_composition_k.getFirst(), curr_flow_delay_composition_k.getSecond(), crossflowList.size());
-            Double result_curr_flow_delay_k = result_curr_flow_cplex_pair.getFirst();
-
-
-            if (result_curr_flow_delay_k.equals(Double.NaN)) {
-                continue;
+        List<Expression_LUDB> curr_flow_constraints = curr_flow_node.getCurrentConstraints();
+
+        // Only select k if it is feasible for curr_flow, i.e., we compute the LUDB for the curr_flow with k (most promising k first)
+        List<Pair<Integer, Double>> feasible_selections = getFeasibleSelectionsOrdered(curr_flow, curr_flow_curve, curr_flow_constraints);
+
+        for (Pair<Integer, Double> feasible_selection : feasible_selections) {
+            int k = feasible_selection.getFirst();
+            List<Integer> next_selection = new ArrayList<>(curr_selection);
+            next_selection.add(k);
+            List<Double> next_flow_delays = new ArrayList<>(curr_flow_delays);
+            next_flow_delays.add(feasible_selection.getSecond());
+            if (canPruneLUDB(getLUDBLowerBound(next_flow_delays))) {
+                // the remaining k have an even larger lower bound
+                break;
             }
             curr_selection_max.put(curr_flow, k);
 
@@ -916,7 +1187,7 @@ public class NestedTandemAnalysis {
 
                 computeCurrLeftOverandConstraints(node_of_next_flow, curr_selection_max);
 
-                computeLUDBSkippingInfeasibleDecompositions(next_flow, index + 1, curr_selection_max);
+                computeLUDBSkippingInfeasibleDecompositions(next_flow, index + 1, curr_selection_max, next_selection, next_flow_delays);
                 //We do not need to delete next_flow from curr_selection_max --- in the search we have to delete "old" entries because of the computation of the current bounds, here we simply update the map
 
             } else {
@@ -935,19 +1206,165 @@ public class NestedTandemAnalysis {
                 for (int j = -1; j < foi_nr_stages; j++) {
 
                     Pair<Expression_LUDB, List<Expression_LUDB>> delay_composition_j = getDelayLPDecomposition(foi_curve, foi_constraints, foi_burst_exp, j);
-                    Pair<Double, Map<Integer, Double>> result_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(delay_composition_j.getFirst(), delay_composition_j.getSecond(), crossflowList.size());
-                    double result_tmp = result_cplex_pair.getFirst();
-
-                    if (result_tmp < curr_min_delay_ludb) {
-                        curr_min_delay_ludb = result_tmp;
-                        curr_best_s_setting = result_cplex_pair.getSecond();
-                    }
+                    Pair<Double, Map<Integer, Double>> result_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(delay_composition_j.getFirst(), delay_composition_j.getSecond(), crossflowList.size(), context.isJavaLpSolver());
+                    List<Integer> selection_j = new ArrayList<>(next_selection);
+                    selection_j.add(j);
+                    updateMinDelayLUDB(result_cplex_pair.getFirst(), result_cplex_pair.getSecond(), selection_j);
                 }
 
             }
         }
     }
 
+    // Solves the per-flow LP of curr_flow for every possible max k and returns the feasible k with their LP value, ordered by the value
+    // (ties by k). A smaller value gives a smaller lower bound, so the most promising decompositions are explored first.
+    private List<Pair<Integer, Double>> getFeasibleSelectionsOrdered(Flow curr_flow, PseudoAffine curr_flow_curve, List<Expression_LUDB> curr_flow_constraints) throws Exception {
+        int nr_stages = curr_flow_curve.getStages().size();
+        Num curr_flow_burst = curr_flow.getArrivalCurve().getBurst();
+        Expression_LUDB curr_flow_burst_exp = new Expression_LUDB(curr_flow_burst);
+
+        List<Pair<Integer, Double>> feasible_selections = new ArrayList<>();
+        // if k == -1, we select the null term as max
+        for (int k = -1; k < nr_stages; k++) {
+            Pair<Expression_LUDB, List<Expression_LUDB>> curr_flow_delay_composition_k = getDelayLPDecomposition(curr_flow_curve, curr_flow_constraints, curr_flow_burst_exp, k);
+            Pair<Double, Map<Integer, Double>> result_curr_flow_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(curr_flow_delay_composition_k.getFirst(), curr_flow_delay_composition_k.getSecond(), crossflowList.size(), context.isJavaLpSolver());
+            Double result_curr_flow_delay_k = result_curr_flow_cplex_pair.getFirst();
+            if (!result_curr_flow_delay_k.equals(Double.NaN)) {
+                feasible_selections.add(new Pair<>(k, result_curr_flow_delay_k));
+            }
+        }
+        // stable sort, i.e., equal values keep the order of k
+        feasible_selections.sort(Comparator.comparingDouble(Pair::getSecond));
+        return feasible_selections;
+    }
+
+    // Lower bound on the foi's delay for every decomposition that extends the selection of the first curr_flow_delays.size() crossflows.
+    // The per-flow LP of a crossflow minimizes the latency of its left-over curve without s_id, under a subset of the foi's constraints.
+    // Latencies only add up during convolution and are non-negative (constr_left >= 0, s >= 0), hence the latency of the foi's curve
+    // (and its delay) is at least the sum of the LP values of the decided crossflows that are not nested in another decided crossflow.
+    private double getLUDBLowerBound(List<Double> curr_flow_delays) {
+        double lower_bound = 0;
+        int last_decided = curr_flow_delays.size() - 1;
+        for (int i = 0; i <= last_decided; i++) {
+            TNode parent = flow_tnode_map.get(flows_without_foi_ordered.get(i)).getParent();
+            int parent_index = parent == null ? -1 : flows_without_foi_ordered.indexOf(parent.getInf());
+            // post order: the parent of a crossflow comes later in flows_without_foi_ordered (the foi is not in the list)
+            if (parent_index == -1 || parent_index > last_decided) {
+                lower_bound += curr_flow_delays.get(i);
+            }
+        }
+        return lower_bound;
+    }
+
+    // A subtree can be skipped if its lower bound exceeds the best delay found so far. The relative slack keeps subtrees whose bound only
+    // exceeds it by rounding, and subtrees that could tie the best delay are explored as well (they may win the tie-break, see updateMinDelayLUDB).
+    private synchronized boolean canPruneLUDB(double lower_bound) {
+        return lower_bound > curr_min_delay_ludb + 1e-9 * Math.abs(curr_min_delay_ludb);
+    }
+
+    // Fork-join version of computeLUDBSkippingInfeasibleDecompositions: every selected max k of a crossflow is explored as its own task and
+    // the LPs of the foi-level j loop are solved concurrently. Instead of updating the nesting tree, every branch works on its own copy of
+    // curr_selection_max and of the current curves and constraints of the flow nodes (the leaf decompositions are stable and stay in the nodes).
+    private void computeLUDBSkippingInfeasibleDecompositionsInParallel(Flow first_flow) throws Exception {
+        try {
+            ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(() -> {
+                exploreLUDBDecompositionsInParallel(first_flow, 0, new HashMap<>(), new HashMap<>(), new ArrayList<>(), new ArrayList<>());
+                return null;
+            }));
+        } catch (RuntimeException e) {
+            // the tasks wrap checked exceptions (possibly several times when rethrown in another thread)
+            Throwable cause = e;
+            while (cause instanceof RuntimeException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void exploreLUDBDecompositionsInParallel(Flow curr_flow, int index, Map<Flow, Integer> curr_selection_max, Map<TNode, Pair<PseudoAffine, List<Expression_LUDB>>> curr_decompositions, List<Integer> curr_selection, List<Double> curr_flow_delays) throws Exception {
+        Pair<PseudoAffine, List<Expression_LUDB>> curr_flow_decomposition = getCurrentDecomposition(flow_tnode_map.get(curr_flow), curr_decompositions);
+        // Only select k if it is feasible for curr_flow (most promising k first)
+        List<Pair<Integer, Double>> feasible_selections = getFeasibleSelectionsOrdered(curr_flow, curr_flow_decomposition.getFirst(), curr_flow_decomposition.getSecond());
+
+        List<ForkJoinTask<Void>> branches = new ArrayList<>();
+        for (Pair<Integer, Double> feasible_selection : feasible_selections) {
+            branches.add(ForkJoinTask.adapt(() -> {
+                exploreLUDBDecompositionInParallel(curr_flow, index, feasible_selection.getFirst(), feasible_selection.getSecond(), curr_selection_max, curr_decompositions, curr_selection, curr_flow_delays);
+                return null;
+            }));
+        }
+        ForkJoinTask.invokeAll(branches);
+    }
+
+    private void exploreLUDBDecompositionInParallel(Flow curr_flow, int index, int k, double curr_flow_delay_k, Map<Flow, Integer> curr_selection_max, Map<TNode, Pair<PseudoAffine, List<Expression_LUDB>>> curr_decompositions, List<Integer> curr_selection, List<Double> curr_flow_delays) throws Exception {
+        List<Double> next_flow_delays = new ArrayList<>(curr_flow_delays);
+        next_flow_delays.add(curr_flow_delay_k);
+        // the bound is checked when the branch starts: the best delay may have improved in the meantime
+        if (canPruneLUDB(getLUDBLowerBound(next_flow_delays))) {
+            return;
+        }
+        Map<Flow, Integer> next_selection_max = new HashMap<>(curr_selection_max);
+        next_selection_max.put(curr_flow, k);
+        List<Integer> next_selection = new ArrayList<>(curr_selection);
+        next_selection.add(k);
+
+        if (index < flows_without_foi_ordered.size() - 1) {
+            Flow next_flow = flows_without_foi_ordered.get(index + 1);
+            TNode node_of_next_flow = flow_tnode_map.get(next_flow);
+
+            Map<TNode, Pair<PseudoAffine, List<Expression_LUDB>>> next_decompositions = new HashMap<>(curr_decompositions);
+            next_decompositions.put(node_of_next_flow, computeCurrLeftOverandConstraints(node_of_next_flow, next_selection_max, curr_decompositions));
+
+            exploreLUDBDecompositionsInParallel(next_flow, index + 1, next_selection_max, next_decompositions, next_selection, next_flow_delays);
+        } else {
+            // "last" (wrt the list) crossflow reached
+            Pair<PseudoAffine, List<Expression_LUDB>> foi_decomposition = computeCurrLeftOverandConstraints(nestingTree, next_selection_max, curr_decompositions);
+
+            PseudoAffine foi_curve = foi_decomposition.getFirst();
+            List<Expression_LUDB> foi_constraints = foi_decomposition.getSecond();
+            int foi_nr_stages = foi_curve.getStages().size();
+            Num foi_burst = foi.getArrivalCurve().getBurst();
+            Expression_LUDB foi_burst_exp = new Expression_LUDB(foi_burst);
+
+            List<ForkJoinTask<Void>> foi_lps = new ArrayList<>();
+            for (int j = -1; j < foi_nr_stages; j++) {
+                int curr_j = j;
+                foi_lps.add(ForkJoinTask.adapt(() -> {
+                    Pair<Expression_LUDB, List<Expression_LUDB>> delay_composition_j = getDelayLPDecomposition(foi_curve, foi_constraints, foi_burst_exp, curr_j);
+                    Pair<Double, Map<Integer, Double>> result_cplex_pair = LUDB_LP.simplify_first_then_save_and_solve_lp_w_cplex(delay_composition_j.getFirst(), delay_composition_j.getSecond(), crossflowList.size(), context.isJavaLpSolver());
+                    List<Integer> selection_j = new ArrayList<>(next_selection);
+                    selection_j.add(curr_j);
+                    updateMinDelayLUDB(result_cplex_pair.getFirst(), result_cplex_pair.getSecond(), selection_j);
+                    return null;
+                }));
+            }
+            ForkJoinTask.invokeAll(foi_lps);
+        }
+    }
+
+    // Atomically replaces the best-so-far LUDB if the given delay is smaller. For equal delays, the lexicographically smallest selection
+    // (the one an exploration in the order of k and j finds first) wins, so the s setting does not depend on the exploration order.
+    private synchronized void updateMinDelayLUDB(double delay, Map<Integer, Double> s_setting, List<Integer> selection) {
+        boolean better = delay < curr_min_delay_ludb;
+        if (!better && delay == curr_min_delay_ludb && curr_best_ludb_selection != null) {
+            for (int i = 0; i < selection.size(); i++) {
+                int cmp = Integer.compare(selection.get(i), curr_best_ludb_selection.get(i));
+                if (cmp != 0) {
+                    better = cmp < 0;
+                    break;
+                }
+            }
+        }
+        if (better) {
+            curr_min_delay_ludb = delay;
+            curr_best_s_setting = s_setting;
+            curr_best_ludb_selection = selection;
+        }
+    }
+
     private void getFlowOrderWrtNestingTree(TNode node) throws Exception {
         ArrayList<TNode> children = node.getChildren();
 
@@ -54,6 +54,7 @@ public class NonNestedTandemAnalysis {
     private HashMap<Integer, Server> server_numbers_reversed_map;
     private final ServerGraph server_graph;
     private final AnalysisConfig configuration;
+    private final AnalysisContext context;
     // the actual cross-flows (not the substitutes)
     private final Map<Path,Set<Flow>> xtx_subpath_grouped;
     private Map<Flow, Set<Flow>> xtx_substitutes_to_actual_flows;
@@ -68,6 +69,12 @@ public class NonNestedTandemAnalysis {
     // flows are flow substitutes (dummy flows) --- flow_of_interest can be real flow though
     public NonNestedTandemAnalysis(ServerGraph server_graph, AnalysisConfig configuration, Path tandem, Flow flow_of_interest, List<Flow> flows, Map<Path,Set<Flow>> xtx_subpath_grouped, boolean solve_for_output_opt )
     {
+        this(server_graph, configuration, new AnalysisContext(), tandem, flow_of_interest, flows, xtx_subpath_grouped, solve_for_output_opt);
+    }
+
+    public NonNestedTandemAnalysis(ServerGraph server_graph, AnalysisConfig configuration, AnalysisContext context, Path tandem, Flow flow_of_interest, List<Flow> flows, Map<Path,Set<Flow>> xtx_subpath_grouped, boolean solve_for_output_opt )
+    {
+        this.context = context;
         this.foi_path = tandem;
         this.foi = flow_of_interest;
         this.flows = new ArrayList<Flow>( flows );
@@ -261,13 +268,13 @@ public class NonNestedTandemAnalysis {
         all_xf_substitutes.add(foi_substitute);
         if(!solve_for_output_opt)
         {
-            leftover_sc = new NestedTandemAnalysis(foi.getPath(), foi_substitute, all_xf_substitutes).getServiceCurve();
+            leftover_sc = new NestedTandemAnalysis(foi.getPath(), foi_substitute, all_xf_substitutes, configuration, context).getServiceCurve();
             delay_sc = Calculator.getInstance().getDncBackend().getBounds().delayFIFO(foi_substitute.getArrivalCurve(), leftover_sc);
         }
 
         else{
 
-            NestedTandemAnalysis ludb_nested = new NestedTandemAnalysis( foi.getPath(), foi_substitute, all_xf_substitutes, configuration);
+            NestedTandemAnalysis ludb_nested = new NestedTandemAnalysis( foi.getPath(), foi_substitute, all_xf_substitutes, configuration, context);
             TNode root = ludb_nested.onlyComputeNestingTree();
             ArrayList<TNode> foi_children = root.getChildren();
             leftover_sc = Curve.getFactory().createZeroDelayInfiniteBurst();
@@ -298,7 +305,7 @@ public class NonNestedTandemAnalysis {
                     }
 
 
-                    NestedTandemAnalysis ludb_nested_child = new NestedTandemAnalysis( foi_child_flow.getPath(), foi_child_flow, flows_nested_into_foi_child, configuration);
+                    NestedTandemAnalysis ludb_nested_child = new NestedTandemAnalysis( foi_child_flow.getPath(), foi_child_flow, flows_nested_into_foi_child, configuration, context);
                     ServiceCurve beta_lo_child = ludb_nested_child.getServiceCurve();
 
                     ArrivalCurve ac = foi_child_flow.getArrivalCurve();
@@ -399,14 +406,14 @@ public class NonNestedTandemAnalysis {
                     xtx_alias += "}";
 
 
-                    aggregated_arrival_curve = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, flows_path_on_subtandem.getSource(), real_flows_with_that_path);
+                    aggregated_arrival_curve = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, context, flows_path_on_subtandem.getSource(), real_flows_with_that_path);
                     xtx_with_subtandem_as_path_substitute = Flow.createDummyFlow( xtx_alias , aggregated_arrival_curve, flows_path_on_subtandem);
                     cross_flows_substitutes.add(xtx_with_subtandem_as_path_substitute);
                 }
 
                 else
                 {
-                    aggregated_arrival_curve = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, flows_path_on_subtandem.getSource(), real_flows_with_that_path);
+                    aggregated_arrival_curve = ArrivalBoundDispatchFIFO.computeArrivalBound(server_graph, configuration, context, flows_path_on_subtandem.getSource(), real_flows_with_that_path);
                     String xtx_alias = "sub_{";
                     for(Flow flow : real_flows_with_that_path)
                     {
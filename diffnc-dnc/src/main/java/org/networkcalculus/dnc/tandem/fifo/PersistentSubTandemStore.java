@@ -0,0 +1,381 @@
+package org.networkcalculus.dnc.tandem.fifo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * Persistent store of solved sub-tandems that outlives a run: maps the signature of a nested tandem (see
+ * LeftOverServiceCache.Signature, it contains the analysis and solver settings) to the parameter setting (s-values),
+ * the delay bound, and the left-over service curve (string representation, i.e., its segments). A repeated run with
+ * the same settings takes the results of the sub-tandems from the store instead of solving them again. The keys are
+ * prefixed with FORMAT_VERSION, i.e. the records of a different format (or of analysis code that derives different
+ * curves) are not found and eventually dropped by the compaction. In addition, the stored delay bound allows to validate
+ * the re-parsed service curve (see Record.isConsistent).
+ *
+ * The store is a memory-mapped append-only data file in a directory. It starts with a header (magic number, state) and
+ * holds one record per sub-tandem: length, time of the last use, key, and value. The index (key -> offset) is kept in
+ * memory and extended by scanning the records appended since the last scan (also by other JVMs). All accesses hold an
+ * exclusive lock on a separate lock file, hence several JVMs may use the same directory concurrently; within one JVM,
+ * all analyses share the instance returned by open.
+ * Once the data file exceeds the size cap, it is compacted: the most recently used records that fill up to three
+ * quarters of the cap are copied to a new data file, which atomically replaces the old one. The old file is marked as
+ * obsolete first, so other JVMs that still map it re-open the data file.
+ */
+public class PersistentSubTandemStore implements Closeable {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+    //increment whenever the encoding of the records or the derivation of the stored curves changes
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String DATA_FILE = "subtandems.dat";
+    private static final String LOCK_FILE = "subtandems.lock";
+    private static final int MAGIC = 0x53544431;
+    //header: magic number, state
+    private static final int HEADER_BYTES = 8;
+    private static final int STATE_ACTIVE = 0;
+    private static final int STATE_OBSOLETE = 1;
+    //record: length of the rest of the record, time of the last use, key length, key, value
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4;
+
+    //<canonical directory, store>
+    private static final Map<Path, PersistentSubTandemStore> openStores = new HashMap<>();
+
+    private final Path directory;
+    private final Path dataPath;
+    private final long maxBytes;
+    private final FileChannel lockChannel;
+    private FileChannel dataChannel;
+    private MappedByteBuffer mapped;
+    //the records up to this offset are indexed
+    private long scannedUntil;
+    //<key, offset of the record>
+    private final Map<String, Long> index = new HashMap<>();
+
+    //statistics
+    private int hits;
+    private int misses;
+    private int stores;
+
+    /**
+     * A solved sub-tandem.
+     */
+    public static class Record {
+        private static final double DELAY_TOLERANCE = 1e-6;
+
+        private final double delay;
+        private final double[] parameters;
+        private final String serviceCurve;
+
+        public Record(double delay, double[] parameters, String serviceCurve){
+            this.delay = delay;
+            this.parameters = parameters == null ? null : parameters.clone();
+            this.serviceCurve = serviceCurve;
+        }
+
+        public double getDelay() {
+            return delay;
+        }
+
+        /**
+         * @param delay
+         *                  the delay bound of the flow of interest derived from the re-parsed service curve
+         * @return  whether the delay bound coincides with the stored one (up to the precision of the curve's string
+         *          representation)
+         */
+        public boolean isConsistent(double delay){
+            if(Double.isNaN(delay) || Double.isNaN(this.delay)){
+                return false;
+            }
+            if(Double.isInfinite(delay) || Double.isInfinite(this.delay)){
+                return delay == this.delay;
+            }
+            return Math.abs(delay - this.delay) <= DELAY_TOLERANCE * Math.max(1, Math.abs(this.delay));
+        }
+
+        //null if the analysis mode has no parameters
+        public double[] getParameters() {
+            return parameters == null ? null : parameters.clone();
+        }
+
+        public String getServiceCurve() {
+            return serviceCurve;
+        }
+
+        private String encode(){
+            StringBuilder value = new StringBuilder();
+            value.append(delay).append('|');
+            if(parameters != null){
+                value.append('[');
+                for(int i = 0; i < parameters.length; i++){
+                    value.append(i == 0 ? "" : ",").append(parameters[i]);
+                }
+                value.append(']');
+            }
+            value.append('|').append(serviceCurve);
+            return value.toString();
+        }
+
+        private static Record decode(String value){
+            String[] parts = value.split("\\|", 3);
+            double[] parameters = null;
+            if(!parts[1].isEmpty()){
+                String list = parts[1].substring(1, parts[1].length() - 1);
+                parameters = list.isEmpty() ? new double[0]
+                        : Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+            }
+            return new Record(Double.parseDouble(parts[0]), parameters, parts[2]);
+        }
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //constructors
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    private PersistentSubTandemStore(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.dataPath = directory.resolve(DATA_FILE);
+        this.maxBytes = maxBytes;
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Opens the store in the given directory (created if necessary). Within one JVM, all calls with the same directory
+     * return the same instance.
+     * @param directory
+     *                      the directory of the data and lock file
+     * @param maxBytes
+     *                      the size cap of the data file (at most 1 GB, as the file is mapped as a whole)
+     * @return  the store
+     * @throws IOException
+     */
+    public static PersistentSubTandemStore open(Path directory, long maxBytes) throws IOException {
+        if(maxBytes <= HEADER_BYTES || maxBytes > (1L << 30)){
+            throw new IllegalArgumentException("The size cap has to be in (" + HEADER_BYTES + ", 1 GB]");
+        }
+        Files.createDirectories(directory);
+        Path canonicalDirectory = directory.toRealPath();
+        synchronized (openStores){
+            PersistentSubTandemStore store = openStores.get(canonicalDirectory);
+            if(store == null){
+                store = new PersistentSubTandemStore(canonicalDirectory, maxBytes);
+                openStores.put(canonicalDirectory, store);
+            }
+            return store;
+        }
+    }
+
+
+    /**
+     * @param key
+     *              the signature of the sub-tandem
+     * @return  the stored sub-tandem; null if there is none
+     * @throws IOException
+     */
+    public synchronized Record get(String key) throws IOException {
+        try(FileLock ignored = lockChannel.lock()){
+            update();
+            Long offset = index.get(versioned(key));
+            if(offset == null){
+                misses++;
+                return null;
+            }
+            hits++;
+            //mark as used (LRU) and read the value
+            mapped.putLong((int) (offset + 4), System.currentTimeMillis());
+            int length = mapped.getInt(offset.intValue());
+            int keyLength = mapped.getInt((int) (offset + 12));
+            int valueOffset = (int) (offset + RECORD_HEADER_BYTES + keyLength);
+            return Record.decode(readString(valueOffset, 4 + length - RECORD_HEADER_BYTES - keyLength));
+        }
+    }
+
+
+    /**
+     * Appends the sub-tandem unless it is already stored (e.g. by another JVM). Compacts the data file if it exceeds
+     * the size cap afterwards.
+     * @param key
+     *              the signature of the sub-tandem
+     * @param record
+     *              the solved sub-tandem
+     * @throws IOException
+     */
+    public synchronized void put(String key, Record record) throws IOException {
+        try(FileLock ignored = lockChannel.lock()){
+            update();
+            key = versioned(key);
+            if(index.containsKey(key)){
+                return;
+            }
+            //drop a partially written record (e.g. of a crashed JVM)
+            if(dataChannel.size() > scannedUntil){
+                dataChannel.truncate(scannedUntil);
+            }
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = record.encode().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length + valueBytes.length);
+            buffer.putInt(buffer.capacity() - 4).putLong(System.currentTimeMillis()).putInt(keyBytes.length)
+                    .put(keyBytes).put(valueBytes).flip();
+            long position = scannedUntil;
+            while(buffer.hasRemaining()){
+                position += dataChannel.write(buffer, position);
+            }
+            stores++;
+            update();
+            if(dataChannel.size() > maxBytes){
+                compact();
+            }
+        }
+    }
+
+
+    /**
+     * Closes the data and lock file. The store must not be used afterwards.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (openStores){
+            openStores.remove(directory);
+        }
+        synchronized (this){
+            if(dataChannel != null){
+                dataChannel.close();
+                dataChannel = null;
+                mapped = null;
+            }
+            lockChannel.close();
+        }
+    }
+
+
+    // Requires the lock: (re-)opens the data file if necessary and indexes the records appended since the last scan.
+    private void update() throws IOException {
+        if(dataChannel != null && readHeaderInt(4) == STATE_OBSOLETE){
+            //another JVM compacted the data file
+            dataChannel.close();
+            dataChannel = null;
+        }
+        if(dataChannel == null){
+            dataChannel = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if(dataChannel.size() < HEADER_BYTES || readHeaderInt(0) != MAGIC){
+                dataChannel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(STATE_ACTIVE).flip();
+                dataChannel.write(header, 0);
+            }
+            mapped = null;
+            index.clear();
+            scannedUntil = HEADER_BYTES;
+        }
+
+        long size = dataChannel.size();
+        if(mapped == null || mapped.capacity() < size){
+            mapped = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        long position = scannedUntil;
+        while(position + RECORD_HEADER_BYTES <= size){
+            int length = mapped.getInt((int) position);
+            if(length < RECORD_HEADER_BYTES - 4 || position + 4 + length > size){
+                //partially written record
+                break;
+            }
+            int keyLength = mapped.getInt((int) (position + 12));
+            index.put(readString((int) (position + RECORD_HEADER_BYTES), keyLength), position);
+            position += 4 + length;
+        }
+        scannedUntil = position;
+    }
+
+
+    // Requires the lock: keeps the most recently used records that fill up to three quarters of the size cap.
+    private void compact() throws IOException {
+        List<Long> offsets = new ArrayList<>(index.values());
+        offsets.sort(Comparator.comparingLong((Long offset) -> mapped.getLong((int) (offset + 4))).reversed());
+
+        Path compactedPath = Files.createTempFile(directory, DATA_FILE, ".tmp");
+        try(FileChannel compacted = FileChannel.open(compactedPath, StandardOpenOption.WRITE)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(STATE_ACTIVE).flip();
+            long position = compacted.write(header, 0);
+            for(long offset : offsets){
+                int recordBytes = 4 + mapped.getInt((int) offset);
+                if(position + recordBytes > maxBytes * 3 / 4){
+                    break;
+                }
+                ByteBuffer record = mapped.duplicate();
+                record.position((int) offset).limit((int) offset + recordBytes);
+                while(record.hasRemaining()){
+                    position += compacted.write(record, position);
+                }
+            }
+            compacted.force(true);
+        }
+
+        //mark the old file as obsolete before it gets replaced (other JVMs check the state once they hold the lock)
+        mapped.putInt(4, STATE_OBSOLETE);
+        mapped.force();
+        Files.move(compactedPath, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dataChannel.close();
+        dataChannel = null;
+        update();
+    }
+
+
+    private static String versioned(String key){
+        return "v" + FORMAT_VERSION + "|" + key;
+    }
+
+
+    private int readHeaderInt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while(buffer.hasRemaining()){
+            if(dataChannel.read(buffer, position + buffer.position()) < 0){
+                return -1;
+            }
+        }
+        return buffer.getInt(0);
+    }
+
+
+    private String readString(int position, int length){
+        byte[] bytes = new byte[length];
+        mapped.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    public synchronized int getHits(){
+        return hits;
+    }
+
+    public synchronized int getMisses(){
+        return misses;
+    }
+
+    public synchronized int getStores(){
+        return stores;
+    }
+
+    /**
+     * @return  the share of the lookups that found a stored sub-tandem (0 if there was no lookup yet)
+     */
+    public synchronized double getHitRate(){
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
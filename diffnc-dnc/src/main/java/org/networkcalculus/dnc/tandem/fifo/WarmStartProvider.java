@@ -0,0 +1,208 @@
+package org.networkcalculus.dnc.tandem.fifo;
+
+import org.networkcalculus.dnc.curves.Curve;
+import org.networkcalculus.dnc.network.server_graph.Flow;
+import org.networkcalculus.dnc.network.server_graph.Path;
+import org.networkcalculus.dnc.network.server_graph.Server;
+
+import java.util.*;
+
+/**
+ * @author Lukas Herll
+ *
+ * Provides initial parameter settings for the NLPs of NestedTandemAnalysis.computeDiffLUDB. The recursive output bound
+ * analyses solve many sub-tandems that differ only slightly (e.g. one crossflow more or a larger burst), and the optimal
+ * s-values of such a neighbouring problem are a good starting point for the solver.
+ *
+ * Every solved problem is recorded with its s-values. For a new problem, the nearest recorded problem with the same
+ * analysis settings and path length is looked up (see Problem.distance): the crossflows are matched by their path
+ * interval (indices of the first and last server on the tandem's path), among the crossflows with the same interval by
+ * their arrival curves. The s-value of a matched crossflow is taken as its initial value; the caller chooses the initial
+ * value of the unmatched crossflows. The provider is thread-safe.
+ */
+public class WarmStartProvider {
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //attributes
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //the number of recorded problems per structure (settings and path length), the oldest ones are dropped
+    private static final int MAX_PROBLEMS_PER_STRUCTURE = 64;
+    //the distance of a crossflow that has no counterpart in the other problem
+    private static final double UNMATCHED_DISTANCE = 1;
+
+    //<settings signature and path length, recorded problems (newest last)>
+    private final Map<String, Deque<Problem>> problems = new HashMap<>();
+
+    //statistics
+    private int hits;
+    private int misses;
+
+    /**
+     * A nested tandem as seen by the warm start: the service curves of its servers and the path intervals and arrival
+     * curves of its crossflows (in the order of getCrossflows), together with their s-values once it is solved.
+     */
+    static class Problem {
+        private final String structure;
+        private final List<String> serviceCurves = new ArrayList<>();
+        private final List<Flow> crossflows = new ArrayList<>();
+        private final int[][] intervals;
+        private final double[][] arrivalCurves;
+        private double[] sSetting;
+
+        Problem(AnalysisContext context, Path path, Flow foi, Set<Flow> flows){
+            List<Server> servers = path.getServers();
+            for(Server server : servers){
+                serviceCurves.add(server.getServiceCurve().toString());
+            }
+            for(Flow flow : flows){
+                if(!flow.equals(foi)){
+                    crossflows.add(flow);
+                }
+            }
+            intervals = new int[crossflows.size()][];
+            arrivalCurves = new double[crossflows.size()][];
+            for(int i = 0; i < crossflows.size(); i++){
+                Flow crossflow = crossflows.get(i);
+                intervals[i] = new int[]{servers.indexOf(crossflow.getPath().getSource()), servers.indexOf(crossflow.getPath().getSink())};
+                arrivalCurves[i] = describe(crossflow.getArrivalCurve());
+            }
+            structure = context.getSettingsSignature() + "|" + servers.size();
+        }
+
+        List<Flow> getCrossflows(){
+            return crossflows;
+        }
+
+        // burst and ultimate rate
+        private static double[] describe(Curve curve){
+            return new double[]{curve.getBurst().doubleValue(), curve.getUltAffineRate().doubleValue()};
+        }
+
+        private static double relativeDifference(double a, double b){
+            double scale = Math.max(Math.abs(a), Math.abs(b));
+            return scale == 0 || Double.isInfinite(scale) ? (a == b ? 0 : 1) : Math.abs(a - b) / scale;
+        }
+
+        /**
+         * Matches the crossflows of this problem to the crossflows of a solved problem (greedily, every crossflow to the
+         * crossflow with the same interval and the most similar arrival curve).
+         * @param solved
+         *                  a solved problem with the same structure
+         * @param matching
+         *                  filled with the index of the matched crossflow of the solved problem (-1 if unmatched)
+         * @return  the distance: the differences of the matched arrival curves and server service curves plus
+         *          UNMATCHED_DISTANCE per crossflow without counterpart (of both problems)
+         */
+        private double distance(Problem solved, int[] matching){
+            double distance = 0;
+            for(int i = 0; i < serviceCurves.size(); i++){
+                if(!serviceCurves.get(i).equals(solved.serviceCurves.get(i))){
+                    distance += UNMATCHED_DISTANCE;
+                }
+            }
+            boolean[] used = new boolean[solved.intervals.length];
+            int unmatched = solved.intervals.length;
+            for(int i = 0; i < intervals.length; i++){
+                matching[i] = -1;
+                double best = Double.POSITIVE_INFINITY;
+                for(int j = 0; j < solved.intervals.length; j++){
+                    if(!used[j] && Arrays.equals(intervals[i], solved.intervals[j])){
+                        double difference = relativeDifference(arrivalCurves[i][0], solved.arrivalCurves[j][0])
+                                + relativeDifference(arrivalCurves[i][1], solved.arrivalCurves[j][1]);
+                        if(difference < best){
+                            best = difference;
+                            matching[i] = j;
+                        }
+                    }
+                }
+                if(matching[i] < 0){
+                    distance += UNMATCHED_DISTANCE;
+                }
+                else{
+                    used[matching[i]] = true;
+                    unmatched--;
+                    distance += best;
+                }
+            }
+            return distance + unmatched * UNMATCHED_DISTANCE;
+        }
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //methods
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+    /**
+     * @param problem
+     *                  the problem to be solved
+     * @return  the initial s-values of the crossflows (in the order of problem.getCrossflows()), taken from the nearest
+     *          solved problem; NaN for the crossflows without counterpart. null if no solved problem shares a crossflow
+     *          interval with the problem.
+     */
+    synchronized double[] getInitialGuess(Problem problem){
+        Problem nearest = null;
+        int[] nearestMatching = null;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        int[] matching = new int[problem.intervals.length];
+        for(Problem solved : problems.getOrDefault(problem.structure, new ArrayDeque<>())){
+            double distance = problem.distance(solved, matching);
+            if(distance < nearestDistance && Arrays.stream(matching).anyMatch(j -> j >= 0)){
+                nearest = solved;
+                nearestMatching = matching.clone();
+                nearestDistance = distance;
+            }
+        }
+        if(nearest == null){
+            misses++;
+            return null;
+        }
+        hits++;
+        double[] initialGuess = new double[problem.intervals.length];
+        for(int i = 0; i < initialGuess.length; i++){
+            initialGuess[i] = nearestMatching[i] < 0 ? Double.NaN : nearest.sSetting[nearestMatching[i]];
+        }
+        return initialGuess;
+    }
+
+
+    /**
+     * Records a solved problem.
+     * @param problem
+     *                  the solved problem
+     * @param sSetting
+     *                  the s-values of its crossflows (in the order of problem.getCrossflows())
+     */
+    synchronized void add(Problem problem, double[] sSetting){
+        problem.sSetting = sSetting.clone();
+        //the flows belong to the analysed server graph and are not needed anymore
+        problem.crossflows.clear();
+        Deque<Problem> solved = problems.computeIfAbsent(problem.structure, structure -> new ArrayDeque<>());
+        solved.addLast(problem);
+        if(solved.size() > MAX_PROBLEMS_PER_STRUCTURE){
+            solved.removeFirst();
+        }
+    }
+
+
+    /**
+     * Removes all recorded problems (the statistics are kept).
+     */
+    public synchronized void clear(){
+        problems.clear();
+    }
+
+
+    public synchronized int getHits(){
+        return hits;
+    }
+
+    public synchronized int getMisses(){
+        return misses;
+    }
+
+    /**
+     * @return  the share of the problems that were warm-started (0 if there was no lookup yet)
+     */
+    public synchronized double getHitRate(){
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}